@@ -80,6 +80,10 @@ public class JSONTableMacroParameters
 
     private boolean capitalize = true;
 
+    private String cursorField;
+
+    private String cursorParameter;
+
     /**
      * @return a map of the parameters of this macro.
      */
@@ -89,6 +93,8 @@ public class JSONTableMacroParameters
                 put(PATHS, paths);
                 put(FIELD_PATHS, fieldPaths);
                 put(URL, url);
+                put(STRIP_QUALIFIERS, stripQualifiers);
+                put(CAPITALIZE, capitalize);
             }};
     }
 
@@ -217,4 +223,39 @@ public class JSONTableMacroParameters
     {
         return this.capitalize;
     }
+
+    /**
+     * @param cursorField the field path of the value identifying the last row of an append-only source
+     */
+    @PropertyName("Path to the field identifying the last row of an append-only source")
+    public void setCursorField(String cursorField)
+    {
+        this.cursorField = cursorField;
+    }
+
+    /**
+     * @return the field path of the value identifying the last row of an append-only source
+     */
+    public String getCursorField()
+    {
+        return this.cursorField;
+    }
+
+    /**
+     * @param cursorParameter the query parameter used to only get the rows coming after a given row from an
+     *     append-only source
+     */
+    @PropertyName("Query parameter used to only get the rows added to an append-only source")
+    public void setCursorParameter(String cursorParameter)
+    {
+        this.cursorParameter = cursorParameter;
+    }
+
+    /**
+     * @return the query parameter used to only get the rows coming after a given row from an append-only source
+     */
+    public String getCursorParameter()
+    {
+        return this.cursorParameter;
+    }
 }
@@ -0,0 +1,211 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+
+/**
+ * Base class of the caches of the {@link JSONTableMacro}. Besides the limits of the underlying cache, the cache can
+ * be bounded by the estimated heap size of the values it holds, in which case the least recently used entries are
+ * evicted first.
+ *
+ * @param <T> the type of the cached values
+ * @version $Id$
+ * @since 1.0
+ */
+public abstract class AbstractJSONTableWeightedCache<T> implements Initializable, Disposable, CacheEntryListener<T>
+{
+    @Inject
+    protected Logger logger;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<T> cache;
+
+    private long maxWeight;
+
+    /**
+     * The estimated weight of each entry, ordered from the least recently used entry to the most recently used one.
+     */
+    private final Map<String, Long> weights = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalWeight;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.maxWeight = getMaxWeight();
+        CacheConfiguration cacheConfiguration = getCacheConfiguration();
+        try {
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException(
+                String.format("Failed to initialize the [%s] cache", cacheConfiguration.getConfigurationId()), e);
+        }
+        // Entries can also be removed because of the maximum number of entries or the maximum idle time, which needs
+        // to be taken into account in the total weight
+        this.cache.addCacheEntryListener(this);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    /**
+     * @param key the cache key
+     * @return the corresponding value. Returns null if the entry does not exist.
+     */
+    public T get(String key)
+    {
+        if (isWeighted()) {
+            // Keep track of the least recently used entries
+            synchronized (this.weights) {
+                this.weights.get(key);
+            }
+        }
+        return this.cache.get(key);
+    }
+
+    /**
+     * @param key the cache key
+     * @param value the value to store
+     */
+    public void set(String key, T value)
+    {
+        if (isWeighted()) {
+            long weight = getWeight(value);
+            synchronized (this.weights) {
+                Long previousWeight = this.weights.put(key, weight);
+                this.totalWeight += weight - ((previousWeight != null) ? previousWeight : 0L);
+            }
+            this.cache.set(key, value);
+            evictOverweightEntries(key);
+        } else {
+            this.cache.set(key, value);
+        }
+    }
+
+    /**
+     * @param key the key to remove
+     */
+    public void remove(String key)
+    {
+        this.cache.remove(key);
+    }
+
+    /**
+     * @return the estimated weight of all the entries, in bytes, or 0 if the cache is not bounded by weight
+     */
+    public long getTotalWeight()
+    {
+        synchronized (this.weights) {
+            return this.totalWeight;
+        }
+    }
+
+    @Override
+    public void cacheEntryAdded(CacheEntryEvent<T> event)
+    {
+        // Weights are computed when setting entries
+    }
+
+    @Override
+    public void cacheEntryRemoved(CacheEntryEvent<T> event)
+    {
+        synchronized (this.weights) {
+            Long weight = this.weights.remove(event.getEntry().getKey());
+            if (weight != null) {
+                this.totalWeight -= weight;
+            }
+        }
+    }
+
+    @Override
+    public void cacheEntryModified(CacheEntryEvent<T> event)
+    {
+        // Weights are computed when setting entries
+    }
+
+    /**
+     * @return the configuration of the underlying cache
+     */
+    protected abstract CacheConfiguration getCacheConfiguration();
+
+    /**
+     * @return the maximum estimated heap size in bytes of the values kept in the cache, or 0 or less to only rely on
+     *     the limits of the underlying cache
+     */
+    protected abstract long getMaxWeight();
+
+    /**
+     * @param value a value to store
+     * @return an estimation of the heap size of the value, in bytes
+     */
+    protected abstract long getWeight(T value);
+
+    private boolean isWeighted()
+    {
+        return this.maxWeight > 0;
+    }
+
+    private void evictOverweightEntries(String keptKey)
+    {
+        List<String> evictedKeys = new ArrayList<>();
+        synchronized (this.weights) {
+            Iterator<Map.Entry<String, Long>> it = this.weights.entrySet().iterator();
+            while (this.totalWeight > this.maxWeight && it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                if (!entry.getKey().equals(keptKey)) {
+                    it.remove();
+                    this.totalWeight -= entry.getValue();
+                    evictedKeys.add(entry.getKey());
+                }
+            }
+        }
+
+        for (String evictedKey : evictedKeys) {
+            this.logger.debug("Evicting [{}] to stay under the maximum weight of the cache", evictedKey);
+            this.cache.remove(evictedKey);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.ApplicationReadyEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Loads the most recently used JSON Table data stored on disk once the application is ready.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component
+@Singleton
+@Named(JSONTableCacheWarmupListener.NAME)
+public class JSONTableCacheWarmupListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "JSONTableCacheWarmupListener";
+
+    @Inject
+    private Provider<JSONTableDataStorage> jsonTableDataStorageProvider;
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    /**
+     * Create a new {@link JSONTableCacheWarmupListener}.
+     */
+    public JSONTableCacheWarmupListener()
+    {
+        super(NAME, new ApplicationReadyEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (this.configuration.isPersistentCacheEnabled()) {
+            // Don't delay the startup while reading the stored data
+            JSONTableDataStorage storage = this.jsonTableDataStorageProvider.get();
+            new BasicThreadFactory.Builder().namingPattern("JSON Table warm-up %d").daemon(true).build()
+                .newThread(storage::warmUp).start();
+        }
+    }
+}
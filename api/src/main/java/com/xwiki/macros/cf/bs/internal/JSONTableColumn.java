@@ -0,0 +1,62 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+/**
+ * The values of one field path for every row of a {@link JSONTableProjection}.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public interface JSONTableColumn
+{
+    /**
+     * @return the number of rows
+     */
+    int size();
+
+    /**
+     * @param row the row index
+     * @return true if the field path has no value for this row
+     */
+    boolean isNull(int row);
+
+    /**
+     * @param row the row index
+     * @return the value displayed for this row, or null if the field path has no value for this row
+     */
+    String getValue(int row);
+
+    /**
+     * Compare the values of two rows. Both values are expected to be non null.
+     *
+     * @param row the index of the first row
+     * @param otherRow the index of the second row
+     * @return a negative integer, zero, or a positive integer as the first value is less than, equal to, or greater
+     *     than the second value
+     */
+    int compare(int row, int otherRow);
+
+    /**
+     * @return an estimation of the heap size of the column, in bytes, not counting the values stored outside of the
+     *     heap
+     */
+    long getWeight();
+}
@@ -0,0 +1,535 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import com.xwiki.macros.cf.bs.internal.livedata.JSONTableSortKey;
+
+/**
+ * Indexes of the values of a {@link JSONTableColumn}, used to filter the rows of a JSON Table without going through
+ * all of them. Each index is only built the first time a filter needs it, and is then reused as long as the column is
+ * cached. Rows without any value never match.
+ * <p>
+ * The rows are split in consecutive segments, each having its own indexes, so that the indexes of a column to which
+ * rows are appended can be {@link #extend(JSONTableColumn) extended} rather than rebuilt: only the appended rows are
+ * indexed in a new segment. Small segments are merged with the previous ones so that the number of segments stays
+ * logarithmic in the number of rows.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableColumnIndex
+{
+    private static final int TRIGRAM_LENGTH = 3;
+
+    private final JSONTableColumn column;
+
+    private final List<Segment> segments;
+
+    /**
+     * @param column the column to index
+     */
+    public JSONTableColumnIndex(JSONTableColumn column)
+    {
+        this(column, Collections.singletonList(new Segment(0, column.size())));
+    }
+
+    private JSONTableColumnIndex(JSONTableColumn column, List<Segment> segments)
+    {
+        this.column = column;
+        this.segments = segments;
+    }
+
+    /**
+     * Index a column holding the rows of the indexed column followed by other rows, reusing the indexes already built
+     * for the rows of the indexed column.
+     *
+     * @param extendedColumn a column starting with the same values as the indexed column
+     * @return the index of the given column
+     */
+    public JSONTableColumnIndex extend(JSONTableColumn extendedColumn)
+    {
+        int size = this.column.size();
+        if (extendedColumn.size() < size) {
+            return new JSONTableColumnIndex(extendedColumn);
+        } else if (extendedColumn.size() == size) {
+            return new JSONTableColumnIndex(extendedColumn, this.segments);
+        }
+
+        // Segments only hold the indexes of their rows, which are the same in both columns, so they can be shared
+        List<Segment> extendedSegments = new ArrayList<>(this.segments);
+        Segment last = new Segment(size, extendedColumn.size());
+        while (!extendedSegments.isEmpty()
+            && extendedSegments.get(extendedSegments.size() - 1).size() <= 2 * last.size()) {
+            last = extendedSegments.remove(extendedSegments.size() - 1).merge(last, extendedColumn);
+        }
+        extendedSegments.add(last);
+        return new JSONTableColumnIndex(extendedColumn, extendedSegments);
+    }
+
+    /**
+     * @param value a value
+     * @return the rows having exactly the given value
+     */
+    public BitSet equalTo(String value)
+    {
+        BitSet result = new BitSet();
+        for (Segment segment : this.segments) {
+            ValueIndex index = segment.getValueIndex(this.column);
+            int id = Arrays.binarySearch(index.values, value);
+            if (id >= 0) {
+                index.addRows(id, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param prefix a prefix
+     * @return the rows having a value starting with the given prefix
+     */
+    public BitSet startingWith(String prefix)
+    {
+        BitSet result = new BitSet();
+        for (Segment segment : this.segments) {
+            ValueIndex index = segment.getValueIndex(this.column);
+            // Values are sorted, so the values starting with the prefix are all next to each other
+            int id = Arrays.binarySearch(index.values, prefix);
+            for (int i = (id >= 0) ? id : -id - 1; i < index.values.length && index.values[i].startsWith(prefix);
+                i++) {
+                index.addRows(i, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param value a value
+     * @return the rows having a value containing the given value
+     */
+    public BitSet containing(String value)
+    {
+        BitSet result = new BitSet();
+        for (Segment segment : this.segments) {
+            ValueIndex index = segment.getValueIndex(this.column);
+            if (value.length() < TRIGRAM_LENGTH) {
+                for (int i = 0; i < index.values.length; i++) {
+                    if (index.values[i].contains(value)) {
+                        index.addRows(i, result);
+                    }
+                }
+            } else {
+                for (int id : segment.getCandidates(this.column, value)) {
+                    if (index.values[id].contains(value)) {
+                        index.addRows(id, result);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the rows having a value between the given bounds. Values are compared using their {@link JSONTableSortKey},
+     * and only the values of the same type as the bounds can match.
+     *
+     * @param min the lower bound, or null if there is no lower bound
+     * @param minInclusive true if the values equal to the lower bound match
+     * @param max the upper bound, or null if there is no upper bound
+     * @param maxInclusive true if the values equal to the upper bound match
+     * @return the rows having a value between the given bounds
+     */
+    public BitSet inRange(JSONTableSortKey min, boolean minInclusive, JSONTableSortKey max, boolean maxInclusive)
+    {
+        BitSet result = new BitSet();
+        JSONTableSortKey bound = (min != null) ? min : max;
+        if (bound == null || bound.isNull() || (min != null && max != null && min.compareType(max) != 0)) {
+            return result;
+        }
+
+        for (Segment segment : this.segments) {
+            SortKeyIndex index = segment.getSortKeyIndex(this.column);
+            JSONTableSortKey[] keys = index.keys;
+            int typeStart = firstIndex(0, keys.length, i -> keys[i].compareType(bound) >= 0);
+            int typeEnd = firstIndex(typeStart, keys.length, i -> keys[i].compareType(bound) > 0);
+            int start = (min == null) ? typeStart
+                : firstIndex(typeStart, typeEnd, i -> keys[i].compareTo(min) > (minInclusive ? -1 : 0));
+            int end = (max == null) ? typeEnd
+                : firstIndex(start, typeEnd, i -> keys[i].compareTo(max) > (maxInclusive ? 0 : -1));
+            for (int i = start; i < end; i++) {
+                result.set(index.rows[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the indexed column
+     */
+    JSONTableColumn getColumn()
+    {
+        return this.column;
+    }
+
+    /**
+     * @return the number of segments of the index
+     */
+    int getSegmentCount()
+    {
+        return this.segments.size();
+    }
+
+    /**
+     * @return the first index between the given bounds for which the given predicate is true, assuming that the
+     *     predicate is false and then true, or the upper bound if the predicate is always false
+     */
+    private static int firstIndex(int from, int to, IntPredicate predicate)
+    {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (predicate.test(middle)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static long getTrigram(String value, int index)
+    {
+        return ((long) value.charAt(index) << 32) | ((long) value.charAt(index + 1) << 16) | value.charAt(index + 2);
+    }
+
+    /**
+     * The indexes of a range of rows. The indexes are built from the column of the first index to need them, which is
+     * fine since all the indexes sharing a segment have the same values for its rows.
+     */
+    private static final class Segment
+    {
+        private final int from;
+
+        private final int to;
+
+        private volatile ValueIndex valueIndex;
+
+        private volatile SortKeyIndex sortKeyIndex;
+
+        private volatile Map<Long, int[]> trigramIndex;
+
+        Segment(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        int size()
+        {
+            return this.to - this.from;
+        }
+
+        /**
+         * @return a segment holding the rows of this segment followed by the rows of the given segment, whose indexes
+         *     are merged from the indexes of both segments when this segment has been indexed already
+         */
+        Segment merge(Segment next, JSONTableColumn column)
+        {
+            Segment merged = new Segment(this.from, next.to);
+            if (this.valueIndex != null) {
+                merged.valueIndex = ValueIndex.merge(this.valueIndex, next.getValueIndex(column));
+            }
+            if (this.sortKeyIndex != null) {
+                merged.sortKeyIndex = SortKeyIndex.merge(this.sortKeyIndex, next.getSortKeyIndex(column));
+            }
+            // The trigram index is rebuilt from the merged values the next time it's needed
+            return merged;
+        }
+
+        /**
+         * @return the ids of the values that can contain the given value, which are the values containing its least
+         *     frequent trigram
+         */
+        int[] getCandidates(JSONTableColumn column, String value)
+        {
+            Map<Long, int[]> trigrams = getTrigramIndex(column);
+            int[] candidates = null;
+            for (int i = 0; i + TRIGRAM_LENGTH <= value.length(); i++) {
+                int[] ids = trigrams.get(getTrigram(value, i));
+                if (ids == null) {
+                    return new int[0];
+                } else if (candidates == null || ids.length < candidates.length) {
+                    candidates = ids;
+                }
+            }
+            return candidates;
+        }
+
+        ValueIndex getValueIndex(JSONTableColumn column)
+        {
+            ValueIndex index = this.valueIndex;
+            if (index == null) {
+                synchronized (this) {
+                    if (this.valueIndex == null) {
+                        this.valueIndex = buildValueIndex(column);
+                    }
+                    index = this.valueIndex;
+                }
+            }
+            return index;
+        }
+
+        private ValueIndex buildValueIndex(JSONTableColumn column)
+        {
+            // Sort the rows by value, keeping the rows having a same value in ascending order
+            Integer[] sortedRows = nonNullRows(column);
+            String[] rowValues = new String[size()];
+            for (int row : sortedRows) {
+                rowValues[row - this.from] = column.getValue(row);
+            }
+            Arrays.sort(sortedRows, Comparator.comparing(row -> rowValues[row - this.from]));
+
+            List<String> values = new ArrayList<>();
+            int[] starts = new int[sortedRows.length + 1];
+            int[] rows = new int[sortedRows.length];
+            for (int i = 0; i < sortedRows.length; i++) {
+                String value = rowValues[sortedRows[i] - this.from];
+                if (values.isEmpty() || !values.get(values.size() - 1).equals(value)) {
+                    starts[values.size()] = i;
+                    values.add(value);
+                }
+                rows[i] = sortedRows[i];
+            }
+            starts[values.size()] = sortedRows.length;
+
+            return new ValueIndex(values.toArray(new String[0]), Arrays.copyOf(starts, values.size() + 1), rows);
+        }
+
+        SortKeyIndex getSortKeyIndex(JSONTableColumn column)
+        {
+            SortKeyIndex index = this.sortKeyIndex;
+            if (index == null) {
+                synchronized (this) {
+                    if (this.sortKeyIndex == null) {
+                        this.sortKeyIndex = buildSortKeyIndex(column);
+                    }
+                    index = this.sortKeyIndex;
+                }
+            }
+            return index;
+        }
+
+        private SortKeyIndex buildSortKeyIndex(JSONTableColumn column)
+        {
+            Integer[] sortedRows = nonNullRows(column);
+            JSONTableSortKey[] rowKeys = new JSONTableSortKey[size()];
+            for (int row : sortedRows) {
+                rowKeys[row - this.from] = JSONTableSortKey.of(column.getValue(row));
+            }
+            Arrays.sort(sortedRows, Comparator.comparing(row -> rowKeys[row - this.from]));
+
+            JSONTableSortKey[] keys = new JSONTableSortKey[sortedRows.length];
+            int[] rows = new int[sortedRows.length];
+            for (int i = 0; i < sortedRows.length; i++) {
+                rows[i] = sortedRows[i];
+                keys[i] = rowKeys[rows[i] - this.from];
+            }
+            return new SortKeyIndex(keys, rows);
+        }
+
+        private Map<Long, int[]> getTrigramIndex(JSONTableColumn column)
+        {
+            Map<Long, int[]> index = this.trigramIndex;
+            if (index == null) {
+                synchronized (this) {
+                    if (this.trigramIndex == null) {
+                        this.trigramIndex = buildTrigramIndex(getValueIndex(column).values);
+                    }
+                    index = this.trigramIndex;
+                }
+            }
+            return index;
+        }
+
+        private static Map<Long, int[]> buildTrigramIndex(String[] values)
+        {
+            // Trigrams are indexed per distinct value rather than per row, which is usually much smaller
+            Map<Long, List<Integer>> ids = new HashMap<>();
+            Set<Long> valueTrigrams = new HashSet<>();
+            for (int id = 0; id < values.length; id++) {
+                valueTrigrams.clear();
+                for (int i = 0; i + TRIGRAM_LENGTH <= values[id].length(); i++) {
+                    valueTrigrams.add(getTrigram(values[id], i));
+                }
+                for (Long trigram : valueTrigrams) {
+                    ids.computeIfAbsent(trigram, k -> new ArrayList<>()).add(id);
+                }
+            }
+
+            Map<Long, int[]> index = new HashMap<>(ids.size() * 2);
+            ids.forEach((trigram, trigramIds) -> index.put(trigram,
+                trigramIds.stream().mapToInt(Integer::intValue).toArray()));
+            return index;
+        }
+
+        private Integer[] nonNullRows(JSONTableColumn column)
+        {
+            List<Integer> rows = new ArrayList<>();
+            for (int row = this.from; row < this.to; row++) {
+                if (!column.isNull(row)) {
+                    rows.add(row);
+                }
+            }
+            return rows.toArray(new Integer[0]);
+        }
+    }
+
+    /**
+     * The distinct values of a segment in natural order, along with the rows having each value.
+     */
+    private static final class ValueIndex
+    {
+        private final String[] values;
+
+        /**
+         * The position in {@link #rows} of the first row of each value.
+         */
+        private final int[] starts;
+
+        private final int[] rows;
+
+        ValueIndex(String[] values, int[] starts, int[] rows)
+        {
+            this.values = values;
+            this.starts = starts;
+            this.rows = rows;
+        }
+
+        void addRows(int id, BitSet result)
+        {
+            for (int i = this.starts[id]; i < this.starts[id + 1]; i++) {
+                result.set(this.rows[i]);
+            }
+        }
+
+        /**
+         * @return the index of the rows of both given indexes, the rows of the first index being before the rows of
+         *     the second one
+         */
+        static ValueIndex merge(ValueIndex first, ValueIndex second)
+        {
+            String[] values = new String[first.values.length + second.values.length];
+            int[] starts = new int[values.length + 1];
+            int[] rows = new int[first.rows.length + second.rows.length];
+            int count = 0;
+            int rowCount = 0;
+            int i = 0;
+            int j = 0;
+            while (i < first.values.length || j < second.values.length) {
+                int comparison = compare(first.values, i, second.values, j);
+                values[count] = (comparison <= 0) ? first.values[i] : second.values[j];
+                starts[count++] = rowCount;
+                // The rows of a same value stay in ascending order
+                if (comparison <= 0) {
+                    rowCount = first.copyRows(i++, rows, rowCount);
+                }
+                if (comparison >= 0) {
+                    rowCount = second.copyRows(j++, rows, rowCount);
+                }
+            }
+            starts[count] = rowCount;
+            return new ValueIndex(Arrays.copyOf(values, count), Arrays.copyOf(starts, count + 1), rows);
+        }
+
+        /**
+         * @return the comparison of the given values, a missing value being greater than any value
+         */
+        private static int compare(String[] values, int i, String[] otherValues, int j)
+        {
+            if (i == values.length) {
+                return 1;
+            } else if (j == otherValues.length) {
+                return -1;
+            } else {
+                return values[i].compareTo(otherValues[j]);
+            }
+        }
+
+        private int copyRows(int id, int[] target, int position)
+        {
+            int length = this.starts[id + 1] - this.starts[id];
+            System.arraycopy(this.rows, this.starts[id], target, position, length);
+            return position + length;
+        }
+    }
+
+    /**
+     * The rows of a segment having a value, sorted by {@link JSONTableSortKey}.
+     */
+    private static final class SortKeyIndex
+    {
+        private final JSONTableSortKey[] keys;
+
+        private final int[] rows;
+
+        SortKeyIndex(JSONTableSortKey[] keys, int[] rows)
+        {
+            this.keys = keys;
+            this.rows = rows;
+        }
+
+        /**
+         * @return the index of the rows of both given indexes, the rows of the first index being before the rows of
+         *     the second one
+         */
+        static SortKeyIndex merge(SortKeyIndex first, SortKeyIndex second)
+        {
+            JSONTableSortKey[] keys = new JSONTableSortKey[first.keys.length + second.keys.length];
+            int[] rows = new int[keys.length];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < keys.length; k++) {
+                // Rows having equal keys stay in ascending order
+                boolean fromFirst = j == second.keys.length
+                    || (i < first.keys.length && first.keys[i].compareTo(second.keys[j]) <= 0);
+                if (fromFirst) {
+                    keys[k] = first.keys[i];
+                    rows[k] = first.rows[i++];
+                } else {
+                    keys[k] = second.keys[j];
+                    rows[k] = second.rows[j++];
+                }
+            }
+            return new SortKeyIndex(keys, rows);
+        }
+    }
+}
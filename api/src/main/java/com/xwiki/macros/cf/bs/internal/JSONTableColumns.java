@@ -0,0 +1,1042 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntToLongFunction;
+import java.util.function.ToLongFunction;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xwiki.macros.cf.bs.internal.livedata.JSONTableSortKey;
+
+/**
+ * Compact implementations of {@link JSONTableColumn}. Integer and decimal columns are stored as primitive arrays,
+ * columns with few distinct values are dictionary encoded, and other columns share a pool of strings. The arrays are
+ * shared by the successive versions of a column built by appending rows, so that appending rows doesn't copy the
+ * existing ones.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableColumns
+{
+    // Rough estimation of the heap size of a string, besides its characters, in bytes
+    private static final int STRING_SIZE = 40;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final int NO_ROW = Integer.MAX_VALUE;
+
+    private static final ToLongFunction<JsonNode> LONG_BITS = JsonNode::longValue;
+
+    private static final ToLongFunction<JsonNode> DOUBLE_BITS =
+        value -> Double.doubleToRawLongBits(value.doubleValue());
+
+    private JSONTableColumns()
+    {
+        // Utility class
+    }
+
+    /**
+     * Build the most compact column able to hold the given values.
+     *
+     * @param values the values of the column, null when the field path has no value
+     * @param stringPool the pool of strings shared by the columns of a same projection
+     * @return the column
+     */
+    public static JSONTableColumn build(JsonNode[] values, Map<String, String> stringPool)
+    {
+        if (isIntegral(values)) {
+            SharedNumbers numbers = new SharedNumbers(LONG_BITS, values.length);
+            numbers.append(0, values);
+            return new ArrayLongColumn(numbers, values.length);
+        } else if (isFloatingPoint(values)) {
+            SharedNumbers numbers = new SharedNumbers(DOUBLE_BITS, values.length);
+            numbers.append(0, values);
+            return new ArrayDoubleColumn(numbers, values.length);
+        } else {
+            return buildStringColumn(toStrings(values, stringPool));
+        }
+    }
+
+    /**
+     * Build a column holding the values of the given column followed by the given values. The values of the given
+     * column don't need to be resolved again, and are usually not even copied: the appended values are written after
+     * them, in the arrays shared with the given column. The result holds the same values as the column that
+     * {@link #build(JsonNode[], Map)} would have built from all the values, and has the same type, except for the
+     * columns of strings with many distinct values, which are never turned into dictionary columns.
+     *
+     * @param column the column holding the first values
+     * @param values the values to append, null when the field path has no value
+     * @param stringPool the pool of strings shared by the columns of a same projection
+     * @return the column
+     */
+    public static JSONTableColumn append(JSONTableColumn column, JsonNode[] values, Map<String, String> stringPool)
+    {
+        if (column instanceof AbstractColumn) {
+            return ((AbstractColumn) column).append(values, stringPool);
+        } else {
+            return copyAndAppend(column, hasValues(column), values, stringPool);
+        }
+    }
+
+    /**
+     * @param value a JSON value
+     * @return the string displayed for the given value, or null if there is no value
+     */
+    public static String toString(JsonNode value)
+    {
+        if (value == null || value.isNull()) {
+            return null;
+        } else if (value.isFloatingPointNumber() && !value.isBigDecimal()) {
+            return toPlainString(value.doubleValue());
+        } else {
+            return value.isValueNode() ? value.asText() : value.toString();
+        }
+    }
+
+    /**
+     * @param value a decimal number
+     * @return the string displayed for the given number, which never uses the scientific notation
+     */
+    static String toPlainString(double value)
+    {
+        String result = Double.toString(value);
+        if (Double.isFinite(value) && result.indexOf('E') >= 0) {
+            // Large and small numbers would otherwise be displayed as 1.23456789E7, which is not how sources write them
+            result = new BigDecimal(result).stripTrailingZeros().toPlainString();
+            if (result.indexOf('.') < 0) {
+                result += ".0";
+            }
+        }
+        return result;
+    }
+
+    private static String[] toStrings(JsonNode[] values, Map<String, String> stringPool)
+    {
+        // Values that are repeated across rows and columns are only stored once
+        String[] stringValues = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            String value = toString(values[i]);
+            stringValues[i] = (value != null) ? stringPool.computeIfAbsent(value, v -> v) : null;
+        }
+        return stringValues;
+    }
+
+    /**
+     * @param values strings
+     * @param count the number of strings to count, from the start of the array
+     * @return an estimation of the heap size of the strings, in bytes
+     */
+    static long getStringsWeight(String[] values, int count)
+    {
+        long weight = (long) count * Long.BYTES;
+        for (int i = 0; i < count; i++) {
+            if (values[i] != null) {
+                weight += STRING_SIZE + values[i].length();
+            }
+        }
+        return weight;
+    }
+
+    private static int getCapacity(int size)
+    {
+        return Math.max(MIN_CAPACITY, size + (size >> 1));
+    }
+
+    private static boolean hasValues(JSONTableColumn column)
+    {
+        for (int i = 0; i < column.size(); i++) {
+            if (!column.isNull(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIntegral(JsonNode[] values)
+    {
+        for (JsonNode value : values) {
+            if (value != null && !value.isNull() && !(value.isIntegralNumber() && value.canConvertToLong())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isFloatingPoint(JsonNode[] values)
+    {
+        for (JsonNode value : values) {
+            if (value != null && !value.isNull() && !(value.isFloatingPointNumber() && value.isDouble())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append the given values to a new column, copying the values of the given column. The values of a column without
+     * values can have any type, while a column whose type doesn't fit the appended values is stored as text, as it
+     * would have been if all the values had been there from the start.
+     */
+    private static JSONTableColumn copyAndAppend(JSONTableColumn column, boolean hasValues, JsonNode[] values,
+        Map<String, String> stringPool)
+    {
+        int size = column.size();
+        if (!hasValues) {
+            // The type of a column without values only depends on the appended values
+            JsonNode[] allValues = new JsonNode[size + values.length];
+            System.arraycopy(values, 0, allValues, size, values.length);
+            return build(allValues, stringPool);
+        }
+
+        String[] stringValues = new String[size + values.length];
+        for (int i = 0; i < size; i++) {
+            stringValues[i] = column.getValue(i);
+        }
+        System.arraycopy(toStrings(values, stringPool), 0, stringValues, size, values.length);
+        return buildStringColumn(stringValues);
+    }
+
+    private static JSONTableColumn buildStringColumn(String[] values)
+    {
+        Set<String> distinctValues = new HashSet<>();
+        for (String value : values) {
+            if (value != null) {
+                distinctValues.add(value);
+            }
+        }
+
+        // Only use a dictionary when it's smaller than the values themselves
+        if (distinctValues.size() <= values.length / 2) {
+            SharedCodes codes = new SharedCodes(values.length);
+            int dictionarySize = codes.append(0, values, values.length);
+            return new ArrayDictionaryColumn(codes, values.length, dictionarySize);
+        } else {
+            SharedStrings strings = new SharedStrings(values.length);
+            strings.append(0, values);
+            return new ArrayStringColumn(strings, values.length);
+        }
+    }
+
+    /**
+     * Write the given column in the format read by {@link JSONTableMappedColumns#read(java.nio.ByteBuffer, int)}.
+     *
+     * @param column the column to write
+     * @param out the output to write to
+     * @throws IOException if the column cannot be written
+     */
+    static void write(JSONTableColumn column, DataOutput out) throws IOException
+    {
+        if (column instanceof LongColumn) {
+            out.writeByte(JSONTableMappedColumns.LONG);
+            writeNulls(column, out);
+            for (int i = 0; i < column.size(); i++) {
+                out.writeLong(((LongColumn) column).getLong(i));
+            }
+        } else if (column instanceof DoubleColumn) {
+            out.writeByte(JSONTableMappedColumns.DOUBLE);
+            writeNulls(column, out);
+            for (int i = 0; i < column.size(); i++) {
+                out.writeDouble(((DoubleColumn) column).getDouble(i));
+            }
+        } else if (column instanceof DictionaryColumn) {
+            DictionaryColumn dictionaryColumn = (DictionaryColumn) column;
+            out.writeByte(JSONTableMappedColumns.DICTIONARY);
+            String[] dictionary = new String[dictionaryColumn.getDictionarySize()];
+            for (int code = 0; code < dictionary.length; code++) {
+                dictionary[code] = dictionaryColumn.getDictionaryValue(code);
+            }
+            writeStrings(dictionary, out);
+            for (int i = 0; i < column.size(); i++) {
+                out.writeInt(dictionaryColumn.getCode(i));
+            }
+        } else {
+            out.writeByte(JSONTableMappedColumns.STRING);
+            String[] values = new String[column.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = column.getValue(i);
+            }
+            writeStrings(values, out);
+        }
+    }
+
+    private static void writeNulls(JSONTableColumn column, DataOutput out) throws IOException
+    {
+        BitSet nulls = new BitSet(column.size());
+        for (int i = 0; i < column.size(); i++) {
+            if (column.isNull(i)) {
+                nulls.set(i);
+            }
+        }
+        writeBitSet(nulls, out);
+    }
+
+    private static void writeBitSet(BitSet bitSet, DataOutput out) throws IOException
+    {
+        long[] words = bitSet.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static void writeStrings(String[] values, DataOutput out) throws IOException
+    {
+        BitSet nulls = new BitSet(values.length);
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                nulls.set(i);
+                bytes[i] = new byte[0];
+            } else {
+                bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        writeBitSet(nulls, out);
+        out.writeInt(values.length);
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] value : bytes) {
+            offset += value.length;
+            out.writeInt(offset);
+        }
+        for (byte[] value : bytes) {
+            out.write(value);
+        }
+    }
+
+    /**
+     * Base class of the columns, which can have values appended to them.
+     */
+    abstract static class AbstractColumn implements JSONTableColumn
+    {
+        /**
+         * @param values the values to append, null when the field path has no value
+         * @param stringPool the pool of strings shared by the columns of a same projection
+         * @return a column holding the values of this column followed by the given values
+         * @see JSONTableColumns#append(JSONTableColumn, JsonNode[], Map)
+         */
+        JSONTableColumn append(JsonNode[] values, Map<String, String> stringPool)
+        {
+            return copyAndAppend(this, hasValues(), values, stringPool);
+        }
+
+        /**
+         * @return true if at least one row of the column has a value
+         */
+        boolean hasValues()
+        {
+            return JSONTableColumns.hasValues(this);
+        }
+    }
+
+    /**
+     * Column of integers.
+     */
+    abstract static class LongColumn extends AbstractColumn
+    {
+        /**
+         * @param row the row index
+         * @return the value of the row
+         */
+        abstract long getLong(int row);
+
+        @Override
+        public String getValue(int row)
+        {
+            return isNull(row) ? null : Long.toString(getLong(row));
+        }
+
+        @Override
+        public int compare(int row, int otherRow)
+        {
+            return Long.compare(getLong(row), getLong(otherRow));
+        }
+
+        @Override
+        JSONTableColumn append(JsonNode[] values, Map<String, String> stringPool)
+        {
+            if (!isIntegral(values)) {
+                return super.append(values, stringPool);
+            }
+
+            // The values of this column are copied once, after which the next values are appended in place
+            int size = size();
+            SharedNumbers numbers =
+                SharedNumbers.copyOf(this, this::getLong, LONG_BITS, getCapacity(size + values.length));
+            numbers.append(size, values);
+            return new ArrayLongColumn(numbers, size + values.length);
+        }
+    }
+
+    /**
+     * Column of decimal numbers.
+     */
+    abstract static class DoubleColumn extends AbstractColumn
+    {
+        /**
+         * @param row the row index
+         * @return the value of the row
+         */
+        abstract double getDouble(int row);
+
+        @Override
+        public String getValue(int row)
+        {
+            return isNull(row) ? null : toPlainString(getDouble(row));
+        }
+
+        @Override
+        public int compare(int row, int otherRow)
+        {
+            return Double.compare(getDouble(row), getDouble(otherRow));
+        }
+
+        @Override
+        JSONTableColumn append(JsonNode[] values, Map<String, String> stringPool)
+        {
+            if (!isFloatingPoint(values)) {
+                return super.append(values, stringPool);
+            }
+
+            // The values of this column are copied once, after which the next values are appended in place
+            int size = size();
+            SharedNumbers numbers = SharedNumbers.copyOf(this, row -> Double.doubleToRawLongBits(getDouble(row)),
+                DOUBLE_BITS, getCapacity(size + values.length));
+            numbers.append(size, values);
+            return new ArrayDoubleColumn(numbers, size + values.length);
+        }
+    }
+
+    /**
+     * Column with few distinct values, storing one code per row.
+     */
+    abstract static class DictionaryColumn extends AbstractColumn
+    {
+        private volatile int[] ranks;
+
+        /**
+         * @param row the row index
+         * @return the code of the value of the row, or -1 if the row has no value
+         */
+        abstract int getCode(int row);
+
+        /**
+         * @return the number of distinct values of the column
+         */
+        abstract int getDictionarySize();
+
+        /**
+         * @param code the code of a value
+         * @return the value
+         */
+        abstract String getDictionaryValue(int code);
+
+        @Override
+        public boolean isNull(int row)
+        {
+            return getCode(row) < 0;
+        }
+
+        @Override
+        public String getValue(int row)
+        {
+            int code = getCode(row);
+            return (code < 0) ? null : getDictionaryValue(code);
+        }
+
+        @Override
+        public int compare(int row, int otherRow)
+        {
+            int[] dictionaryRanks = (this.ranks != null) ? this.ranks : getRanks();
+            return Integer.compare(dictionaryRanks[getCode(row)], dictionaryRanks[getCode(otherRow)]);
+        }
+
+        private synchronized int[] getRanks()
+        {
+            // Only the dictionary needs to be sorted, then rows are compared using the rank of their code
+            if (this.ranks == null) {
+                int dictionarySize = getDictionarySize();
+                JSONTableSortKey[] sortKeys = new JSONTableSortKey[dictionarySize];
+                Integer[] sortedCodes = new Integer[dictionarySize];
+                for (int i = 0; i < dictionarySize; i++) {
+                    sortKeys[i] = JSONTableSortKey.of(getDictionaryValue(i));
+                    sortedCodes[i] = i;
+                }
+                Arrays.sort(sortedCodes, Comparator.comparing(code -> sortKeys[code]));
+
+                int[] dictionaryRanks = new int[dictionarySize];
+                for (int i = 0; i < sortedCodes.length; i++) {
+                    dictionaryRanks[sortedCodes[i]] = i;
+                }
+                this.ranks = dictionaryRanks;
+            }
+            return this.ranks;
+        }
+    }
+
+    /**
+     * Column of strings with many distinct values.
+     */
+    abstract static class StringColumn extends AbstractColumn
+    {
+        private volatile JSONTableSortKey[] sortKeys;
+
+        @Override
+        public boolean isNull(int row)
+        {
+            return getValue(row) == null;
+        }
+
+        @Override
+        public int compare(int row, int otherRow)
+        {
+            JSONTableSortKey[] columnSortKeys = (this.sortKeys != null) ? this.sortKeys : getSortKeys();
+            return columnSortKeys[row].compareTo(columnSortKeys[otherRow]);
+        }
+
+        /**
+         * @return the sort key of the value of each row
+         */
+        JSONTableSortKey[] buildSortKeys()
+        {
+            JSONTableSortKey[] columnSortKeys = new JSONTableSortKey[size()];
+            for (int i = 0; i < columnSortKeys.length; i++) {
+                columnSortKeys[i] = JSONTableSortKey.of(getValue(i));
+            }
+            return columnSortKeys;
+        }
+
+        private synchronized JSONTableSortKey[] getSortKeys()
+        {
+            // Sort keys are only computed for the columns that actually get sorted, and then reused across requests
+            if (this.sortKeys == null) {
+                this.sortKeys = buildSortKeys();
+            }
+            return this.sortKeys;
+        }
+    }
+
+    /**
+     * Numbers shared by the successive versions of a numeric column, stored as the bits of a long. Rows are only ever
+     * appended, and each version of the column only reads its own rows, so the rows appended to the latest version are
+     * written in place rather than after a copy of the previous rows.
+     */
+    private static final class SharedNumbers
+    {
+        private final ToLongFunction<JsonNode> toBits;
+
+        /**
+         * The values of the rows, published through a volatile write once rows are appended.
+         */
+        private volatile long[] values;
+
+        /**
+         * One bit per row, set for the rows without value.
+         */
+        private volatile long[] nulls;
+
+        private int size;
+
+        private int firstValueRow = NO_ROW;
+
+        SharedNumbers(ToLongFunction<JsonNode> toBits, int capacity)
+        {
+            this.toBits = toBits;
+            this.values = new long[capacity];
+            this.nulls = new long[getWordCount(capacity)];
+        }
+
+        static SharedNumbers copyOf(JSONTableColumn column, IntToLongFunction bits, ToLongFunction<JsonNode> toBits,
+            int capacity)
+        {
+            SharedNumbers numbers = new SharedNumbers(toBits, capacity);
+            for (int row = 0; row < column.size(); row++) {
+                if (column.isNull(row)) {
+                    numbers.nulls[row / Long.SIZE] |= 1L << row;
+                } else {
+                    numbers.values[row] = bits.applyAsLong(row);
+                    numbers.firstValueRow = Math.min(numbers.firstValueRow, row);
+                }
+            }
+            numbers.size = column.size();
+            return numbers;
+        }
+
+        boolean isNull(int row)
+        {
+            return (this.nulls[row / Long.SIZE] & (1L << row)) != 0;
+        }
+
+        long getBits(int row)
+        {
+            return this.values[row];
+        }
+
+        synchronized boolean hasValues(int rowCount)
+        {
+            return this.firstValueRow < rowCount;
+        }
+
+        /**
+         * @param rowCount the number of rows of the version of the column to which the values are appended
+         * @param newValues the values to append, null when the field path has no value
+         * @return true if the values have been appended, false if the given version is not the latest version of
+         *     the column, in which case its rows need to be copied
+         */
+        synchronized boolean append(int rowCount, JsonNode[] newValues)
+        {
+            if (rowCount != this.size) {
+                return false;
+            }
+
+            int newSize = this.size + newValues.length;
+            long[] newBits = this.values;
+            long[] newNulls = this.nulls;
+            if (newSize > newBits.length) {
+                int capacity = getCapacity(newSize);
+                newBits = Arrays.copyOf(newBits, capacity);
+                newNulls = Arrays.copyOf(newNulls, getWordCount(capacity));
+            }
+            for (int i = 0; i < newValues.length; i++) {
+                int row = this.size + i;
+                if (newValues[i] == null || newValues[i].isNull()) {
+                    newNulls[row / Long.SIZE] |= 1L << row;
+                } else {
+                    newBits[row] = this.toBits.applyAsLong(newValues[i]);
+                    this.firstValueRow = Math.min(this.firstValueRow, row);
+                }
+            }
+            this.size = newSize;
+            this.values = newBits;
+            this.nulls = newNulls;
+            return true;
+        }
+
+        private static int getWordCount(int capacity)
+        {
+            return (capacity + Long.SIZE - 1) / Long.SIZE;
+        }
+    }
+
+    /**
+     * Dictionary and codes shared by the successive versions of a dictionary column.
+     *
+     * @see SharedNumbers
+     */
+    private static final class SharedCodes
+    {
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        private volatile String[] dictionary = new String[0];
+
+        private volatile int[] rowCodes;
+
+        private int size;
+
+        SharedCodes(int capacity)
+        {
+            this.rowCodes = new int[capacity];
+        }
+
+        int getCode(int row)
+        {
+            return this.rowCodes[row];
+        }
+
+        String getValue(int code)
+        {
+            return this.dictionary[code];
+        }
+
+        /**
+         * @param rowCount the number of rows of the version of the column to which the values are appended
+         * @param newValues the values to append, null when the field path has no value
+         * @param maxDictionarySize the maximum number of distinct values of the resulting column
+         * @return the number of distinct values of the resulting column, or -1 if the given version is not the
+         *     latest version of the column or if the resulting column would have too many distinct values, in which
+         *     case the rows of the given version need to be copied
+         */
+        synchronized int append(int rowCount, String[] newValues, int maxDictionarySize)
+        {
+            if (rowCount != this.size || (this.codes.size() + newValues.length > maxDictionarySize
+                && countDistinctValues(newValues) > maxDictionarySize)) {
+                return -1;
+            }
+
+            int newSize = this.size + newValues.length;
+            int[] newCodes = this.rowCodes;
+            if (newSize > newCodes.length) {
+                newCodes = Arrays.copyOf(newCodes, getCapacity(newSize));
+            }
+            String[] newDictionary = this.dictionary;
+            for (int i = 0; i < newValues.length; i++) {
+                int code = -1;
+                if (newValues[i] != null) {
+                    Integer existingCode = this.codes.get(newValues[i]);
+                    if (existingCode != null) {
+                        code = existingCode;
+                    } else {
+                        code = this.codes.size();
+                        if (code == newDictionary.length) {
+                            newDictionary = Arrays.copyOf(newDictionary, getCapacity(code + 1));
+                        }
+                        newDictionary[code] = newValues[i];
+                        this.codes.put(newValues[i], code);
+                    }
+                }
+                newCodes[this.size + i] = code;
+            }
+            this.size = newSize;
+            this.dictionary = newDictionary;
+            this.rowCodes = newCodes;
+            return this.codes.size();
+        }
+
+        private int countDistinctValues(String[] newValues)
+        {
+            Set<String> addedValues = new HashSet<>();
+            for (String value : newValues) {
+                if (value != null && !this.codes.containsKey(value)) {
+                    addedValues.add(value);
+                }
+            }
+            return this.codes.size() + addedValues.size();
+        }
+    }
+
+    /**
+     * Strings shared by the successive versions of a string column, along with their sort keys once the column gets
+     * sorted.
+     *
+     * @see SharedNumbers
+     */
+    private static final class SharedStrings
+    {
+        private volatile String[] values;
+
+        private volatile JSONTableSortKey[] sortKeys = new JSONTableSortKey[0];
+
+        private int size;
+
+        private int sortKeyCount;
+
+        private int firstValueRow = NO_ROW;
+
+        SharedStrings(int capacity)
+        {
+            this.values = new String[capacity];
+        }
+
+        String get(int row)
+        {
+            return this.values[row];
+        }
+
+        synchronized boolean hasValues(int rowCount)
+        {
+            return this.firstValueRow < rowCount;
+        }
+
+        /**
+         * @param rowCount the number of rows of the version of the column to which the values are appended
+         * @param newValues the values to append, null when the field path has no value
+         * @return true if the values have been appended, false if the given version is not the latest version of
+         *     the column, in which case its rows need to be copied
+         */
+        synchronized boolean append(int rowCount, String[] newValues)
+        {
+            if (rowCount != this.size) {
+                return false;
+            }
+
+            int newSize = this.size + newValues.length;
+            String[] newStrings = this.values;
+            if (newSize > newStrings.length) {
+                newStrings = Arrays.copyOf(newStrings, getCapacity(newSize));
+            }
+            for (int i = 0; i < newValues.length; i++) {
+                newStrings[this.size + i] = newValues[i];
+                if (newValues[i] != null) {
+                    this.firstValueRow = Math.min(this.firstValueRow, this.size + i);
+                }
+            }
+            this.size = newSize;
+            this.values = newStrings;
+            return true;
+        }
+
+        /**
+         * @param rowCount the number of rows of a version of the column
+         * @return the sort keys of the rows of the given version, only computing the ones of the rows appended since
+         *     the last call
+         */
+        synchronized JSONTableSortKey[] getSortKeys(int rowCount)
+        {
+            if (this.sortKeyCount < rowCount) {
+                String[] strings = this.values;
+                JSONTableSortKey[] keys = this.sortKeys;
+                if (rowCount > keys.length) {
+                    keys = Arrays.copyOf(keys, strings.length);
+                }
+                for (int row = this.sortKeyCount; row < rowCount; row++) {
+                    keys[row] = JSONTableSortKey.of(strings[row]);
+                }
+                this.sortKeyCount = rowCount;
+                this.sortKeys = keys;
+            }
+            return this.sortKeys;
+        }
+    }
+
+    private static final class ArrayLongColumn extends LongColumn
+    {
+        private final SharedNumbers numbers;
+
+        private final int size;
+
+        ArrayLongColumn(SharedNumbers numbers, int size)
+        {
+            this.numbers = numbers;
+            this.size = size;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+
+        @Override
+        public boolean isNull(int row)
+        {
+            return this.numbers.isNull(row);
+        }
+
+        @Override
+        long getLong(int row)
+        {
+            return this.numbers.getBits(row);
+        }
+
+        @Override
+        boolean hasValues()
+        {
+            return this.numbers.hasValues(this.size);
+        }
+
+        @Override
+        JSONTableColumn append(JsonNode[] values, Map<String, String> stringPool)
+        {
+            if (isIntegral(values) && this.numbers.append(this.size, values)) {
+                return new ArrayLongColumn(this.numbers, this.size + values.length);
+            }
+            return super.append(values, stringPool);
+        }
+
+        @Override
+        public long getWeight()
+        {
+            return (long) this.size * Long.BYTES + this.size / Byte.SIZE;
+        }
+    }
+
+    private static final class ArrayDoubleColumn extends DoubleColumn
+    {
+        private final SharedNumbers numbers;
+
+        private final int size;
+
+        ArrayDoubleColumn(SharedNumbers numbers, int size)
+        {
+            this.numbers = numbers;
+            this.size = size;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+
+        @Override
+        public boolean isNull(int row)
+        {
+            return this.numbers.isNull(row);
+        }
+
+        @Override
+        double getDouble(int row)
+        {
+            return Double.longBitsToDouble(this.numbers.getBits(row));
+        }
+
+        @Override
+        boolean hasValues()
+        {
+            return this.numbers.hasValues(this.size);
+        }
+
+        @Override
+        JSONTableColumn append(JsonNode[] values, Map<String, String> stringPool)
+        {
+            if (isFloatingPoint(values) && this.numbers.append(this.size, values)) {
+                return new ArrayDoubleColumn(this.numbers, this.size + values.length);
+            }
+            return super.append(values, stringPool);
+        }
+
+        @Override
+        public long getWeight()
+        {
+            return (long) this.size * Double.BYTES + this.size / Byte.SIZE;
+        }
+    }
+
+    private static final class ArrayDictionaryColumn extends DictionaryColumn
+    {
+        private final SharedCodes codes;
+
+        private final int size;
+
+        private final int dictionarySize;
+
+        ArrayDictionaryColumn(SharedCodes codes, int size, int dictionarySize)
+        {
+            this.codes = codes;
+            this.size = size;
+            this.dictionarySize = dictionarySize;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+
+        @Override
+        int getCode(int row)
+        {
+            return this.codes.getCode(row);
+        }
+
+        @Override
+        int getDictionarySize()
+        {
+            return this.dictionarySize;
+        }
+
+        @Override
+        String getDictionaryValue(int code)
+        {
+            return this.codes.getValue(code);
+        }
+
+        @Override
+        boolean hasValues()
+        {
+            return this.dictionarySize > 0;
+        }
+
+        @Override
+        JSONTableColumn append(JsonNode[] values, Map<String, String> stringPool)
+        {
+            int newSize = this.size + values.length;
+            // The dictionary must stay smaller than the values themselves, as when building the column
+            int newDictionarySize = this.codes.append(this.size, toStrings(values, stringPool), newSize / 2);
+            if (newDictionarySize >= 0) {
+                return new ArrayDictionaryColumn(this.codes, newSize, newDictionarySize);
+            }
+            return super.append(values, stringPool);
+        }
+
+        @Override
+        public long getWeight()
+        {
+            return getStringsWeight(this.codes.dictionary, this.dictionarySize) + (long) this.size * Integer.BYTES;
+        }
+    }
+
+    private static final class ArrayStringColumn extends StringColumn
+    {
+        private final SharedStrings strings;
+
+        private final int size;
+
+        ArrayStringColumn(SharedStrings strings, int size)
+        {
+            this.strings = strings;
+            this.size = size;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+
+        @Override
+        public String getValue(int row)
+        {
+            return this.strings.get(row);
+        }
+
+        @Override
+        boolean hasValues()
+        {
+            return this.strings.hasValues(this.size);
+        }
+
+        @Override
+        JSONTableColumn append(JsonNode[] values, Map<String, String> stringPool)
+        {
+            if (this.strings.append(this.size, toStrings(values, stringPool))) {
+                return new ArrayStringColumn(this.strings, this.size + values.length);
+            }
+            return super.append(values, stringPool);
+        }
+
+        @Override
+        JSONTableSortKey[] buildSortKeys()
+        {
+            // The sort keys of the rows of the previous versions of the column are reused
+            return this.strings.getSortKeys(this.size);
+        }
+
+        @Override
+        public long getWeight()
+        {
+            // Values shared with other columns through the string pool are counted in each column
+            return getStringsWeight(this.strings.values, this.size);
+        }
+    }
+}
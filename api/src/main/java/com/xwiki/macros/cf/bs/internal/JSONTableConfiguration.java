@@ -0,0 +1,324 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+
+/**
+ * Configuration of the {@link JSONTableMacro}, read from the {@code xwiki.properties} file. Every property is
+ * prefixed with {@code jsonTable.}.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableConfiguration.class)
+@Singleton
+public class JSONTableConfiguration
+{
+    private static final String PREFIX = "jsonTable.";
+
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    /**
+     * @return the timeout in milliseconds until a connection to a JSON source is established
+     */
+    public int getHTTPConnectTimeout()
+    {
+        return this.configuration.getProperty(PREFIX + "http.connectTimeout", 10000);
+    }
+
+    /**
+     * @return the maximum time in milliseconds of inactivity between two data packets when reading a JSON source
+     */
+    public int getHTTPSocketTimeout()
+    {
+        return this.configuration.getProperty(PREFIX + "http.socketTimeout", 30000);
+    }
+
+    /**
+     * @return the timeout in milliseconds used when waiting for a connection from the connection pool
+     */
+    public int getHTTPConnectionRequestTimeout()
+    {
+        return this.configuration.getProperty(PREFIX + "http.connectionRequestTimeout", 10000);
+    }
+
+    /**
+     * @return the maximum number of pooled connections
+     */
+    public int getHTTPMaxConnections()
+    {
+        return this.configuration.getProperty(PREFIX + "http.maxConnections", 20);
+    }
+
+    /**
+     * @return the maximum number of pooled connections to a same host
+     */
+    public int getHTTPMaxConnectionsPerRoute()
+    {
+        return this.configuration.getProperty(PREFIX + "http.maxConnectionsPerRoute", 5);
+    }
+
+    /**
+     * @return the maximum time in milliseconds during which an idle connection is kept alive
+     */
+    public long getHTTPKeepAlive()
+    {
+        return this.configuration.getProperty(PREFIX + "http.keepAlive", 30000L);
+    }
+
+    /**
+     * @return the maximum size in bytes of a JSON source, or a negative value for no limit
+     */
+    public long getHTTPMaxBodySize()
+    {
+        return this.configuration.getProperty(PREFIX + "http.maxBodySize", 100L * 1024 * 1024);
+    }
+
+    /**
+     * @return the time in seconds during which data fetched from a URL is served without being revalidated, when
+     *     the source doesn't define its own freshness lifetime
+     */
+    public long getCacheSoftTTL()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.softTTL", 500L);
+    }
+
+    /**
+     * @return the time in seconds after the expiration of data fetched from a URL during which it can still be served
+     *     while being revalidated in the background
+     */
+    public long getCacheHardTTL()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.hardTTL", 3600L);
+    }
+
+    /**
+     * @return true if expired data should be served while being revalidated in the background
+     */
+    public boolean isCacheRefreshAheadEnabled()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.refreshAhead", true);
+    }
+
+    /**
+     * @return the number of threads used to revalidate expired data in the background
+     */
+    public int getCacheRefreshThreads()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.refreshThreads", 2);
+    }
+
+    /**
+     * @return the maximum number of parsed JSON sources kept in the cache
+     */
+    public int getCacheMaxEntries()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.maxEntries", 1000);
+    }
+
+    /**
+     * @return the time in seconds after which parsed JSON sources that are not used anymore are removed from the
+     *     cache
+     */
+    public int getCacheMaxIdle()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.maxIdle", 3600);
+    }
+
+    /**
+     * @return the maximum estimated heap size in bytes of the parsed JSON sources kept in the cache, or 0 or less to
+     *     only limit the cache by number of entries
+     */
+    public long getCacheMaxWeight()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.maxWeight", -1L);
+    }
+
+    /**
+     * @return true if the parsed JSON sources should also be stored on disk, so that they survive restarts
+     */
+    public boolean isPersistentCacheEnabled()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.persistent.enabled", false);
+    }
+
+    /**
+     * @return the time in seconds after which the JSON sources stored on disk that are not used anymore are deleted
+     */
+    public long getPersistentCacheMaxAge()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.persistent.maxAge", 604800L);
+    }
+
+    /**
+     * @return the maximum total size in bytes of the JSON sources stored on disk, the least recently used ones being
+     *     deleted first, or 0 or less for no limit
+     */
+    public long getPersistentCacheMaxSize()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.persistent.maxSize", 1024L * 1024 * 1024);
+    }
+
+    /**
+     * @return the number of most recently used JSON sources loaded from the disk when starting
+     */
+    public int getPersistentCacheWarmupSize()
+    {
+        return this.configuration.getProperty(PREFIX + "cache.persistent.warmupSize", 100);
+    }
+
+    /**
+     * @return true if the JSON Table caches should be coordinated with the other members of the cluster
+     */
+    public boolean isClusterEnabled()
+    {
+        return this.configuration.getProperty(PREFIX + "cluster.enabled", false);
+    }
+
+    /**
+     * @return the time in milliseconds to wait for the member of the cluster that has announced some data to send it,
+     *     before fetching it from its source
+     */
+    public long getClusterTimeout()
+    {
+        return this.configuration.getProperty(PREFIX + "cluster.timeout", 500L);
+    }
+
+    /**
+     * @return the maximum size in bytes of the data sent to another member of the cluster, larger data being fetched
+     *     from its source by the other member, or 0 or less for no limit
+     */
+    public long getClusterMaxPayloadSize()
+    {
+        return this.configuration.getProperty(PREFIX + "cluster.maxPayloadSize", 10L * 1024 * 1024);
+    }
+
+    /**
+     * @return the maximum number of JSON Table sources remembered to load their data again once evicted from the cache
+     */
+    public int getSourceCacheMaxEntries()
+    {
+        return this.configuration.getProperty(PREFIX + "source.cache.maxEntries", 10000);
+    }
+
+    /**
+     * @return the maximum estimated heap size in bytes of the JSON Table sources remembered to load their data again,
+     *     which includes the inline content of the tables, or 0 or less to only limit them by number of entries
+     */
+    public long getSourceCacheMaxWeight()
+    {
+        return this.configuration.getProperty(PREFIX + "source.cache.maxWeight", 64L * 1024 * 1024);
+    }
+
+    /**
+     * @return the maximum number of rows used to infer the columns of a JSON Table when its field paths are not
+     *     given, or 0 or less to use all the rows
+     */
+    public int getSchemaSampleSize()
+    {
+        return this.configuration.getProperty(PREFIX + "schema.sampleSize", 1000);
+    }
+
+    /**
+     * @return true if JSON sources should be read in streaming mode when possible, only keeping in memory the values
+     *     displayed by the table
+     */
+    public boolean isStreamingEnabled()
+    {
+        return this.configuration.getProperty(PREFIX + "streaming", true);
+    }
+
+    /**
+     * @return the number of rows from which the projections of a JSON Table are stored in memory mapped files
+     *     instead of the heap, or 0 or less to always keep them on the heap
+     */
+    public int getProjectionSpillRowThreshold()
+    {
+        return this.configuration.getProperty(PREFIX + "projection.spillRowThreshold", 100000);
+    }
+
+    /**
+     * @return the maximum number of threads used to compute the projection of a large JSON Table, or 1 to always
+     *     compute projections in the thread of the request
+     */
+    public int getProjectionParallelism()
+    {
+        return this.configuration.getProperty(PREFIX + "projection.parallelism",
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the number of rows from which the projection of a JSON Table is computed by several threads
+     */
+    public int getProjectionParallelThreshold()
+    {
+        return this.configuration.getProperty(PREFIX + "projection.parallelThreshold", 20000);
+    }
+
+    /**
+     * @return the maximum number of projections kept in the cache
+     */
+    public int getProjectionCacheMaxEntries()
+    {
+        return this.configuration.getProperty(PREFIX + "projection.cache.maxEntries", 1000);
+    }
+
+    /**
+     * @return the time in seconds after which projections are removed from the cache
+     */
+    public int getProjectionCacheLifespan()
+    {
+        return this.configuration.getProperty(PREFIX + "projection.cache.lifespan", 500);
+    }
+
+    /**
+     * @return the maximum estimated heap size in bytes of the projections kept in the cache, or 0 or less to only
+     *     limit the cache by number of entries
+     */
+    public long getProjectionCacheMaxWeight()
+    {
+        return this.configuration.getProperty(PREFIX + "projection.cache.maxWeight", 512L * 1024 * 1024);
+    }
+
+    /**
+     * @return the time in seconds after which unused projection files are deleted
+     */
+    public long getProjectionSpillMaxAge()
+    {
+        return this.configuration.getProperty(PREFIX + "projection.spillMaxAge", 86400L);
+    }
+
+    /**
+     * @return the maximum total size in bytes of the projection files, the least recently used ones being deleted
+     *     first, or 0 or less for no limit
+     */
+    public long getProjectionSpillMaxSize()
+    {
+        return this.configuration.getProperty(PREFIX + "projection.spillMaxSize", 2048L * 1024 * 1024);
+    }
+}
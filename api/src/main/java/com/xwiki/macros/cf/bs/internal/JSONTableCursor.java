@@ -0,0 +1,330 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.utils.URIBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Allows to only fetch the rows added to an append-only source since it has last been fetched. The value of a field
+ * of the last row is sent to the source as a query parameter, and the source is expected to answer with a document
+ * having the same structure, but only holding the rows that come after this row. These rows are then appended to the
+ * rows of the data already loaded. Sources that also send back the row identified by the value are supported: the
+ * rows of the answer up to this row are ignored.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableCursor
+{
+    private static final String ROOT_PREFIX = "$";
+
+    private static final String FIELD_SEPARATOR = ".";
+
+    private static final String ARRAY_WILDCARD = "[*]";
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final String[] arrayPath;
+
+    private final String[] fieldNames;
+
+    private final String parameter;
+
+    private final String key;
+
+    private JSONTableCursor(String[] arrayPath, String[] fieldNames, String parameter, String key)
+    {
+        this.arrayPath = arrayPath;
+        this.fieldNames = fieldNames;
+        this.parameter = parameter;
+        this.key = key;
+    }
+
+    /**
+     * @param path the JSON path of the rows
+     * @param fieldPath the field path of the value identifying the last row
+     * @param parameter the name of the query parameter used to send this value to the source
+     * @return the corresponding cursor, or null if the given paths are too complex to know where to append the rows
+     */
+    public static JSONTableCursor of(String path, String fieldPath, String parameter)
+    {
+        String arrayPath = StringUtils.removeStart(StringUtils.removeStart(path, ROOT_PREFIX), FIELD_SEPARATOR);
+        if (StringUtils.isAnyBlank(fieldPath, parameter) || !arrayPath.endsWith(ARRAY_WILDCARD)
+            || !JSONTableDataHelper.isSimplePath(fieldPath)) {
+            return null;
+        }
+
+        arrayPath = StringUtils.removeEnd(arrayPath, ARRAY_WILDCARD);
+        if (!arrayPath.isEmpty() && !JSONTableDataHelper.isSimplePath(arrayPath)) {
+            return null;
+        }
+
+        return new JSONTableCursor(StringUtils.split(arrayPath, FIELD_SEPARATOR),
+            StringUtils.split(StringUtils.removeStart(fieldPath, ROOT_PREFIX + FIELD_SEPARATOR), FIELD_SEPARATOR),
+            parameter, String.format("cursor:%s:%s:%s", path, fieldPath, parameter));
+    }
+
+    /**
+     * @return a string identifying this cursor
+     */
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @param node some data
+     * @return the value identifying the last row of the given data, or null if it cannot be found
+     */
+    public String getValue(JsonNode node)
+    {
+        ArrayNode rows = getArray(node);
+        if (rows == null || rows.size() == 0) {
+            return null;
+        }
+
+        return getRowValue(rows.get(rows.size() - 1));
+    }
+
+    /**
+     * @param node some data
+     * @return the number of rows of the given data
+     */
+    public int getRowCount(JsonNode node)
+    {
+        ArrayNode rows = getArray(node);
+        return (rows != null) ? rows.size() : 0;
+    }
+
+    /**
+     * @param url the URL of the source
+     * @param value the value identifying the last row already loaded
+     * @return the URL of the rows coming after the given row
+     * @throws URISyntaxException if the URL is invalid
+     * @throws MalformedURLException if the URL is invalid
+     */
+    public URL getURL(URL url, String value) throws URISyntaxException, MalformedURLException
+    {
+        return new URIBuilder(url.toURI()).setParameter(this.parameter, value).build().toURL();
+    }
+
+    /**
+     * Append the rows of the given delta to the rows of the given data. The given data is left untouched, as it may
+     * still be in use: only the containers leading to the rows are copied, the other values being shared. The rows
+     * themselves are kept in an array shared by the successive versions of the data, each version only seeing the
+     * rows it had when it was built, so that appending rows to the latest version doesn't copy all its rows.
+     *
+     * @param node the data already loaded
+     * @param delta the data holding the rows to append
+     * @return the resulting data, the given data itself if there are no rows to append, or null if the rows of one of
+     *     the given data could not be found
+     */
+    public JsonNode append(JsonNode node, JsonNode delta)
+    {
+        ArrayNode rows = getArray(node);
+        ArrayNode newRows = getArray(delta);
+        if (rows == null || newRows == null) {
+            return null;
+        }
+
+        int from = getFirstNewRow(rows, newRows);
+        if (from == newRows.size()) {
+            return node;
+        }
+
+        RowList rowList = (rows instanceof AppendedArrayNode) ? ((AppendedArrayNode) rows).rowList : null;
+        RowList result = (rowList != null) ? rowList.append(newRows, from) : null;
+        if (result == null) {
+            // The rows have not been appended by this cursor, or rows have already been appended to them
+            result = new SharedRows(rows, newRows.size() - from).append(rows.size(), newRows, from);
+        }
+        return replaceArray(node, 0, new AppendedArrayNode(result));
+    }
+
+    /**
+     * @return the index of the first row of the given new rows that comes after the last of the given rows, i.e. the
+     *     index following the row having the same cursor value as the last row, or 0 if there is no such row
+     */
+    private int getFirstNewRow(ArrayNode rows, ArrayNode newRows)
+    {
+        String lastValue = (rows.size() > 0) ? getRowValue(rows.get(rows.size() - 1)) : null;
+        if (lastValue != null) {
+            for (int i = 0; i < newRows.size(); i++) {
+                if (lastValue.equals(getRowValue(newRows.get(i)))) {
+                    return i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private String getRowValue(JsonNode row)
+    {
+        JsonNode value = row;
+        for (String fieldName : this.fieldNames) {
+            value = (value != null && value.isObject()) ? value.get(fieldName) : null;
+        }
+
+        return (value != null && value.isValueNode() && !value.isNull()) ? value.asText() : null;
+    }
+
+    private ArrayNode getArray(JsonNode node)
+    {
+        JsonNode result = node;
+        for (String fieldName : this.arrayPath) {
+            result = (result != null && result.isObject()) ? result.get(fieldName) : null;
+        }
+        return (result != null && result.isArray()) ? (ArrayNode) result : null;
+    }
+
+    private JsonNode replaceArray(JsonNode node, int depth, ArrayNode array)
+    {
+        if (depth == this.arrayPath.length) {
+            return array;
+        }
+
+        ObjectNode result = JsonNodeFactory.instance.objectNode();
+        result.setAll((ObjectNode) node);
+        result.set(this.arrayPath[depth], replaceArray(node.get(this.arrayPath[depth]), depth + 1, array));
+        return result;
+    }
+
+    /**
+     * The rows of a version of some data, i.e. the first rows of an array shared with the other versions of the data.
+     */
+    private static final class RowList extends AbstractList<JsonNode> implements RandomAccess
+    {
+        private final SharedRows sharedRows;
+
+        private final int size;
+
+        RowList(SharedRows sharedRows, int size)
+        {
+            this.sharedRows = sharedRows;
+            this.size = size;
+        }
+
+        @Override
+        public JsonNode get(int index)
+        {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, this.size));
+            }
+            return this.sharedRows.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+
+        /**
+         * @return the rows resulting from appending the given rows to these rows, or null if these rows are not the
+         *     latest version of the shared rows, in which case they need to be copied
+         */
+        RowList append(ArrayNode newRows, int from)
+        {
+            return this.sharedRows.append(this.size, newRows, from);
+        }
+    }
+
+    /**
+     * A growable array of rows, to which rows are only ever appended.
+     */
+    private static final class SharedRows
+    {
+        /**
+         * The rows, published through a volatile write once appended, so that the other versions of the data can
+         * keep reading their rows while rows are being appended.
+         */
+        private volatile JsonNode[] rows;
+
+        private int size;
+
+        SharedRows(ArrayNode rows, int appendedRowCount)
+        {
+            this.rows = new JsonNode[getCapacity(rows.size() + appendedRowCount)];
+            for (int i = 0; i < rows.size(); i++) {
+                this.rows[i] = rows.get(i);
+            }
+            this.size = rows.size();
+        }
+
+        JsonNode get(int index)
+        {
+            return this.rows[index];
+        }
+
+        synchronized RowList append(int currentSize, ArrayNode newRows, int from)
+        {
+            if (currentSize != this.size) {
+                return null;
+            }
+
+            int newSize = this.size + newRows.size() - from;
+            JsonNode[] newArray = this.rows;
+            if (newSize > newArray.length) {
+                newArray = Arrays.copyOf(newArray, getCapacity(newSize));
+            }
+            for (int i = from; i < newRows.size(); i++) {
+                newArray[this.size + i - from] = newRows.get(i);
+            }
+            this.size = newSize;
+            this.rows = newArray;
+            return new RowList(this, newSize);
+        }
+
+        private static int getCapacity(int size)
+        {
+            return Math.max(MIN_CAPACITY, size + (size >> 1));
+        }
+    }
+
+    /**
+     * An array of rows that have been appended by a cursor, and to which more rows can be appended without copying
+     * them.
+     */
+    private static final class AppendedArrayNode extends ArrayNode
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient RowList rowList;
+
+        AppendedArrayNode(RowList rowList)
+        {
+            super(JsonNodeFactory.instance, rowList);
+            this.rowList = rowList;
+        }
+    }
+}
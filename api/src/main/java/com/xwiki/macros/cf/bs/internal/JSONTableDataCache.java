@@ -22,89 +22,91 @@ package com.xwiki.macros.cf.bs.internal;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheException;
-import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.component.manager.ComponentLifecycleException;
-import org.xwiki.component.phase.Disposable;
-import org.xwiki.component.phase.Initializable;
-import org.xwiki.component.phase.InitializationException;
-
-import com.fasterxml.jackson.databind.JsonNode;
 
 /**
- * Cache used to store parsed JSON nodes for the {@link JSONTableMacro}.
+ * Cache used to store parsed JSON data for the {@link JSONTableMacro}. Besides the maximum number of entries, the
+ * cache can be bounded by the estimated heap size of the data it holds, in which case the least recently used entries
+ * are evicted first.
  *
  * @version $Id$
  * @since 1.0
  */
 @Component(roles = JSONTableDataCache.class)
 @Singleton
-public class JSONTableDataCache implements Initializable, Disposable
+public class JSONTableDataCache extends AbstractJSONTableWeightedCache<JSONTableDataEntry>
 {
     private static final String NAME = "cache.jsontable";
 
     @Inject
-    private CacheManager cacheManager;
+    private JSONTableConfiguration configuration;
+
+    @Inject
+    private JSONTableMetrics metrics;
 
-    private Cache<JsonNode> cache;
+    /**
+     * The key of the entry being explicitly removed by the current thread, if any.
+     */
+    private final ThreadLocal<String> removedKey = new ThreadLocal<>();
 
     @Override
-    public void initialize() throws InitializationException
+    public JSONTableDataEntry get(String key)
     {
-        this.cache = newCache();
+        JSONTableDataEntry entry = super.get(key);
+        this.metrics.recordCacheLookup(entry != null);
+        return entry;
     }
 
     @Override
-    public void dispose() throws ComponentLifecycleException
+    public void remove(String key)
     {
-        if (this.cache != null) {
-            this.cache.dispose();
+        // Looking the entry up would make it the most recently used one, so invalidations are told apart from
+        // evictions when the cache notifies the removal, which it does from the removing thread
+        this.removedKey.set(key);
+        try {
+            super.remove(key);
+        } finally {
+            this.removedKey.remove();
         }
     }
 
-    /**
-     * @param key the cache key
-     * @return the corresponding {@link JsonNode}. Returns null if the node does not exist.
-     */
-    public JsonNode get(String key)
+    @Override
+    public void cacheEntryRemoved(CacheEntryEvent<JSONTableDataEntry> event)
     {
-        return this.cache.get(key);
+        // Removals are also tracked to report the evictions in the metrics
+        this.metrics.recordCacheRemoval();
+        if (event.getEntry().getKey().equals(this.removedKey.get())) {
+            this.metrics.recordCacheInvalidation();
+        }
+        super.cacheEntryRemoved(event);
     }
 
-    /**
-     * @param key the cache key
-     * @param value the {@link JsonNode} to store
-     */
-    public void set(String key, JsonNode value)
+    @Override
+    protected CacheConfiguration getCacheConfiguration()
     {
-        this.cache.set(key, value);
+        CacheConfiguration cacheConfiguration = new CacheConfiguration();
+        cacheConfiguration.setConfigurationId(NAME);
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(this.configuration.getCacheMaxEntries());
+        // Entries are revalidated against their source once they expire, so we keep them as long as they are
+        // being used in order to be able to make conditional requests
+        lru.setMaxIdle(this.configuration.getCacheMaxIdle());
+        cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+        return cacheConfiguration;
     }
 
-    /**
-     * @param key the key to remove
-     */
-    public void remove(String key)
+    @Override
+    protected long getMaxWeight()
     {
-        this.cache.remove(key);
+        return this.configuration.getCacheMaxWeight();
     }
 
-    private Cache<JsonNode> newCache() throws InitializationException
+    @Override
+    protected long getWeight(JSONTableDataEntry value)
     {
-        try {
-            CacheConfiguration cacheConfiguration = new CacheConfiguration();
-            cacheConfiguration.setConfigurationId(NAME);
-            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
-            lru.setMaxEntries(1000);
-            // Make sure that JSON entries get updated every 500 seconds by default
-            lru.setLifespan(500);
-            cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
-            return this.cacheManager.createNewCache(cacheConfiguration);
-        } catch (CacheException e) {
-            throw new InitializationException("Failed to initialize JSON Table cache", e);
-        }
+        return value.getWeight();
     }
 }
@@ -0,0 +1,331 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Parsed JSON data stored in the {@link JSONTableDataCache}, along with the information needed to know when and how
+ * it should be revalidated against its source.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public class JSONTableDataEntry
+{
+    // Rough estimations of the heap size of the objects making a JSON tree, in bytes, used to compute the weight of
+    // the entries
+    private static final int NODE_SIZE = 24;
+
+    private static final int CONTAINER_SIZE = 64;
+
+    private static final int CONTAINER_ELEMENT_SIZE = 40;
+
+    private static final int STRING_SIZE = 40;
+
+    private static final String CONTENT_VERSION = "content";
+
+    private static final int LIVE_DATA_PARAMETERS_MAX_SIZE = 100;
+
+    private final JsonNode node;
+
+    private final String eTag;
+
+    private final String lastModified;
+
+    private final long validationTime;
+
+    private final long expirationTime;
+
+    private final String version;
+
+    private volatile long weight = -1;
+
+    /**
+     * The version of the data to which the rows of this data have been appended, if any.
+     */
+    private String appendedVersion;
+
+    /**
+     * The schemas inferred from the data, indexed by the path of the rows.
+     */
+    private ConcurrentMap<String, JSONTableSchema> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * The parameters of the LiveData macros generated for this data, indexed by the parameters of the JSON Table
+     * macro they have been generated from.
+     */
+    private ConcurrentMap<List<Object>, String> liveDataParameters = new ConcurrentHashMap<>();
+
+    /**
+     * Create an entry that never expires.
+     *
+     * @param node the parsed JSON data
+     */
+    public JSONTableDataEntry(JsonNode node)
+    {
+        this(node, null, null, System.currentTimeMillis(), Long.MAX_VALUE, CONTENT_VERSION);
+    }
+
+    /**
+     * @param node the parsed JSON data
+     * @param eTag the value of the {@code ETag} header sent by the source, if any
+     * @param lastModified the value of the {@code Last-Modified} header sent by the source, if any
+     * @param validationTime the time in milliseconds at which the data has been fetched or revalidated
+     * @param expirationTime the time in milliseconds after which the data needs to be revalidated
+     */
+    public JSONTableDataEntry(JsonNode node, String eTag, String lastModified, long validationTime,
+        long expirationTime)
+    {
+        this(node, eTag, lastModified, validationTime, expirationTime,
+            (eTag != null) ? "etag:" + eTag : ((lastModified != null) ? "last-modified:" + lastModified : null));
+    }
+
+    /**
+     * @param node the parsed JSON data
+     * @param eTag the value of the {@code ETag} header sent by the source, if any
+     * @param lastModified the value of the {@code Last-Modified} header sent by the source, if any
+     * @param validationTime the time in milliseconds at which the data has been fetched or revalidated
+     * @param expirationTime the time in milliseconds after which the data needs to be revalidated
+     * @param version the version of the data, as returned by {@link #getVersion()}
+     */
+    JSONTableDataEntry(JsonNode node, String eTag, String lastModified, long validationTime, long expirationTime,
+        String version)
+    {
+        this.node = node;
+        this.version = version;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.validationTime = validationTime;
+        this.expirationTime = expirationTime;
+    }
+
+    /**
+     * @return the parsed JSON data
+     */
+    public JsonNode getNode()
+    {
+        return this.node;
+    }
+
+    /**
+     * @return the value of the {@code ETag} header sent by the source, or null
+     */
+    public String getETag()
+    {
+        return this.eTag;
+    }
+
+    /**
+     * @return the value of the {@code Last-Modified} header sent by the source, or null
+     */
+    public String getLastModified()
+    {
+        return this.lastModified;
+    }
+
+    /**
+     * @return the time in milliseconds at which the data has been fetched or revalidated
+     */
+    public long getValidationTime()
+    {
+        return this.validationTime;
+    }
+
+    /**
+     * @return the time in milliseconds after which the data needs to be revalidated
+     */
+    public long getExpirationTime()
+    {
+        return this.expirationTime;
+    }
+
+    /**
+     * Inline content is identified by its key, which is a hash of the content, so all the inline content entries
+     * share a same version. Data fetched from a URL is identified by its validators, if any.
+     *
+     * @return a string identifying the version of the data among the data having the same key, or null if the
+     *     version cannot be identified
+     */
+    public String getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return true if the data needs to be revalidated against its source
+     */
+    public boolean isExpired()
+    {
+        return System.currentTimeMillis() >= this.expirationTime;
+    }
+
+    /**
+     * @param hardTTL the time in seconds after the expiration of the data during which it can still be served while
+     *     being revalidated in the background
+     * @return true if the data needs to be revalidated against its source before being served
+     */
+    public boolean isHardExpired(long hardTTL)
+    {
+        long hardTTLMillis = hardTTL * 1000L;
+        // Data that never expires, such as inline content, doesn't have a hard expiration either
+        return this.expirationTime <= Long.MAX_VALUE - hardTTLMillis
+            && System.currentTimeMillis() >= this.expirationTime + hardTTLMillis;
+    }
+
+    /**
+     * Create a new entry for the same data, once revalidated against its source.
+     *
+     * @param eTag the value of the {@code ETag} header sent by the source, if any
+     * @param lastModified the value of the {@code Last-Modified} header sent by the source, if any
+     * @param validationTime the time in milliseconds at which the data has been revalidated
+     * @param expirationTime the time in milliseconds after which the data needs to be revalidated
+     * @return the revalidated entry
+     */
+    public JSONTableDataEntry revalidate(String eTag, String lastModified, long validationTime, long expirationTime)
+    {
+        // Data identified by something else than its validators keeps its version as long as they don't change
+        JSONTableDataEntry entry = (Objects.equals(eTag, this.eTag) && Objects.equals(lastModified, this.lastModified))
+            ? new JSONTableDataEntry(this.node, eTag, lastModified, validationTime, expirationTime, this.version)
+            : new JSONTableDataEntry(this.node, eTag, lastModified, validationTime, expirationTime);
+        entry.appendedVersion = this.appendedVersion;
+        entry.weight = this.weight;
+        entry.schemas = this.schemas;
+        entry.liveDataParameters = this.liveDataParameters;
+        return entry;
+    }
+
+    /**
+     * Create a new entry for the data resulting from appending some rows to this data.
+     *
+     * @param appendedNode the data resulting from appending the rows to this data
+     * @param cursorValue the value identifying the last row of the resulting data
+     * @param rowCount the number of rows of the resulting data
+     * @param validationTime the time in milliseconds at which the rows have been fetched
+     * @param expirationTime the time in milliseconds after which the data needs to be revalidated
+     * @return the new entry
+     */
+    public JSONTableDataEntry append(JsonNode appendedNode, String cursorValue, int rowCount, long validationTime,
+        long expirationTime)
+    {
+        // The validators of the source don't apply to the appended data, so it's identified by its origin instead
+        String appendedDataVersion =
+            "appended:" + DigestUtils.sha256Hex(String.format("%s\n%s\n%d", this.version, cursorValue, rowCount));
+        JSONTableDataEntry entry = new JSONTableDataEntry(appendedNode, null, null, validationTime, expirationTime,
+            appendedDataVersion);
+        entry.appendedVersion = this.version;
+        return entry;
+    }
+
+    /**
+     * @return the version of the data to which the rows of this data have been appended, or null if this data has
+     *     not been built by appending rows to some other data
+     */
+    public String getAppendedVersion()
+    {
+        return this.appendedVersion;
+    }
+
+    /**
+     * @param path the path of the rows
+     * @param inferrer the function used to infer the schema of the rows matching a path, when not done already
+     * @return the schema of the rows matching the given path
+     */
+    public JSONTableSchema getSchema(String path, Function<String, JSONTableSchema> inferrer)
+    {
+        return this.schemas.computeIfAbsent(path, inferrer);
+    }
+
+    /**
+     * @param key the parameters of the JSON Table macro, along with the path of the rows
+     * @return the parameters of the LiveData macro generated for the given parameters, or null if not generated yet
+     */
+    public String getLiveDataParameters(List<Object> key)
+    {
+        return this.liveDataParameters.get(key);
+    }
+
+    /**
+     * @param key the parameters of the JSON Table macro, along with the path of the rows
+     * @param parameters the parameters of the LiveData macro generated for the given parameters
+     */
+    public void setLiveDataParameters(List<Object> key, String parameters)
+    {
+        // The same data is usually displayed by a few macros only, so we don't bother evicting old parameters
+        if (this.liveDataParameters.size() < LIVE_DATA_PARAMETERS_MAX_SIZE) {
+            this.liveDataParameters.put(key, parameters);
+        }
+    }
+
+    /**
+     * @return an estimation of the heap size of the parsed JSON data, in bytes
+     */
+    public long getWeight()
+    {
+        if (this.weight < 0) {
+            this.weight = estimateWeight(this.node);
+        }
+        return this.weight;
+    }
+
+    private static long estimateWeight(JsonNode root)
+    {
+        long result = 0;
+
+        // Go through the tree without recursion, as some documents can be deeply nested
+        Deque<JsonNode> nodes = new ArrayDeque<>();
+        nodes.push(root);
+        while (!nodes.isEmpty()) {
+            JsonNode node = nodes.pop();
+            if (node.isObject()) {
+                result += CONTAINER_SIZE;
+                for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+                    Map.Entry<String, JsonNode> field = it.next();
+                    result += CONTAINER_ELEMENT_SIZE + STRING_SIZE + field.getKey().length();
+                    nodes.push(field.getValue());
+                }
+            } else if (node.isArray()) {
+                result += CONTAINER_SIZE;
+                for (JsonNode element : node) {
+                    result += Long.BYTES;
+                    nodes.push(element);
+                }
+            } else if (node.isTextual()) {
+                result += NODE_SIZE + STRING_SIZE + node.textValue().length();
+            } else {
+                result += NODE_SIZE;
+            }
+        }
+
+        return result;
+    }
+}
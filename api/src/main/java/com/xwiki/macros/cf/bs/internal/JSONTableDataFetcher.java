@@ -0,0 +1,133 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.rendering.macro.MacroExecutionException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xwiki.macros.cf.bs.BSMacroException;
+
+/**
+ * Gets the data of the sources of the {@link JSONTableMacro}: inline content is parsed, and URL sources are fetched
+ * by the {@link JSONTableSourceFetcher}. Append-only sources having a {@link JSONTableCursor} only have their new
+ * rows fetched.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableDataFetcher.class)
+@Singleton
+public class JSONTableDataFetcher
+{
+    @Inject
+    private JSONTableSourceFetcher jsonTableSourceFetcher;
+
+    @Inject
+    private Logger logger;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param source a source having inline content
+     * @return the data parsed from the content of the source
+     * @throws MacroExecutionException if the content could not be parsed
+     */
+    public JSONTableDataEntry parse(JSONTableSource source) throws MacroExecutionException
+    {
+        try {
+            if (source.getReader() != null) {
+                try (JsonParser parser = this.objectMapper.getFactory().createParser(source.getContent())) {
+                    return new JSONTableDataEntry(source.getReader().read(parser));
+                }
+            } else {
+                return new JSONTableDataEntry(this.objectMapper.readTree(source.getContent()));
+            }
+        } catch (IOException e) {
+            throw new MacroExecutionException(
+                String.format("Failed to parse JSON content [%s]", source.getContent()));
+        }
+    }
+
+    /**
+     * @param source a source having a URL
+     * @param previousEntry the data previously fetched from the source, used to revalidate it, or null
+     * @return the data fetched from the source
+     * @throws MacroExecutionException if the source could not be fetched or parsed
+     * @throws BSMacroException if the source answered with an invalid response
+     */
+    public JSONTableDataEntry fetch(JSONTableSource source, JSONTableDataEntry previousEntry)
+        throws MacroExecutionException, BSMacroException
+    {
+        try {
+            if (source.getCursor() != null && previousEntry != null) {
+                JSONTableDataEntry entry = fetchAppendedRows(source, previousEntry);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return this.jsonTableSourceFetcher.fetch(source.getURL(), previousEntry, source.getReader());
+        } catch (IOException | URISyntaxException e) {
+            throw new MacroExecutionException(
+                String.format("Failed to get source contents for JSON Table [%s]", source.getURL()), e);
+        }
+    }
+
+    /**
+     * Only fetch the rows added to an append-only source since the given entry has been fetched, and append them
+     * to the rows of this entry.
+     *
+     * @return the resulting entry, or null if the whole source needs to be fetched again
+     */
+    private JSONTableDataEntry fetchAppendedRows(JSONTableSource source, JSONTableDataEntry previousEntry)
+        throws BSMacroException, IOException, URISyntaxException
+    {
+        JSONTableCursor cursor = source.getCursor();
+        String cursorValue = cursor.getValue(previousEntry.getNode());
+        if (cursorValue == null) {
+            return null;
+        }
+
+        JSONTableDataEntry delta = this.jsonTableSourceFetcher.fetch(cursor.getURL(source.getURL(), cursorValue),
+            null, source.getReader());
+        JsonNode node = cursor.append(previousEntry.getNode(), delta.getNode());
+        if (node == null) {
+            this.logger.debug("Failed to append the rows fetched from [{}] after [{}], fetching the whole source",
+                source.getURL(), cursorValue);
+            return null;
+        } else if (node == previousEntry.getNode()) {
+            // No row has been added since the last fetch
+            return previousEntry.revalidate(previousEntry.getETag(), previousEntry.getLastModified(),
+                delta.getValidationTime(), delta.getExpirationTime());
+        } else {
+            return previousEntry.append(node, cursor.getValue(node), cursor.getRowCount(node),
+                delta.getValidationTime(), delta.getExpirationTime());
+        }
+    }
+}
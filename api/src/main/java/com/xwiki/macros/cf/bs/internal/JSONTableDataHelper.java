@@ -19,14 +19,26 @@
  */
 package com.xwiki.macros.cf.bs.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import io.gatling.jsonpath.JsonPath;
+
 /**
  * Helper for the {@link JSONTableMacro}.
  *
@@ -37,6 +49,37 @@ import com.fasterxml.jackson.databind.JsonNode;
 @Singleton
 public class JSONTableDataHelper
 {
+    /**
+     * Paths only made of field names (such as {@code name} or {@code $.a.b.c}), which can be resolved without
+     * having to go through a JSONPath implementation.
+     */
+    private static final Pattern SIMPLE_PATH_PATTERN =
+        Pattern.compile("(\\$\\.)?[A-Za-z_][A-Za-z0-9_-]*(\\.[A-Za-z_][A-Za-z0-9_-]*)*");
+
+    private static final int COMPILED_PATHS_MAX_SIZE = 1000;
+
+    private static final int COMPILED_PATTERNS_MAX_SIZE = 1000;
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    private final Map<String, CompiledPath> compiledPaths = newLRUMap(COMPILED_PATHS_MAX_SIZE);
+
+    private final Map<String, Pattern> compiledPatterns = newLRUMap(COMPILED_PATTERNS_MAX_SIZE);
+
+    /**
+     * A JSON path that has already been parsed.
+     */
+    @FunctionalInterface
+    public interface CompiledPath
+    {
+        /**
+         * @param node the node to filter on
+         * @return the matching nodes
+         */
+        Enumeration<JsonNode> apply(JsonNode node);
+    }
+
     /**
      * Apply a given JSONPath to the given node and retuns the matching nodes.
      *
@@ -46,11 +89,143 @@ public class JSONTableDataHelper
      */
     public Enumeration<JsonNode> applyPath(String path, JsonNode node)
     {
-        // Make sure that the jsonpath starts with the
-        String fullPath = (path.startsWith("$")) ? path : String.format("$.%s", path);
+        return getCompiledPath(path).apply(node);
+    }
+
+    /**
+     * Parse the given JSON path, or reuse it if it has already been parsed. Callers applying a same path to many
+     * nodes should get it once rather than calling {@link #applyPath(String, JsonNode)} for each node.
+     *
+     * @param path the JSON path
+     * @return the parsed path
+     */
+    public CompiledPath getCompiledPath(String path)
+    {
+        // The same paths are applied to every request, so we make sure to only parse them once
+        CompiledPath compiledPath = this.compiledPaths.get(path);
+        if (compiledPath == null) {
+            compiledPath = compilePath(path);
+            this.compiledPaths.put(path, compiledPath);
+        }
+        return compiledPath;
+    }
+
+    /**
+     * Compile the given regular expressions, or reuse them if they have already been compiled.
+     *
+     * @param regexes regular expressions
+     * @return the compiled regular expressions
+     */
+    public List<Pattern> getPatterns(List<String> regexes)
+    {
+        // The same patterns are used to order the field paths of every render of a macro, so we make sure to only
+        // compile them once
+        List<Pattern> patterns = new ArrayList<>(regexes.size());
+        for (String regex : regexes) {
+            Pattern pattern = this.compiledPatterns.get(regex);
+            if (pattern == null) {
+                pattern = Pattern.compile(regex);
+                this.compiledPatterns.put(regex, pattern);
+            }
+            patterns.add(pattern);
+        }
+        return patterns;
+    }
+
+    /**
+     * Get the schema of the rows matching the given path, inferring it the first time it's needed for the given
+     * data.
+     *
+     * @param entry the data
+     * @param path the JSON path used to get the rows
+     * @return the schema of the rows
+     */
+    public JSONTableSchema getSchema(JSONTableDataEntry entry, String path)
+    {
+        return entry.getSchema(path,
+            p -> JSONTableSchema.infer(applyPath(p, entry.getNode()), this.configuration.getSchemaSampleSize()));
+    }
+
+    /**
+     * @param path a JSON path
+     * @return true if the path is only made of field names, such as {@code name} or {@code $.a.b.c}
+     */
+    public static boolean isSimplePath(String path)
+    {
+        return SIMPLE_PATH_PATTERN.matcher(path).matches();
+    }
+
+    /**
+     * Order the given field paths so that the ones matching the first pattern come first, followed by the ones
+     * matching the second pattern, and so on, and finally by the ones not matching any pattern. Field paths matching
+     * a same pattern keep their order.
+     *
+     * @param fieldPaths the field paths to order
+     * @param patterns the patterns used to order the field paths
+     * @return the ordered field paths, without duplicates
+     */
+    public static List<String> orderFieldPaths(Collection<String> fieldPaths, List<Pattern> patterns)
+    {
+        if (patterns.isEmpty()) {
+            return new ArrayList<>(fieldPaths);
+        }
+
+        // Each field path is put in the bucket of the first pattern it matches, the last bucket holding the field
+        // paths that don't match any pattern
+        List<Collection<String>> buckets = new ArrayList<>(patterns.size() + 1);
+        for (int i = 0; i <= patterns.size(); i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (String fieldPath : new LinkedHashSet<>(fieldPaths)) {
+            int i = 0;
+            while (i < patterns.size() && !patterns.get(i).matcher(fieldPath).matches()) {
+                i++;
+            }
+            buckets.get(i).add(fieldPath);
+        }
+
+        List<String> result = new ArrayList<>(fieldPaths.size());
+        buckets.forEach(result::addAll);
+        return result;
+    }
+
+    private static <T> Map<String, T> newLRUMap(int maxSize)
+    {
+        return Collections.synchronizedMap(new LinkedHashMap<String, T>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest)
+            {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    private CompiledPath compilePath(String path)
+    {
+        if (isSimplePath(path)) {
+            String[] fieldNames = StringUtils.removeStart(path, "$.").split("\\.");
+            return node -> getField(fieldNames, node);
+        } else {
+            // Make sure that the jsonpath starts with the
+            String fullPath = (path.startsWith("$")) ? path : String.format("$.%s", path);
+
+            JsonPath jsonPath = io.gatling.jsonpath.JsonPath$.MODULE$.compile(fullPath).right().get();
+            return node -> scala.collection.JavaConverters$.MODULE$.asJavaEnumeration(jsonPath.query(node));
+        }
+    }
+
+    private Enumeration<JsonNode> getField(String[] fieldNames, JsonNode node)
+    {
+        JsonNode result = node;
+        for (String fieldName : fieldNames) {
+            if (result == null || !result.isObject()) {
+                return Collections.emptyEnumeration();
+            }
+            result = result.get(fieldName);
+        }
 
-        scala.collection.Iterator<JsonNode> res =
-            io.gatling.jsonpath.JsonPath$.MODULE$.query(fullPath, node).right().get();
-        return scala.collection.JavaConverters$.MODULE$.asJavaEnumeration(res);
+        return (result == null) ? Collections.emptyEnumeration()
+            : Collections.enumeration(Collections.singletonList(result));
     }
 }
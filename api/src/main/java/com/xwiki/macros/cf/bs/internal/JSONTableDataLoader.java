@@ -0,0 +1,293 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.net.URL;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.rendering.macro.MacroExecutionException;
+
+import com.xwiki.macros.cf.bs.BSMacroException;
+
+/**
+ * Loads the data of the {@link JSONTableMacro} through the {@link JSONTableDataStorage}. Data fetched from a URL is
+ * revalidated once expired; until its hard expiration, expired data is served while being revalidated in the
+ * background when the configuration allows it, and revalidated before being served otherwise. Concurrent loads of a
+ * same source are coalesced so that the source is only fetched once by the {@link JSONTableDataFetcher}.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableDataLoader.class)
+@Singleton
+public class JSONTableDataLoader implements Initializable, Disposable
+{
+    private static final int REFRESH_QUEUE_SIZE = 100;
+
+    @Inject
+    private JSONTableSourceCache jsonTableSourceCache;
+
+    @Inject
+    private JSONTableDataStorage jsonTableDataStorage;
+
+    @Inject
+    private JSONTableDataFetcher jsonTableDataFetcher;
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The loads currently in progress, used to make sure that a same source is only loaded once at a time.
+     */
+    private final ConcurrentMap<String, CompletableFuture<JSONTableDataEntry>> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder loadCount = new LongAdder();
+
+    private final LongAdder coalescedLoadCount = new LongAdder();
+
+    private ThreadPoolExecutor refreshExecutor;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int threads = Math.max(this.configuration.getCacheRefreshThreads(), 1);
+        this.refreshExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE),
+            new BasicThreadFactory.Builder().namingPattern("JSON Table refresh %d").daemon(true).build());
+        this.refreshExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.refreshExecutor != null) {
+            this.refreshExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param source the source of some JSON data
+     * @return the key of the data of this source in the {@link JSONTableDataCache}
+     */
+    public String getKey(JSONTableSource source)
+    {
+        String key = (source.getURL() != null) ? source.getURL().toString() : source.getContent();
+        if (source.getReader() != null) {
+            // The data kept from a same source depends on the values needed by the table
+            key = String.format("%s\n%s", key, source.getReader().getKey());
+        }
+        if (source.getCursor() != null) {
+            // Data made of appended rows is only kept for the sources known to be append-only
+            key = String.format("%s\n%s", key, source.getCursor().getKey());
+        }
+        return DigestUtils.sha256Hex(key);
+    }
+
+    /**
+     * @param source the source of some JSON data
+     * @return the data of the source
+     * @throws MacroExecutionException if the source could not be fetched or parsed
+     * @throws BSMacroException if the source answered with an invalid response
+     */
+    public JSONTableDataEntry load(JSONTableSource source) throws MacroExecutionException, BSMacroException
+    {
+        String key = getKey(source);
+        registerSource(key, source);
+
+        JSONTableDataEntry entry = this.jsonTableDataStorage.get(key);
+
+        if (source.getURL() == null) {
+            if (entry == null) {
+                entry = this.jsonTableDataFetcher.parse(source);
+                this.jsonTableDataStorage.set(key, entry, null);
+            }
+        } else if (entry == null || entry.isHardExpired(this.configuration.getCacheHardTTL())
+            || (entry.isExpired() && !refreshInBackground(key, source, entry))) {
+            entry = loadOnce(key, source, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Get the data corresponding to the given key, loading it again from its source if needed. Only sources that
+     * have been loaded through this component before can be loaded again, as the key alone doesn't allow to know
+     * the source, and we don't want to load sources coming from untrusted parameters.
+     *
+     * @param key the key of the data in the {@link JSONTableDataCache}
+     * @return the corresponding data, or null if the data is not available and its source is unknown
+     * @throws MacroExecutionException if the source could not be fetched or parsed
+     * @throws BSMacroException if the source answered with an invalid response
+     */
+    public JSONTableDataEntry loadByKey(String key) throws MacroExecutionException, BSMacroException
+    {
+        JSONTableSource source = this.jsonTableSourceCache.get(key);
+        if (source != null) {
+            return load(source);
+        }
+
+        // The data may have been loaded by another member of the cluster
+        JSONTableDataEntry entry = this.jsonTableDataStorage.get(key);
+        return (entry != null) ? entry : this.jsonTableDataStorage.getFromCluster(key);
+    }
+
+    /**
+     * @return the number of times a source has been loaded synchronously
+     */
+    public long getLoadCount()
+    {
+        return this.loadCount.sum();
+    }
+
+    /**
+     * @return the number of synchronous loads that have been avoided by waiting for a load of the same source that
+     *     was already in progress
+     */
+    public long getCoalescedLoadCount()
+    {
+        return this.coalescedLoadCount.sum();
+    }
+
+    private void registerSource(String key, JSONTableSource source)
+    {
+        if (this.jsonTableSourceCache.get(key) == null) {
+            this.jsonTableSourceCache.set(key, source);
+        }
+    }
+
+    /**
+     * Load the given source, unless a load of the same source is already in progress, in which case we wait for
+     * its result instead of fetching the same data concurrently.
+     */
+    private JSONTableDataEntry loadOnce(String key, JSONTableSource source, JSONTableDataEntry entry)
+        throws MacroExecutionException, BSMacroException
+    {
+        CompletableFuture<JSONTableDataEntry> load = new CompletableFuture<>();
+        CompletableFuture<JSONTableDataEntry> currentLoad = this.loads.putIfAbsent(key, load);
+        if (currentLoad != null) {
+            this.coalescedLoadCount.increment();
+            return waitForLoad(currentLoad, source.getURL());
+        }
+
+        this.loadCount.increment();
+        try {
+            // When an expired entry is available, the source will only be fetched and parsed again if it has
+            // been modified. Otherwise, another member of the cluster may already have the data.
+            JSONTableDataEntry result = (entry == null) ? this.jsonTableDataStorage.getFromCluster(key) : null;
+            if (result == null) {
+                result = this.jsonTableDataFetcher.fetch(source, entry);
+                this.jsonTableDataStorage.set(key, result, entry);
+            }
+            load.complete(result);
+            return result;
+        } catch (MacroExecutionException | BSMacroException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.loads.remove(key, load);
+        }
+    }
+
+    private JSONTableDataEntry waitForLoad(CompletableFuture<JSONTableDataEntry> load, URL url)
+        throws MacroExecutionException, BSMacroException
+    {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MacroExecutionException(
+                String.format("Interrupted while waiting for the source contents for JSON Table [%s]", url), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BSMacroException) {
+                throw (BSMacroException) e.getCause();
+            } else if (e.getCause() instanceof MacroExecutionException) {
+                throw (MacroExecutionException) e.getCause();
+            } else {
+                throw new MacroExecutionException(
+                    String.format("Failed to get source contents for JSON Table [%s]", url), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Refresh the given expired entry in the background, unless a refresh of the same source is already in
+     * progress.
+     *
+     * @return false if the entry could not be refreshed in the background and should be refreshed synchronously
+     */
+    private boolean refreshInBackground(String key, JSONTableSource source, JSONTableDataEntry entry)
+    {
+        if (!this.configuration.isCacheRefreshAheadEnabled()) {
+            return false;
+        }
+
+        CompletableFuture<JSONTableDataEntry> load = new CompletableFuture<>();
+        if (this.loads.putIfAbsent(key, load) == null) {
+            try {
+                this.refreshExecutor.execute(() -> refresh(key, source, entry, load));
+            } catch (RejectedExecutionException e) {
+                this.loads.remove(key, load);
+                load.completeExceptionally(e);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void refresh(String key, JSONTableSource source, JSONTableDataEntry entry,
+        CompletableFuture<JSONTableDataEntry> load)
+    {
+        JSONTableDataEntry result = entry;
+        try {
+            result = this.jsonTableDataFetcher.fetch(source, entry);
+            this.jsonTableDataStorage.set(key, result, entry);
+        } catch (MacroExecutionException | BSMacroException e) {
+            // Keep serving the expired data until the source can be fetched again
+            this.logger.warn("Failed to refresh the source contents for JSON Table [{}]: [{}]", source.getURL(),
+                e.getMessage());
+        } finally {
+            load.complete(result);
+            this.loads.remove(key, load);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Serializes {@link JSONTableDataEntry} instances in the Smile binary format, along with the information needed to
+ * revalidate them against their source.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableDataSerializer
+{
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String FORMAT_VERSION_FIELD = "formatVersion";
+
+    private static final String ETAG = "eTag";
+
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private static final String VALIDATION_TIME = "validationTime";
+
+    private static final String EXPIRATION_TIME = "expirationTime";
+
+    private static final String VERSION = "version";
+
+    private static final String NODE = "node";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(new SmileFactory());
+
+    private JSONTableDataSerializer()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param entry the entry to serialize
+     * @param out the stream to write to
+     * @throws IOException if the entry cannot be written
+     */
+    public static void write(JSONTableDataEntry entry, OutputStream out) throws IOException
+    {
+        ObjectNode serialized = OBJECT_MAPPER.createObjectNode();
+        serialized.put(FORMAT_VERSION_FIELD, FORMAT_VERSION);
+        serialized.put(ETAG, entry.getETag());
+        serialized.put(LAST_MODIFIED, entry.getLastModified());
+        serialized.put(VALIDATION_TIME, entry.getValidationTime());
+        serialized.put(EXPIRATION_TIME, entry.getExpirationTime());
+        serialized.put(VERSION, entry.getVersion());
+        serialized.set(NODE, entry.getNode());
+
+        OBJECT_MAPPER.writeValue(out, serialized);
+    }
+
+    /**
+     * @param in the stream to read from
+     * @return the entry, or null if it has been written in an unsupported format
+     * @throws IOException if the entry cannot be read
+     */
+    public static JSONTableDataEntry read(InputStream in) throws IOException
+    {
+        JsonNode serialized = OBJECT_MAPPER.readTree(in);
+        if (serialized == null || serialized.path(FORMAT_VERSION_FIELD).asInt() != FORMAT_VERSION) {
+            return null;
+        }
+
+        return new JSONTableDataEntry(serialized.get(NODE), getText(serialized, ETAG),
+            getText(serialized, LAST_MODIFIED), serialized.path(VALIDATION_TIME).asLong(),
+            serialized.path(EXPIRATION_TIME).asLong(), getText(serialized, VERSION));
+    }
+
+    private static String getText(JsonNode serialized, String field)
+    {
+        JsonNode value = serialized.get(field);
+        return (value != null && !value.isNull()) ? value.asText() : null;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+
+import com.xwiki.macros.cf.bs.internal.cluster.JSONTableClusterManager;
+
+/**
+ * Keeps the data loaded by the {@link JSONTableDataLoader} in the {@link JSONTableDataCache}. When enabled, the data
+ * is also stored on disk by the {@link JSONTableDataStore} so that it survives restarts, and shared with the other
+ * members of the cluster by the {@link JSONTableClusterManager}.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableDataStorage.class)
+@Singleton
+public class JSONTableDataStorage
+{
+    @Inject
+    private JSONTableDataCache jsonTableDataCache;
+
+    @Inject
+    private JSONTableDataStore jsonTableDataStore;
+
+    @Inject
+    private JSONTableClusterManager jsonTableClusterManager;
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    /**
+     * @param key the key of the data in the {@link JSONTableDataCache}
+     * @return the data kept in memory or stored on disk for the given key, or null if there is none
+     */
+    public JSONTableDataEntry get(String key)
+    {
+        JSONTableDataEntry entry = this.jsonTableDataCache.get(key);
+        if (entry == null) {
+            entry = this.jsonTableDataStore.load(key);
+            if (entry != null) {
+                this.jsonTableDataCache.set(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @param key the key of the data in the {@link JSONTableDataCache}
+     * @return the data loaded by another member of the cluster for the given key, or null if none of them has data
+     *     that can still be served
+     */
+    public JSONTableDataEntry getFromCluster(String key)
+    {
+        JSONTableDataEntry entry = this.jsonTableClusterManager.requestData(key);
+        if (entry != null && !entry.isHardExpired(this.configuration.getCacheHardTTL())) {
+            this.jsonTableDataCache.set(key, entry);
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key of the data in the {@link JSONTableDataCache}
+     * @param entry the data loaded for the given key
+     * @param previousEntry the data previously loaded for the given key, or null
+     */
+    public void set(String key, JSONTableDataEntry entry, JSONTableDataEntry previousEntry)
+    {
+        this.jsonTableDataCache.set(key, entry);
+        // Revalidated data only needs to be stored again when it has changed
+        if (previousEntry == null || previousEntry.getNode() != entry.getNode()) {
+            this.jsonTableDataStore.save(key, entry);
+        }
+        if (previousEntry == null) {
+            // The other members of the cluster can now get the data from the current member
+            this.jsonTableClusterManager.notifyAvailable(key);
+        } else if (isNewVersion(entry, previousEntry)) {
+            this.jsonTableClusterManager.notifyInvalidation(key, entry);
+        }
+    }
+
+    /**
+     * Load the most recently used data stored on disk in the {@link JSONTableDataCache}, so that the first requests
+     * after a restart don't all need to fetch their source again.
+     */
+    public void warmUp()
+    {
+        for (String key : this.jsonTableDataStore.getRecentKeys(this.configuration.getPersistentCacheWarmupSize())) {
+            get(key);
+        }
+    }
+
+    /**
+     * Data revalidated against its source without having been modified keeps its version. Data without a version is
+     * only known to be unmodified when its previous version could be reused.
+     */
+    private boolean isNewVersion(JSONTableDataEntry entry, JSONTableDataEntry previousEntry)
+    {
+        return (entry.getVersion() != null) ? !entry.getVersion().equals(previousEntry.getVersion())
+            : entry.getNode() != previousEntry.getNode();
+    }
+}
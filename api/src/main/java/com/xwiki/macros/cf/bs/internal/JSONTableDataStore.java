@@ -0,0 +1,232 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+
+/**
+ * Second level of the {@link JSONTableDataCache}, storing the parsed JSON data on disk using the
+ * {@link JSONTableDataSerializer} so that it survives restarts. Entries are written in the background and read back
+ * lazily, when they are missing from the memory cache. The entries are kept within a disk budget, checked each time
+ * an entry is written.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableDataStore.class)
+@Singleton
+public class JSONTableDataStore implements Initializable, Disposable
+{
+    private static final int WRITE_QUEUE_SIZE = 100;
+
+    private static final String EXTENSION = ".smile";
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    private File directory;
+
+    private ThreadPoolExecutor writeExecutor;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.directory = new File(this.environment.getPermanentDirectory(), "cache/jsontable/data");
+        // Writing a large source can take some time, so we don't make the requests wait for it. When too many writes
+        // are pending, the new ones are simply dropped, as the store is only a cache.
+        this.writeExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE),
+            new BasicThreadFactory.Builder().namingPattern("JSON Table store %d").daemon(true).build());
+        this.writeExecutor.allowCoreThreadTimeOut(true);
+
+        clean(null);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.writeExecutor != null) {
+            this.writeExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @return true if the data should be stored on disk
+     */
+    public boolean isEnabled()
+    {
+        return this.configuration.isPersistentCacheEnabled();
+    }
+
+    /**
+     * Store the given entry in the background.
+     *
+     * @param key the key of the entry in the {@link JSONTableDataCache}
+     * @param entry the entry to store
+     */
+    public void save(String key, JSONTableDataEntry entry)
+    {
+        if (!isEnabled()) {
+            return;
+        }
+
+        try {
+            this.writeExecutor.execute(() -> write(key, entry));
+        } catch (RejectedExecutionException e) {
+            this.logger.debug("Skipped storing the JSON Table data [{}]: [{}]", key, e.getMessage());
+        }
+    }
+
+    /**
+     * @param key the key of the entry in the {@link JSONTableDataCache}
+     * @return the stored entry, or null if the entry has not been stored
+     */
+    public JSONTableDataEntry load(String key)
+    {
+        File file = getFile(key);
+        if (!isEnabled() || !file.isFile()) {
+            return null;
+        }
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            JSONTableDataEntry entry = JSONTableDataSerializer.read(in);
+
+            // Keep track of the usage of the entry, which is used to decide which entries to load when starting
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                this.logger.debug("Failed to update the last modified date of [{}]", file);
+            }
+
+            return entry;
+        } catch (IOException e) {
+            this.logger.warn("Failed to read the JSON Table data [{}] from [{}]: [{}]", key, file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param count the maximum number of keys to return
+     * @return the keys of the most recently used stored entries, most recent first
+     */
+    public List<String> getRecentKeys(int count)
+    {
+        File[] files = this.directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (!isEnabled() || files == null) {
+            return Collections.emptyList();
+        }
+
+        return Arrays.stream(files).sorted(Comparator.comparingLong(File::lastModified).reversed()).limit(count)
+            .map(file -> StringUtils.removeEnd(file.getName(), EXTENSION)).collect(Collectors.toList());
+    }
+
+    /**
+     * @param key the key of the entry to remove
+     */
+    public void remove(String key)
+    {
+        try {
+            Files.deleteIfExists(getFile(key).toPath());
+        } catch (IOException e) {
+            this.logger.warn("Failed to remove the JSON Table data [{}]: [{}]", key, e.getMessage());
+        }
+    }
+
+    private File getFile(String key)
+    {
+        return new File(this.directory, key + EXTENSION);
+    }
+
+    private void write(String key, JSONTableDataEntry entry)
+    {
+        File file = getFile(key);
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(this.directory.toPath());
+            temporaryFile = Files.createTempFile(this.directory.toPath(), key, ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporaryFile))) {
+                JSONTableDataSerializer.write(entry, out);
+            }
+            // Readers of the file should never see a partially written entry
+            Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            clean(file);
+        } catch (IOException e) {
+            this.logger.warn("Failed to store the JSON Table data [{}] in [{}]: [{}]", key, file, e.getMessage());
+        } finally {
+            deleteTemporaryFile(temporaryFile);
+        }
+    }
+
+    /**
+     * Remove the entries that have not been used for a long time, and the least recently used ones when the entries
+     * don't fit in the disk budget anymore.
+     */
+    private synchronized void clean(File keptFile)
+    {
+        JSONTableFileCleaner.clean(this.directory, EXTENSION, this.configuration.getPersistentCacheMaxAge() * 1000L,
+            this.configuration.getPersistentCacheMaxSize(), keptFile, this.logger);
+    }
+
+    private void deleteTemporaryFile(Path temporaryFile)
+    {
+        if (temporaryFile != null) {
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (IOException e) {
+                this.logger.debug("Failed to delete [{}]: [{}]", temporaryFile, e.getMessage());
+            }
+        }
+    }
+}
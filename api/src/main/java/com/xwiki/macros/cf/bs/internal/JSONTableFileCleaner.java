@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+/**
+ * Keeps the files stored by the JSON Table caches within their disk budget: files that have not been used for a long
+ * time are deleted first, then the least recently used ones until the remaining files fit in the budget.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableFileCleaner
+{
+    private JSONTableFileCleaner()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param directory the directory holding the files
+     * @param extension the extension of the files counted in the budget, other files such as the leftovers of
+     *     interrupted writes only being deleted once they are too old
+     * @param maxAge the time in milliseconds after which files that have not been modified are deleted
+     * @param maxSize the maximum total size in bytes of the files, or 0 or less for no limit
+     * @param keptFile a file that should be kept even if it doesn't fit in the budget, usually the one just written,
+     *     or null
+     * @param logger the logger used to report the files that could not be deleted
+     */
+    public static void clean(File directory, String extension, long maxAge, long maxSize, File keptFile,
+        Logger logger)
+    {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // Least recently used files first. The dates are read once, as files can be used while being sorted.
+        Map<File, Long> lastModified = new HashMap<>();
+        for (File file : files) {
+            lastModified.put(file, file.lastModified());
+        }
+        Arrays.sort(files, Comparator.comparingLong(lastModified::get));
+
+        long now = System.currentTimeMillis();
+        List<File> budgetedFiles = new ArrayList<>();
+        long totalSize = 0;
+        for (File file : files) {
+            if (now - lastModified.get(file) > maxAge && !file.equals(keptFile)) {
+                delete(file, logger);
+            } else if (file.getName().endsWith(extension)) {
+                budgetedFiles.add(file);
+                totalSize += file.length();
+            }
+        }
+
+        for (Iterator<File> it = budgetedFiles.iterator(); maxSize > 0 && totalSize > maxSize && it.hasNext();) {
+            File file = it.next();
+            if (!file.equals(keptFile)) {
+                totalSize -= file.length();
+                delete(file, logger);
+            }
+        }
+    }
+
+    private static void delete(File file, Logger logger)
+    {
+        if (!file.delete() && file.exists()) {
+            logger.warn("Failed to delete the JSON Table cache file [{}]", file);
+        }
+    }
+}
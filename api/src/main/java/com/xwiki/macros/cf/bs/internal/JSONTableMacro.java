@@ -19,31 +19,23 @@
  */
 package com.xwiki.macros.cf.bs.internal;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.component.phase.InitializationException;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.MacroBlock;
 import org.xwiki.rendering.macro.AbstractMacro;
@@ -51,11 +43,10 @@ import org.xwiki.rendering.macro.MacroExecutionException;
 import org.xwiki.rendering.transformation.MacroTransformationContext;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ValueNode;
 import com.xwiki.macros.cf.bs.BSMacroException;
 import com.xwiki.macros.cf.bs.JSONTableMacroParameters;
+import com.xwiki.macros.cf.bs.internal.livedata.JSONTableFilterEvaluator;
 import com.xwiki.macros.cf.bs.internal.livedata.JSONTableLiveDataSource;
 
 /**
@@ -73,19 +64,34 @@ public class JSONTableMacro extends AbstractMacro<JSONTableMacroParameters>
 
     private static final String STRING = "String";
 
+    private static final String TEXT = "text";
+
+    private static final String NUMBER = "number";
+
+    private static final String BOOLEAN = "boolean";
+
     private static final String SORTABLE = "sortable";
 
     private static final String EDITABLE = "editable";
 
     private static final String FILTERABLE = "filterable";
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     @Inject
-    private JSONTableDataCache jsonTableDataCache;
+    private JSONTableDataLoader jsonTableDataLoader;
 
     @Inject
     private JSONTableDataHelper jsonTableDataHelper;
 
-    private ObjectMapper objectMapper;
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    @Inject
+    private JSONTableMetrics metrics;
+
+    @Inject
+    private Logger logger;
 
     /**
      * Create a new {@link JSONTableMacro}.
@@ -95,31 +101,37 @@ public class JSONTableMacro extends AbstractMacro<JSONTableMacroParameters>
         super("JSON Table", "Adds a JSON Table", JSONTableMacroParameters.class);
     }
 
-    @Override
-    public void initialize() throws InitializationException
-    {
-        this.objectMapper = new ObjectMapper();
-        super.initialize();
-    }
-
     @Override
     public List<Block> execute(JSONTableMacroParameters parameters, String content, MacroTransformationContext context)
         throws MacroExecutionException
     {
+        long start = System.nanoTime();
+        String key = null;
         try {
             // The action of building live data parameters actually requires a lot of heavy lifting to make sure that
             // the livedata that will be generated doesn't end up being corrupted. We'll especially need to load and
             // parse the JSON to display in order to  extract some information.
-            // TODO : The "paths" parameter is supposed to generate one live data table per path. Currently, we only
-            //  consider the first parameter and ignore the others.
-            Pair<String, JsonNode> jsonNodePair = getJsonNode(parameters, content);
-            return Collections.singletonList(new MacroBlock("liveData", Collections.emptyMap(),
-                buildLiveDataParameters(parameters, jsonNodePair), false));
+            // The source is only fetched and parsed once, and then each path produces its own table, with its own
+            // projection of the data.
+            Pair<String, JSONTableDataEntry> dataPair = getData(parameters, content);
+            key = dataPair.getLeft();
+            List<Block> result = new ArrayList<>();
+            for (String path : parameters.getPathsList()) {
+                result.add(new MacroBlock("liveData", Collections.emptyMap(),
+                    getLiveDataParameters(parameters, path, dataPair), false));
+            }
+            return result;
         } catch (BSMacroException e) {
             return Collections.singletonList(new MacroBlock("box", Collections.emptyMap(),
                 String.format("Failed to create table\n\n%s", e.getMessage()), false));
         } catch (JsonProcessingException e) {
             throw new MacroExecutionException("Failed to build parameters for the LiveData macro", e);
+        } finally {
+            long duration = System.nanoTime() - start;
+            this.metrics.recordMacroExecution(duration);
+            this.logger.debug("Executed the JSON Table macro for [{}] with data [{}] and paths [{}] in [{}] ms",
+                (parameters.getUrl() != null) ? parameters.getUrl() : "inline content", key,
+                parameters.getPathsList(), TimeUnit.NANOSECONDS.toMillis(duration));
         }
     }
 
@@ -129,18 +141,33 @@ public class JSONTableMacro extends AbstractMacro<JSONTableMacroParameters>
         return true;
     }
 
-    private String buildLiveDataParameters(JSONTableMacroParameters parameters, Pair<String, JsonNode> jsonNodePair)
-        throws JsonProcessingException
+    private String getLiveDataParameters(JSONTableMacroParameters parameters, String path,
+        Pair<String, JSONTableDataEntry> dataPair) throws JsonProcessingException
     {
-        List<String> fieldPaths = getFieldPaths(parameters, jsonNodePair.getValue());
+        // The generated parameters only depend on the data and on the parameters of the macro, so they are kept along
+        // with the data and a render of a cached data set doesn't have to compute them again
+        URL url = parameters.getUrl();
+        List<Object> key = Arrays.asList(path, parameters.getPaths(), parameters.getFieldPaths(),
+            parameters.getFieldOrderRegexPatterns(), (url != null) ? url.toString() : null,
+            parameters.getStripQualifiers(), parameters.getCapitalize());
+        String result = dataPair.getValue().getLiveDataParameters(key);
+        if (result == null) {
+            result = buildLiveDataParameters(parameters, path, dataPair);
+            dataPair.getValue().setLiveDataParameters(key, result);
+        }
+        return result;
+    }
+
+    private String buildLiveDataParameters(JSONTableMacroParameters parameters, String path,
+        Pair<String, JSONTableDataEntry> dataPair) throws JsonProcessingException
+    {
+        List<String> fieldPaths = getFieldPaths(parameters, path, dataPair.getValue());
+        // The types of the properties described by JSONTableLiveDataPropertyDescriptorStore
         List<Map<String, Object>> propertyTypes = new ArrayList<>();
-        propertyTypes.add(new HashMap<String, Object>() {{
-                put(ID, STRING);
-                put(SORTABLE, true);
-                put(FILTERABLE, true);
-                put(EDITABLE, true);
-                put("filter", "text");
-            }});
+        propertyTypes.add(getPropertyType(STRING, TEXT, TEXT));
+        propertyTypes.add(getPropertyType("Number", NUMBER, NUMBER));
+        propertyTypes.add(getPropertyType("Boolean", BOOLEAN, BOOLEAN));
+        propertyTypes.add(getPropertyType("Date", TEXT, "date"));
 
         Map<String, Object> result = new HashMap<String, Object>() {{
                 put("query", new HashMap<String, Object>() {{
@@ -148,50 +175,53 @@ public class JSONTableMacro extends AbstractMacro<JSONTableMacroParameters>
                         put("source", new HashMap<String, Object>() {{
                                 putAll(parameters.getParameterMap());
                                 put(ID, JSONTableLiveDataSource.ROLE_HINT);
-                                put("cacheKey", jsonNodePair.getKey());
+                                put("cacheKey", dataPair.getKey());
                                 // We are actually overwriting the value passed initially as part of
                                 // JSONTableMacroParameters#getParametersMap() to include any detected field path
                                 put("fieldPaths", fieldPaths);
-                                put("path", parameters.getPathsList().get(0));
+                                put("path", path);
                             }});
                     }});
+                // The property descriptors are provided by the LiveData source, with the types of the values
                 put("meta", new HashMap<String, Object>() {{
-                        put("propertyDescriptors", getPropertyDescriptors(parameters, fieldPaths));
                         put("propertyTypes", propertyTypes);
                     }});
             }};
 
-        return new ObjectMapper().writeValueAsString(result);
+        return OBJECT_MAPPER.writeValueAsString(result);
     }
 
-    private List<String> getFieldPaths(JSONTableMacroParameters parameters, JsonNode nodes)
+    private Map<String, Object> getPropertyType(String id, String displayer, String filter)
+    {
+        Map<String, Object> propertyType = new HashMap<>();
+        propertyType.put(ID, id);
+        propertyType.put(SORTABLE, true);
+        propertyType.put(FILTERABLE, true);
+        propertyType.put(EDITABLE, true);
+        propertyType.put("displayer", displayer);
+        // Only offer the operators that the entry store evaluates, their names being translated by LiveData
+        List<Map<String, Object>> operators = new ArrayList<>();
+        for (String operator : JSONTableFilterEvaluator.getOperators(filter)) {
+            operators.add(Collections.singletonMap(ID, operator));
+        }
+        Map<String, Object> filterDescriptor = new HashMap<>();
+        filterDescriptor.put(ID, filter);
+        filterDescriptor.put("operators", operators);
+        filterDescriptor.put("defaultOperator", operators.get(0).get(ID));
+        propertyType.put("filter", filterDescriptor);
+        return propertyType;
+    }
+
+    private List<String> getFieldPaths(JSONTableMacroParameters parameters, String path, JSONTableDataEntry data)
     {
         if (!parameters.getFieldPathsList().isEmpty()) {
             return orderFieldPaths(parameters, parameters.getFieldPathsList());
         } else {
-            // When field paths are not defined as parameters, we need to "guess" them from the JSONNodes that we
-            // get, while considering that field paths can be ordered by the parameter fieldOrderRegexPatterns.
-            // For now, the strategy is to use the fields available in the first entry that we get when applying the
-            // JSON path given as a parameter of the macro. This is not ideal as the first entry returned may miss
-            // some parameters, that are simply not defined. However, this will allow us to avoid having to iterate
-            // through the whole macro.
-            Enumeration<JsonNode> results = jsonTableDataHelper.applyPath(parameters.getPathsList().get(0), nodes);
-            if (results.hasMoreElements()) {
-                List<String> fieldPaths = new ArrayList<>();
-
-                JsonNode node = results.nextElement();
-                for (Iterator<String> it = node.fieldNames(); it.hasNext();) {
-                    String field = it.next();
-                    if (node.get(field) instanceof ValueNode) {
-                        fieldPaths.add(field);
-                    }
-                }
-
-                return orderFieldPaths(parameters, fieldPaths);
-            } else {
-                return Collections.emptyList();
-            }
-
+            // When field paths are not defined as parameters, we need to "guess" them from the data, while
+            // considering that field paths can be ordered by the parameter fieldOrderRegexPatterns. The schema of
+            // the data is inferred from a sample of the rows, including nested values and values that are missing
+            // from some rows, and is then kept along with the data so that it isn't computed again on each render.
+            return orderFieldPaths(parameters, jsonTableDataHelper.getSchema(data, path).getFieldPaths());
         }
     }
 
@@ -200,113 +230,39 @@ public class JSONTableMacro extends AbstractMacro<JSONTableMacroParameters>
         // In case the field order regex patterns are defined, then we'll need to apply them in order to sort
         // the computed list of field paths.
         if (!parameters.getFieldOrderRegexPatternsList().isEmpty()) {
-            List<String> orderedFieldPaths = new ArrayList<>();
-
-            for (String regexPattern : parameters.getFieldOrderRegexPatternsList()) {
-                for (String fieldPath : fieldPaths) {
-                    if (!orderedFieldPaths.contains(fieldPath) && fieldPath.matches(regexPattern)) {
-                        orderedFieldPaths.add(fieldPath);
-                    }
-                }
-            }
-
-            // Add the remaining field paths that were not detected to the ordered field paths
-            for (String fieldPath : fieldPaths) {
-                if (!orderedFieldPaths.contains(fieldPath)) {
-                    orderedFieldPaths.add(fieldPath);
-                }
-            }
-
-            return orderedFieldPaths;
+            return JSONTableDataHelper.orderFieldPaths(fieldPaths,
+                jsonTableDataHelper.getPatterns(parameters.getFieldOrderRegexPatternsList()));
         } else {
             return fieldPaths;
         }
     }
 
-    private List<Map<String, Object>> getPropertyDescriptors(JSONTableMacroParameters parameters,
-        List<String> fieldPaths)
-    {
-        List<Map<String, Object>> propertyDescriptors = new ArrayList<>();
-        for (String fieldPath : fieldPaths) {
-            propertyDescriptors.add(new HashMap<String, Object>() {{
-                    put(ID, fieldPath);
-                    put("name", getPropertyName(fieldPath, parameters));
-                    put("type", STRING);
-                    put(EDITABLE, false);
-                    put(SORTABLE, true);
-                    put(FILTERABLE, true);
-                }});
-        }
-        return propertyDescriptors;
-    }
-
-    private String getPropertyName(String fieldPath, JSONTableMacroParameters parameters)
-    {
-        String result = fieldPath;
-        if (parameters.getStripQualifiers()) {
-            String[] qualifiers = result.split("\\.");
-            result = qualifiers[qualifiers.length - 1];
-        }
-        
-        return (parameters.getCapitalize()) ? StringUtils.capitalize(result) : result;
-    }
-
-    private Pair<String, JsonNode> getJsonNode(JSONTableMacroParameters parameters, String content)
+    private Pair<String, JSONTableDataEntry> getData(JSONTableMacroParameters parameters, String content)
         throws MacroExecutionException, BSMacroException
     {
-        JsonNode result;
-        String key;
-
-        if (parameters.getUrl() != null) {
-            key = DigestUtils.sha256Hex(parameters.getUrl().toString());
-            result = jsonTableDataCache.get(key);
-
-            if (result == null) {
-                result = getJsonNodeFromURL(parameters.getUrl());
-                jsonTableDataCache.set(key, result);
-            }
-        } else {
-            key = DigestUtils.sha256Hex(content);
-            result = jsonTableDataCache.get(key);
+        // Append-only sources can be asked for the rows added since they have last been fetched
+        JSONTableCursor cursor = null;
+        if (parameters.getUrl() != null && parameters.getPathsList().size() == 1) {
+            cursor = JSONTableCursor.of(parameters.getPathsList().get(0), parameters.getCursorField(),
+                parameters.getCursorParameter());
+        }
 
-            if (result == null) {
-                result = getJsonNodeFromContent(content);
-                jsonTableDataCache.set(key, result);
+        // When the table only needs a few values of each element of an array, we avoid keeping the whole document
+        JSONTableStreamingReader reader = null;
+        if (this.configuration.isStreamingEnabled() && parameters.getPathsList().size() == 1) {
+            List<String> fieldPaths = parameters.getFieldPathsList();
+            if (cursor != null && !fieldPaths.isEmpty() && !fieldPaths.contains(parameters.getCursorField())) {
+                // The value identifying the last row needs to be kept even when it's not displayed
+                fieldPaths = new ArrayList<>(fieldPaths);
+                fieldPaths.add(parameters.getCursorField());
             }
+            reader = JSONTableStreamingReader.of(parameters.getPathsList().get(0), fieldPaths);
         }
 
-        return new ImmutablePair<>(key, result);
-    }
-
-    private JsonNode getJsonNodeFromContent(String content) throws MacroExecutionException
-    {
-        try {
-            return objectMapper.readTree(content);
-        } catch (JsonProcessingException e) {
-            throw new MacroExecutionException(String.format("Failed to parse JSON content [%s]", content));
-        }
-    }
+        JSONTableSource source = (parameters.getUrl() != null)
+            ? JSONTableSource.fromURL(parameters.getUrl(), reader, cursor)
+            : JSONTableSource.fromContent(content, reader);
 
-    private JsonNode getJsonNodeFromURL(URL url) throws MacroExecutionException, BSMacroException
-    {
-        HttpClientBuilder builder = HttpClientBuilder.create();
-        builder.useSystemProperties();
-
-        try (CloseableHttpClient httpClient = builder.build()) {
-            CloseableHttpResponse response = httpClient.execute(new HttpGet(url.toURI()));
-
-            if (response.getStatusLine().getStatusCode() >= 200 && response.getStatusLine().getStatusCode() < 300) {
-                JsonNode node = objectMapper.readTree(response.getEntity().getContent());
-                response.close();
-                return node;
-            } else {
-                throw new BSMacroException(
-                    String.format("Got invalid HTTP response when fetching source contents for JSON Table [%s] ; "
-                            + "response code : [%s]", url, response.getStatusLine().getStatusCode()));
-            }
-        } catch (IOException | URISyntaxException e) {
-            throw new MacroExecutionException(
-                String.format("Failed to get source contents for JSON Table [%s]", url));
-        }
+        return new ImmutablePair<>(jsonTableDataLoader.getKey(source), jsonTableDataLoader.load(source));
     }
 }
@@ -0,0 +1,345 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * Implementations of {@link JSONTableColumn} reading their values from a buffer, usually mapped from a file written
+ * by {@link JSONTableColumns#write(JSONTableColumn, java.io.DataOutput)}. Only the null bitmaps and the dictionaries
+ * are kept on the heap.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableMappedColumns
+{
+    static final byte LONG = 1;
+
+    static final byte DOUBLE = 2;
+
+    static final byte DICTIONARY = 3;
+
+    static final byte STRING = 4;
+
+    private JSONTableMappedColumns()
+    {
+        // Utility class
+    }
+
+    /**
+     * Read the column starting at the current position of the given buffer, and move the position of the buffer
+     * after the column.
+     *
+     * @param buffer the buffer to read from
+     * @param rowCount the number of rows of the column
+     * @return the column, reading its values from the buffer
+     * @throws IOException if the buffer doesn't contain a valid column
+     */
+    static JSONTableColumn read(ByteBuffer buffer, int rowCount) throws IOException
+    {
+        byte type = buffer.get();
+        switch (type) {
+            case LONG:
+                BitSet longNulls = readBitSet(buffer);
+                int longStart = skip(buffer, rowCount * (long) Long.BYTES);
+                return new MappedLongColumn(buffer, longStart, rowCount, longNulls);
+            case DOUBLE:
+                BitSet doubleNulls = readBitSet(buffer);
+                int doubleStart = skip(buffer, rowCount * (long) Double.BYTES);
+                return new MappedDoubleColumn(buffer, doubleStart, rowCount, doubleNulls);
+            case DICTIONARY:
+                MappedStrings dictionary = readStrings(buffer);
+                String[] values = new String[dictionary.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = dictionary.getValue(i);
+                }
+                int codeStart = skip(buffer, rowCount * (long) Integer.BYTES);
+                return new MappedDictionaryColumn(buffer, codeStart, rowCount, values);
+            case STRING:
+                MappedStrings strings = readStrings(buffer);
+                if (strings.size() != rowCount) {
+                    throw new IOException("Invalid number of values for a string column");
+                }
+                return new MappedStringColumn(strings);
+            default:
+                throw new IOException(String.format("Unknown column type [%s]", type));
+        }
+    }
+
+    private static int skip(ByteBuffer buffer, long length) throws IOException
+    {
+        int start = buffer.position();
+        if (length > buffer.limit() - start) {
+            throw new IOException("Truncated column");
+        }
+        buffer.position(start + (int) length);
+        return start;
+    }
+
+    private static BitSet readBitSet(ByteBuffer buffer) throws IOException
+    {
+        int wordCount = buffer.getInt();
+        if (wordCount < 0 || wordCount > (buffer.limit() - buffer.position()) / Long.BYTES) {
+            throw new IOException("Invalid null bitmap");
+        }
+        long[] words = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = buffer.getLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private static MappedStrings readStrings(ByteBuffer buffer) throws IOException
+    {
+        BitSet nulls = readBitSet(buffer);
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of strings");
+        }
+        int offsetStart = skip(buffer, (count + 1L) * Integer.BYTES);
+        int byteStart = buffer.position();
+        skip(buffer, buffer.getInt(offsetStart + count * Integer.BYTES));
+        return new MappedStrings(buffer, offsetStart, byteStart, count, nulls);
+    }
+
+    /**
+     * Strings stored as an array of offsets followed by their UTF-8 bytes.
+     */
+    private static final class MappedStrings
+    {
+        private final ByteBuffer buffer;
+
+        private final int offsetStart;
+
+        private final int byteStart;
+
+        private final int count;
+
+        private final BitSet nulls;
+
+        MappedStrings(ByteBuffer buffer, int offsetStart, int byteStart, int count, BitSet nulls)
+        {
+            this.buffer = buffer;
+            this.offsetStart = offsetStart;
+            this.byteStart = byteStart;
+            this.count = count;
+            this.nulls = nulls;
+        }
+
+        int size()
+        {
+            return this.count;
+        }
+
+        boolean isNull(int index)
+        {
+            return this.nulls.get(index);
+        }
+
+        String getValue(int index)
+        {
+            if (isNull(index)) {
+                return null;
+            }
+
+            int start = this.buffer.getInt(this.offsetStart + index * Integer.BYTES);
+            int end = this.buffer.getInt(this.offsetStart + (index + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            // Use a duplicate so that concurrent reads don't share the position of the buffer
+            ByteBuffer view = this.buffer.duplicate();
+            view.position(this.byteStart + start);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class MappedLongColumn extends JSONTableColumns.LongColumn
+    {
+        private final ByteBuffer buffer;
+
+        private final int start;
+
+        private final int rowCount;
+
+        private final BitSet nulls;
+
+        MappedLongColumn(ByteBuffer buffer, int start, int rowCount, BitSet nulls)
+        {
+            this.buffer = buffer;
+            this.start = start;
+            this.rowCount = rowCount;
+            this.nulls = nulls;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.rowCount;
+        }
+
+        @Override
+        long getLong(int row)
+        {
+            return this.buffer.getLong(this.start + row * Long.BYTES);
+        }
+
+        @Override
+        public boolean isNull(int row)
+        {
+            return this.nulls.get(row);
+        }
+
+        @Override
+        public long getWeight()
+        {
+            return this.nulls.size() / Byte.SIZE;
+        }
+    }
+
+    private static final class MappedDoubleColumn extends JSONTableColumns.DoubleColumn
+    {
+        private final ByteBuffer buffer;
+
+        private final int start;
+
+        private final int rowCount;
+
+        private final BitSet nulls;
+
+        MappedDoubleColumn(ByteBuffer buffer, int start, int rowCount, BitSet nulls)
+        {
+            this.buffer = buffer;
+            this.start = start;
+            this.rowCount = rowCount;
+            this.nulls = nulls;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.rowCount;
+        }
+
+        @Override
+        double getDouble(int row)
+        {
+            return this.buffer.getDouble(this.start + row * Double.BYTES);
+        }
+
+        @Override
+        public boolean isNull(int row)
+        {
+            return this.nulls.get(row);
+        }
+
+        @Override
+        public long getWeight()
+        {
+            return this.nulls.size() / Byte.SIZE;
+        }
+    }
+
+    private static final class MappedDictionaryColumn extends JSONTableColumns.DictionaryColumn
+    {
+        private final ByteBuffer buffer;
+
+        private final int start;
+
+        private final int rowCount;
+
+        private final String[] dictionary;
+
+        MappedDictionaryColumn(ByteBuffer buffer, int start, int rowCount, String[] dictionary)
+        {
+            this.buffer = buffer;
+            this.start = start;
+            this.rowCount = rowCount;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.rowCount;
+        }
+
+        @Override
+        int getCode(int row)
+        {
+            return this.buffer.getInt(this.start + row * Integer.BYTES);
+        }
+
+        @Override
+        int getDictionarySize()
+        {
+            return this.dictionary.length;
+        }
+
+        @Override
+        String getDictionaryValue(int code)
+        {
+            return this.dictionary[code];
+        }
+
+        @Override
+        public long getWeight()
+        {
+            return JSONTableColumns.getStringsWeight(this.dictionary, this.dictionary.length);
+        }
+    }
+
+    private static final class MappedStringColumn extends JSONTableColumns.StringColumn
+    {
+        private final MappedStrings strings;
+
+        MappedStringColumn(MappedStrings strings)
+        {
+            this.strings = strings;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.strings.size();
+        }
+
+        @Override
+        public boolean isNull(int row)
+        {
+            return this.strings.isNull(row);
+        }
+
+        @Override
+        public String getValue(int row)
+        {
+            return this.strings.getValue(row);
+        }
+
+        @Override
+        public long getWeight()
+        {
+            return this.strings.nulls.size() / Byte.SIZE;
+        }
+    }
+}
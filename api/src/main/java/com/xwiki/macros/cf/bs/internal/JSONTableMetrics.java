@@ -0,0 +1,436 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+
+/**
+ * Collects metrics about the execution of the JSON Table macro, and exposes them through JMX under the
+ * {@value #OBJECT_NAME} name.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableMetrics.class)
+@Singleton
+public class JSONTableMetrics implements JSONTableMetricsMBean, Initializable, Disposable
+{
+    /**
+     * The name of the MBean.
+     */
+    public static final String OBJECT_NAME = "com.xwiki.macros.cf.bs:type=JSONTable,name=Metrics";
+
+    @Inject
+    private Provider<JSONTableDataLoader> jsonTableDataLoaderProvider;
+
+    @Inject
+    private Logger logger;
+
+    private final Timer macroExecutions = new Timer();
+
+    private final Timer fetches = new Timer();
+
+    private final LongAdder notModifiedCount = new LongAdder();
+
+    private final LongAdder bytesDownloaded = new LongAdder();
+
+    private final Timer parses = new Timer();
+
+    private final LongAdder cacheHitCount = new LongAdder();
+
+    private final LongAdder cacheMissCount = new LongAdder();
+
+    private final LongAdder cacheRemovalCount = new LongAdder();
+
+    private final LongAdder cacheInvalidationCount = new LongAdder();
+
+    private final Timer projections = new Timer();
+
+    private final LongAdder rowsProjected = new LongAdder();
+
+    private final Timer liveDataRequests = new Timer();
+
+    private final LongAdder rowsFiltered = new LongAdder();
+
+    private final LongAdder rowsReturned = new LongAdder();
+
+    private final LongAdder responseSize = new LongAdder();
+
+    private final LongAccumulator maxResponseSize = new LongAccumulator(Math::max, 0);
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            // The MBean of a previous instance of the extension may still be registered
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            this.logger.warn("Failed to register the JSON Table metrics MBean: [{}]", e.getMessage());
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new ComponentLifecycleException("Failed to unregister the JSON Table metrics MBean", e);
+        }
+    }
+
+    /**
+     * @param nanos the execution time of the macro, in nanoseconds
+     */
+    public void recordMacroExecution(long nanos)
+    {
+        this.macroExecutions.record(nanos);
+    }
+
+    /**
+     * @param nanos the time of the HTTP request, in nanoseconds
+     * @param notModified true if the source answered that it has not been modified
+     */
+    public void recordFetch(long nanos, boolean notModified)
+    {
+        this.fetches.record(nanos);
+        if (notModified) {
+            this.notModifiedCount.increment();
+        }
+    }
+
+    /**
+     * @param nanos the time spent reading and parsing a JSON document, in nanoseconds
+     * @param bytes the number of bytes read, or 0 if unknown
+     */
+    public void recordParse(long nanos, long bytes)
+    {
+        this.parses.record(nanos);
+        this.bytesDownloaded.add(bytes);
+    }
+
+    /**
+     * @param hit true if the data was found in the memory cache
+     */
+    public void recordCacheLookup(boolean hit)
+    {
+        (hit ? this.cacheHitCount : this.cacheMissCount).increment();
+    }
+
+    /**
+     * Record the removal of an entry from the memory cache, for whatever reason.
+     */
+    public void recordCacheRemoval()
+    {
+        this.cacheRemovalCount.increment();
+    }
+
+    /**
+     * Record the explicit removal of an entry from the memory cache.
+     */
+    public void recordCacheInvalidation()
+    {
+        this.cacheInvalidationCount.increment();
+    }
+
+    /**
+     * @param nanos the time spent computing the projection, in nanoseconds
+     * @param rows the number of rows projected
+     */
+    public void recordProjection(long nanos, int rows)
+    {
+        this.projections.record(nanos);
+        this.rowsProjected.add(rows);
+    }
+
+    /**
+     * @param nanos the time spent handling the request, in nanoseconds
+     * @param matchingRows the number of rows matching the filters of the request
+     * @param returnedRows the number of rows returned
+     * @param size the estimated size of the returned rows, in bytes
+     */
+    public void recordLiveDataRequest(long nanos, int matchingRows, int returnedRows, long size)
+    {
+        this.liveDataRequests.record(nanos);
+        this.rowsFiltered.add(matchingRows);
+        this.rowsReturned.add(returnedRows);
+        this.responseSize.add(size);
+        this.maxResponseSize.accumulate(size);
+    }
+
+    @Override
+    public long getMacroExecutionCount()
+    {
+        return this.macroExecutions.getCount();
+    }
+
+    @Override
+    public double getMacroExecutionAverageTime()
+    {
+        return this.macroExecutions.getAverageTime();
+    }
+
+    @Override
+    public double getMacroExecutionMaxTime()
+    {
+        return this.macroExecutions.getMaxTime();
+    }
+
+    @Override
+    public long getFetchCount()
+    {
+        return this.fetches.getCount();
+    }
+
+    @Override
+    public long getNotModifiedCount()
+    {
+        return this.notModifiedCount.sum();
+    }
+
+    @Override
+    public double getFetchAverageTime()
+    {
+        return this.fetches.getAverageTime();
+    }
+
+    @Override
+    public double getFetchMaxTime()
+    {
+        return this.fetches.getMaxTime();
+    }
+
+    @Override
+    public long getBytesDownloaded()
+    {
+        return this.bytesDownloaded.sum();
+    }
+
+    @Override
+    public long getParseCount()
+    {
+        return this.parses.getCount();
+    }
+
+    @Override
+    public double getParseAverageTime()
+    {
+        return this.parses.getAverageTime();
+    }
+
+    @Override
+    public long getCacheHitCount()
+    {
+        return this.cacheHitCount.sum();
+    }
+
+    @Override
+    public long getCacheMissCount()
+    {
+        return this.cacheMissCount.sum();
+    }
+
+    @Override
+    public double getCacheHitRatio()
+    {
+        long hits = getCacheHitCount();
+        long lookups = hits + getCacheMissCount();
+        return (lookups > 0) ? (double) hits / lookups : 0;
+    }
+
+    @Override
+    public long getCacheEvictionCount()
+    {
+        return Math.max(this.cacheRemovalCount.sum() - this.cacheInvalidationCount.sum(), 0);
+    }
+
+    @Override
+    public long getLoadCount()
+    {
+        return this.jsonTableDataLoaderProvider.get().getLoadCount();
+    }
+
+    @Override
+    public long getCoalescedLoadCount()
+    {
+        return this.jsonTableDataLoaderProvider.get().getCoalescedLoadCount();
+    }
+
+    @Override
+    public long getProjectionCount()
+    {
+        return this.projections.getCount();
+    }
+
+    @Override
+    public double getProjectionAverageTime()
+    {
+        return this.projections.getAverageTime();
+    }
+
+    @Override
+    public long getRowsProjected()
+    {
+        return this.rowsProjected.sum();
+    }
+
+    @Override
+    public long getLiveDataRequestCount()
+    {
+        return this.liveDataRequests.getCount();
+    }
+
+    @Override
+    public double getLiveDataRequestAverageTime()
+    {
+        return this.liveDataRequests.getAverageTime();
+    }
+
+    @Override
+    public double getLiveDataRequestMaxTime()
+    {
+        return this.liveDataRequests.getMaxTime();
+    }
+
+    @Override
+    public long getRowsFiltered()
+    {
+        return this.rowsFiltered.sum();
+    }
+
+    @Override
+    public long getRowsReturned()
+    {
+        return this.rowsReturned.sum();
+    }
+
+    @Override
+    public long getResponseSize()
+    {
+        return this.responseSize.sum();
+    }
+
+    @Override
+    public double getResponseAverageSize()
+    {
+        long count = getLiveDataRequestCount();
+        return (count > 0) ? (double) getResponseSize() / count : 0;
+    }
+
+    @Override
+    public long getResponseMaxSize()
+    {
+        return this.maxResponseSize.get();
+    }
+
+    @Override
+    public void reset()
+    {
+        this.macroExecutions.reset();
+        this.fetches.reset();
+        this.notModifiedCount.reset();
+        this.bytesDownloaded.reset();
+        this.parses.reset();
+        this.cacheHitCount.reset();
+        this.cacheMissCount.reset();
+        this.cacheRemovalCount.reset();
+        this.cacheInvalidationCount.reset();
+        this.projections.reset();
+        this.rowsProjected.reset();
+        this.liveDataRequests.reset();
+        this.rowsFiltered.reset();
+        this.rowsReturned.reset();
+        this.responseSize.reset();
+        this.maxResponseSize.reset();
+    }
+
+    /**
+     * Number, total and maximum duration of an operation.
+     */
+    private static final class Timer
+    {
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos)
+        {
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+        }
+
+        long getCount()
+        {
+            return this.count.sum();
+        }
+
+        double getAverageTime()
+        {
+            long currentCount = getCount();
+            return (currentCount > 0) ? toMillis(this.totalNanos.sum()) / currentCount : 0;
+        }
+
+        double getMaxTime()
+        {
+            return toMillis(this.maxNanos.get());
+        }
+
+        void reset()
+        {
+            this.count.reset();
+            this.totalNanos.reset();
+            this.maxNanos.reset();
+        }
+
+        private static double toMillis(long nanos)
+        {
+            return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
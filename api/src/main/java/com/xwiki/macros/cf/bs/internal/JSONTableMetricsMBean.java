@@ -0,0 +1,169 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+/**
+ * Management interface of the {@link JSONTableMetrics}, exposed through JMX. Times are in milliseconds.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public interface JSONTableMetricsMBean
+{
+    /**
+     * @return the number of executions of the JSON Table macro
+     */
+    long getMacroExecutionCount();
+
+    /**
+     * @return the average execution time of the JSON Table macro
+     */
+    double getMacroExecutionAverageTime();
+
+    /**
+     * @return the maximum execution time of the JSON Table macro
+     */
+    double getMacroExecutionMaxTime();
+
+    /**
+     * @return the number of HTTP requests made to JSON sources
+     */
+    long getFetchCount();
+
+    /**
+     * @return the number of HTTP requests answered with a {@code 304 Not Modified} response
+     */
+    long getNotModifiedCount();
+
+    /**
+     * @return the average time of the HTTP requests made to JSON sources
+     */
+    double getFetchAverageTime();
+
+    /**
+     * @return the maximum time of the HTTP requests made to JSON sources
+     */
+    double getFetchMaxTime();
+
+    /**
+     * @return the number of bytes downloaded from JSON sources
+     */
+    long getBytesDownloaded();
+
+    /**
+     * @return the number of JSON documents parsed
+     */
+    long getParseCount();
+
+    /**
+     * @return the average time spent parsing a JSON document, including the time spent reading it
+     */
+    double getParseAverageTime();
+
+    /**
+     * @return the number of lookups of data found in the memory cache
+     */
+    long getCacheHitCount();
+
+    /**
+     * @return the number of lookups of data missing from the memory cache
+     */
+    long getCacheMissCount();
+
+    /**
+     * @return the ratio of lookups of data found in the memory cache
+     */
+    double getCacheHitRatio();
+
+    /**
+     * @return the number of entries removed from the memory cache because of its size or idle time limits
+     */
+    long getCacheEvictionCount();
+
+    /**
+     * @return the number of synchronous loads of JSON sources
+     */
+    long getLoadCount();
+
+    /**
+     * @return the number of synchronous loads avoided by waiting for a load of the same source
+     */
+    long getCoalescedLoadCount();
+
+    /**
+     * @return the number of projections computed
+     */
+    long getProjectionCount();
+
+    /**
+     * @return the average time spent computing a projection
+     */
+    double getProjectionAverageTime();
+
+    /**
+     * @return the number of rows projected
+     */
+    long getRowsProjected();
+
+    /**
+     * @return the number of LiveData requests handled
+     */
+    long getLiveDataRequestCount();
+
+    /**
+     * @return the average time spent handling a LiveData request
+     */
+    double getLiveDataRequestAverageTime();
+
+    /**
+     * @return the maximum time spent handling a LiveData request
+     */
+    double getLiveDataRequestMaxTime();
+
+    /**
+     * @return the number of rows matching the filters of the LiveData requests
+     */
+    long getRowsFiltered();
+
+    /**
+     * @return the number of rows sent in response to the LiveData requests
+     */
+    long getRowsReturned();
+
+    /**
+     * @return the estimated size of the rows sent in response to the LiveData requests, in bytes
+     */
+    long getResponseSize();
+
+    /**
+     * @return the average estimated size of the rows sent in response to a LiveData request, in bytes
+     */
+    double getResponseAverageSize();
+
+    /**
+     * @return the maximum estimated size of the rows sent in response to a LiveData request, in bytes
+     */
+    long getResponseMaxSize();
+
+    /**
+     * Reset all the metrics.
+     */
+    void reset();
+}
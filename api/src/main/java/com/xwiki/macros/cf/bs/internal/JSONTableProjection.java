@@ -0,0 +1,201 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The result of resolving a list of field paths on every row matching a JSON path. Values are stored per column, in a
+ * compact form, so that filtering and sorting only need to go through the columns that they use.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public class JSONTableProjection
+{
+    private final Reference<JsonNode> source;
+
+    private final String version;
+
+    private final List<String> fieldPaths;
+
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+    private final JSONTableColumn[] columns;
+
+    private final JSONTableColumnIndex[] indexes;
+
+    private final int rowCount;
+
+    /**
+     * @param source the node from which the projection has been computed, or null if it's not available anymore
+     * @param version the version of the data from which the projection has been computed, or null if unknown
+     * @param fieldPaths the field paths corresponding to each column
+     * @param columns the columns
+     * @param rowCount the number of rows
+     */
+    public JSONTableProjection(JsonNode source, String version, List<String> fieldPaths, JSONTableColumn[] columns,
+        int rowCount)
+    {
+        // Only keep a weak reference to the source so that the projection doesn't prevent evicted data from being
+        // garbage collected.
+        this.source = new WeakReference<>(source);
+        this.version = version;
+        this.fieldPaths = fieldPaths;
+        this.columns = columns;
+        this.indexes = new JSONTableColumnIndex[columns.length];
+        this.rowCount = rowCount;
+
+        for (int i = 0; i < fieldPaths.size(); i++) {
+            this.columnIndexes.put(fieldPaths.get(i), i);
+        }
+    }
+
+    /**
+     * Create the projection of some data built by appending rows to the data of this projection. The indexes already
+     * built for the columns of this projection are extended to the appended rows rather than rebuilt.
+     *
+     * @param extendedSource the node from which the projection has been computed
+     * @param extendedVersion the version of the data from which the projection has been computed, or null if unknown
+     * @param extendedColumns the columns, starting with the values of the columns of this projection
+     * @param extendedRowCount the number of rows
+     * @return the projection
+     */
+    JSONTableProjection extend(JsonNode extendedSource, String extendedVersion, JSONTableColumn[] extendedColumns,
+        int extendedRowCount)
+    {
+        JSONTableProjection projection = new JSONTableProjection(extendedSource, extendedVersion, this.fieldPaths,
+            extendedColumns, extendedRowCount);
+        synchronized (this.indexes) {
+            for (int i = 0; i < this.indexes.length; i++) {
+                if (this.indexes[i] != null) {
+                    projection.indexes[i] = this.indexes[i].extend(extendedColumns[i]);
+                }
+            }
+        }
+        return projection;
+    }
+
+    /**
+     * @param node a JSON node
+     * @param dataVersion the version of the data the node has been parsed from, or null if unknown
+     * @return true if this projection has been computed from the given node, or from the same version of the data
+     */
+    public boolean isProjectionOf(JsonNode node, String dataVersion)
+    {
+        return this.source.get() == node || (this.version != null && this.version.equals(dataVersion));
+    }
+
+    /**
+     * @return the version of the data from which the projection has been computed, or null if unknown
+     */
+    public String getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @param index the column index
+     * @return the column
+     */
+    public JSONTableColumn getColumn(int index)
+    {
+        return this.columns[index];
+    }
+
+    /**
+     * @return the field paths corresponding to each column
+     */
+    public List<String> getFieldPaths()
+    {
+        return this.fieldPaths;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getRowCount()
+    {
+        return this.rowCount;
+    }
+
+    /**
+     * @return an estimation of the heap size of the columns, in bytes, not counting the indexes built afterwards
+     */
+    public long getWeight()
+    {
+        long weight = 0;
+        for (JSONTableColumn column : this.columns) {
+            weight += column.getWeight();
+        }
+        return weight;
+    }
+
+    /**
+     * @param fieldPath a field path
+     * @return the column corresponding to the field path, or null if the field path is not projected
+     */
+    public JSONTableColumn getColumn(String fieldPath)
+    {
+        Integer index = this.columnIndexes.get(fieldPath);
+        return (index != null) ? this.columns[index] : null;
+    }
+
+    /**
+     * @param fieldPath a field path
+     * @return the index of the column corresponding to the field path, or null if the field path is not projected
+     */
+    public JSONTableColumnIndex getIndex(String fieldPath)
+    {
+        Integer index = this.columnIndexes.get(fieldPath);
+        if (index == null) {
+            return null;
+        }
+
+        // The index itself is only built when it's used, so creating it is cheap
+        synchronized (this.indexes) {
+            if (this.indexes[index] == null) {
+                this.indexes[index] = new JSONTableColumnIndex(this.columns[index]);
+            }
+            return this.indexes[index];
+        }
+    }
+
+    /**
+     * @param row the row index
+     * @return the values of the given row, indexed by field path
+     */
+    public Map<String, Object> getEntry(int row)
+    {
+        Map<String, Object> entry = new HashMap<>();
+        for (int i = 0; i < this.columns.length; i++) {
+            if (!this.columns[i].isNull(row)) {
+                entry.put(this.fieldPaths.get(i), this.columns[i].getValue(row));
+            }
+        }
+        return entry;
+    }
+}
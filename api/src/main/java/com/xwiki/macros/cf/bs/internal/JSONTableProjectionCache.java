@@ -0,0 +1,84 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Cache used to store the projections of the JSON Table data computed for the LiveData entry store. Besides the
+ * maximum number of entries, the cache is bounded by the estimated heap size of the projections it holds.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableProjectionCache.class)
+@Singleton
+public class JSONTableProjectionCache extends AbstractJSONTableWeightedCache<JSONTableProjection>
+{
+    private static final String NAME = "cache.jsontable.projections";
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    /**
+     * @param cacheKey the key of the data in the {@link JSONTableDataCache}
+     * @param path the JSON path used to get the rows
+     * @param fieldPaths the field paths used to get the columns
+     * @return the key of the corresponding projection
+     */
+    public String getKey(String cacheKey, String path, List<String> fieldPaths)
+    {
+        return DigestUtils.sha256Hex(String.format("%s\n%s\n%s", cacheKey, path, String.join("\n", fieldPaths)));
+    }
+
+    @Override
+    protected CacheConfiguration getCacheConfiguration()
+    {
+        CacheConfiguration cacheConfiguration = new CacheConfiguration();
+        cacheConfiguration.setConfigurationId(NAME);
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(this.configuration.getProjectionCacheMaxEntries());
+        // Projections are also checked against the data they have been computed from, but there is no need to
+        // keep them longer than the data itself
+        lru.setLifespan(this.configuration.getProjectionCacheLifespan());
+        cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+        return cacheConfiguration;
+    }
+
+    @Override
+    protected long getMaxWeight()
+    {
+        return this.configuration.getProjectionCacheMaxWeight();
+    }
+
+    @Override
+    protected long getWeight(JSONTableProjection value)
+    {
+        return value.getWeight();
+    }
+}
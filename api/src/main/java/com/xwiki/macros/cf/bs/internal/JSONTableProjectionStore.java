@@ -0,0 +1,230 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+
+/**
+ * Stores the large projections of the JSON Table data in memory mapped files, so that their values don't use heap
+ * memory and can be reused after a restart as long as the data they have been computed from didn't change. The files
+ * are kept within a disk budget, checked each time a projection is stored.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableProjectionStore.class)
+@Singleton
+public class JSONTableProjectionStore implements Initializable
+{
+    private static final int MAGIC = 0x4A535450;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String EXTENSION = ".bin";
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    private File directory;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.directory = new File(this.environment.getPermanentDirectory(), "cache/jsontable/projections");
+        clean(null);
+    }
+
+    /**
+     * Move the values of the given projection to a memory mapped file if it's large enough.
+     *
+     * @param key the key of the projection in the {@link JSONTableProjectionCache}
+     * @param projection the projection
+     * @return a projection reading its values from a memory mapped file, or the given projection if it's too small,
+     *     if its version is unknown or if it could not be written
+     */
+    public JSONTableProjection spill(String key, JSONTableProjection projection)
+    {
+        int threshold = this.configuration.getProjectionSpillRowThreshold();
+        if (threshold <= 0 || projection.getRowCount() < threshold || projection.getVersion() == null) {
+            return projection;
+        }
+
+        File file = getFile(key);
+        try {
+            write(projection, file);
+            clean(file);
+            JSONTableProjection mappedProjection = read(file, projection.getVersion());
+            return (mappedProjection != null) ? mappedProjection : projection;
+        } catch (IOException e) {
+            this.logger.warn("Failed to store the JSON Table projection [{}] in [{}]: [{}]", key, file,
+                e.getMessage());
+            return projection;
+        }
+    }
+
+    /**
+     * @param key the key of the projection in the {@link JSONTableProjectionCache}
+     * @param version the version of the data the projection should have been computed from
+     * @return the stored projection, or null if no projection of the given version of the data has been stored
+     */
+    public JSONTableProjection load(String key, String version)
+    {
+        File file = getFile(key);
+        if (version == null || !file.isFile()) {
+            return null;
+        }
+
+        try {
+            JSONTableProjection projection = read(file, version);
+            if (projection != null && !file.setLastModified(System.currentTimeMillis())) {
+                this.logger.debug("Failed to update the last modified date of [{}]", file);
+            }
+            return projection;
+        } catch (IOException e) {
+            this.logger.warn("Failed to read the JSON Table projection [{}] from [{}]: [{}]", key, file,
+                e.getMessage());
+            return null;
+        }
+    }
+
+    private File getFile(String key)
+    {
+        return new File(this.directory, key + EXTENSION);
+    }
+
+    /**
+     * Remove the files of the projections that have not been used for a long time, and the least recently used ones
+     * when the files don't fit in the disk budget anymore. Mapped files can be deleted while still being read on most
+     * systems, otherwise they will be deleted by a later cleanup.
+     */
+    private synchronized void clean(File keptFile)
+    {
+        JSONTableFileCleaner.clean(this.directory, EXTENSION, this.configuration.getProjectionSpillMaxAge() * 1000L,
+            this.configuration.getProjectionSpillMaxSize(), keptFile, this.logger);
+    }
+
+    private void write(JSONTableProjection projection, File file) throws IOException
+    {
+        Files.createDirectories(this.directory.toPath());
+        Path temporaryFile = Files.createTempFile(this.directory.toPath(), file.getName(), ".tmp");
+        try {
+            try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temporaryFile))) {
+                DataOutputStream out = new DataOutputStream(stream);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(projection.getVersion(), out);
+                out.writeInt(projection.getRowCount());
+                out.writeInt(projection.getFieldPaths().size());
+                for (int i = 0; i < projection.getFieldPaths().size(); i++) {
+                    writeString(projection.getFieldPaths().get(i), out);
+                    JSONTableColumns.write(projection.getColumn(i), out);
+                }
+            }
+
+            // Buffers cannot be mapped beyond 2GB
+            if (Files.size(temporaryFile) > Integer.MAX_VALUE) {
+                throw new IOException("The projection is too large to be mapped in memory");
+            }
+
+            // Readers of the file should never see a partially written projection
+            Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private JSONTableProjection read(File file, String version) throws IOException
+    {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || !version.equals(readString(buffer))) {
+                return null;
+            }
+
+            int rowCount = buffer.getInt();
+            int columnCount = buffer.getInt();
+            List<String> fieldPaths = new ArrayList<>();
+            JSONTableColumn[] columns = new JSONTableColumn[Math.max(columnCount, 0)];
+            for (int i = 0; i < columns.length; i++) {
+                fieldPaths.add(readString(buffer));
+                columns[i] = JSONTableMappedColumns.read(buffer, rowCount);
+            }
+
+            return new JSONTableProjection(null, version, fieldPaths, columns, rowCount);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+            | NegativeArraySizeException e) {
+            throw new IOException("Invalid projection file", e);
+        }
+    }
+
+    private void writeString(String value, DataOutput out) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataHelper.CompiledPath;
+
+/**
+ * Computes the {@link JSONTableProjection} of some data, i.e. the values of the displayed field paths for each of
+ * its rows.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableProjector.class)
+@Singleton
+public class JSONTableProjector implements Initializable, Disposable
+{
+    /**
+     * The number of rows below which a chunk of rows is projected by a single thread.
+     */
+    private static final int PROJECTION_CHUNK_SIZE = 1000;
+
+    private static final String ROOT_PATH = "$";
+
+    private static final String ALL_ELEMENTS = "[*]";
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    @Inject
+    private JSONTableDataHelper dataHelper;
+
+    /**
+     * The pool used to project large data sets, or null if projections are always done by the calling thread.
+     */
+    private ForkJoinPool projectionPool;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int parallelism = this.configuration.getProjectionParallelism();
+        if (parallelism > 1) {
+            // Use a dedicated pool rather than the common one, so that large projections cannot starve the other
+            // users of the common pool
+            this.projectionPool = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("JSON Table projection " + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.projectionPool != null) {
+            this.projectionPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolve the given field paths on every node matching the given path. Large data sets are split in chunks of
+     * rows that are resolved concurrently.
+     *
+     * @param path the JSON path used to get the rows
+     * @param fieldPaths the field paths used to get the columns
+     * @param node the node to project
+     * @param dataVersion the version of the data the node has been parsed from, or null if unknown
+     * @return the resulting projection
+     */
+    public JSONTableProjection project(String path, List<String> fieldPaths, JsonNode node, String dataVersion)
+    {
+        List<JsonNode> rows = Collections.list(this.dataHelper.applyPath(path, node));
+        List<CompiledPath> compiledPaths = compile(fieldPaths);
+        JsonNode[][] values = new JsonNode[fieldPaths.size()][rows.size()];
+        JSONTableColumn[] columns = new JSONTableColumn[fieldPaths.size()];
+
+        if (this.projectionPool != null && rows.size() >= this.configuration.getProjectionParallelThreshold()) {
+            // Each task writes a distinct range of rows or a distinct column, so the order of the rows is kept
+            this.projectionPool.invoke(new ProjectionTask(rows, compiledPaths, values, 0, rows.size()));
+            Map<String, String> stringPool = new ConcurrentHashMap<>();
+            this.projectionPool.submit(() -> IntStream.range(0, columns.length).parallel()
+                .forEach(j -> columns[j] = JSONTableColumns.build(values[j], stringPool))).join();
+        } else {
+            resolveRows(rows, compiledPaths, values, 0, rows.size());
+            // Values that are repeated across rows and columns are only stored once
+            Map<String, String> stringPool = new HashMap<>();
+            for (int j = 0; j < fieldPaths.size(); j++) {
+                columns[j] = JSONTableColumns.build(values[j], stringPool);
+            }
+        }
+
+        return new JSONTableProjection(node, dataVersion, fieldPaths, columns, rows.size());
+    }
+
+    /**
+     * Extend a projection computed from some data to the rows that have been appended to this data, by only
+     * resolving the field paths of the appended rows. The values of the existing rows are not copied, and the
+     * indexes built for the projection are extended to the appended rows.
+     *
+     * @param projection the projection of the data to which rows have been appended
+     * @param path the JSON path used to get the rows
+     * @param node the data resulting from appending the rows
+     * @param dataVersion the version of the data resulting from appending the rows, or null if unknown
+     * @return the projection of the resulting data
+     */
+    public JSONTableProjection extend(JSONTableProjection projection, String path, JsonNode node, String dataVersion)
+    {
+        List<String> fieldPaths = projection.getFieldPaths();
+        List<JsonNode> appendedRows = getAppendedRows(path, node, projection.getRowCount());
+        JsonNode[][] values = new JsonNode[fieldPaths.size()][appendedRows.size()];
+        resolveRows(appendedRows, compile(fieldPaths), values, 0, appendedRows.size());
+
+        Map<String, String> stringPool = new HashMap<>();
+        JSONTableColumn[] columns = new JSONTableColumn[fieldPaths.size()];
+        for (int j = 0; j < fieldPaths.size(); j++) {
+            columns[j] = JSONTableColumns.append(projection.getColumn(j), values[j], stringPool);
+        }
+
+        return projection.extend(node, dataVersion, columns, projection.getRowCount() + appendedRows.size());
+    }
+
+    /**
+     * @return the rows matching the given path, starting from the given row
+     */
+    private List<JsonNode> getAppendedRows(String path, JsonNode node, int from)
+    {
+        // The rows of paths such as $.items[*] are the elements of an array, so the appended rows can be read
+        // directly from the array without going through the previous ones
+        String arrayPath = StringUtils.removeEnd(path, ALL_ELEMENTS);
+        if (!arrayPath.equals(path) && (ROOT_PATH.equals(arrayPath) || JSONTableDataHelper.isSimplePath(arrayPath))) {
+            Enumeration<JsonNode> arrays = ROOT_PATH.equals(arrayPath)
+                ? Collections.enumeration(Collections.singletonList(node)) : this.dataHelper.applyPath(arrayPath, node);
+            JsonNode array = arrays.hasMoreElements() ? arrays.nextElement() : null;
+            if (array != null && array.isArray()) {
+                List<JsonNode> rows = new ArrayList<>(Math.max(array.size() - from, 0));
+                for (int i = from; i < array.size(); i++) {
+                    rows.add(array.get(i));
+                }
+                return rows;
+            }
+        }
+
+        List<JsonNode> rows = Collections.list(this.dataHelper.applyPath(path, node));
+        return rows.subList(Math.min(from, rows.size()), rows.size());
+    }
+
+    /**
+     * @return the parsed field paths, looked up once per projection rather than once per row
+     */
+    private List<CompiledPath> compile(List<String> fieldPaths)
+    {
+        List<CompiledPath> compiledPaths = new ArrayList<>(fieldPaths.size());
+        for (String fieldPath : fieldPaths) {
+            compiledPaths.add(this.dataHelper.getCompiledPath(fieldPath));
+        }
+        return compiledPaths;
+    }
+
+    private static void resolveRows(List<JsonNode> rows, List<CompiledPath> compiledPaths, JsonNode[][] values,
+        int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            for (int j = 0; j < compiledPaths.size(); j++) {
+                Enumeration<JsonNode> matchingNodes = compiledPaths.get(j).apply(rows.get(i));
+                if (matchingNodes.hasMoreElements()) {
+                    values[j][i] = matchingNodes.nextElement();
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the field paths of a range of rows, splitting it until it's small enough.
+     */
+    private static final class ProjectionTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<JsonNode> rows;
+
+        private final transient List<CompiledPath> compiledPaths;
+
+        private final transient JsonNode[][] values;
+
+        private final int from;
+
+        private final int to;
+
+        ProjectionTask(List<JsonNode> rows, List<CompiledPath> compiledPaths, JsonNode[][] values, int from, int to)
+        {
+            this.rows = rows;
+            this.compiledPaths = compiledPaths;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.to - this.from <= PROJECTION_CHUNK_SIZE) {
+                resolveRows(this.rows, this.compiledPaths, this.values, this.from, this.to);
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new ProjectionTask(this.rows, this.compiledPaths, this.values, this.from, middle),
+                    new ProjectionTask(this.rows, this.compiledPaths, this.values, middle, this.to));
+            }
+        }
+    }
+}
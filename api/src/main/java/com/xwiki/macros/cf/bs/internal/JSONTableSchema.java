@@ -0,0 +1,162 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xwiki.macros.cf.bs.internal.livedata.JSONTableSortKey;
+
+/**
+ * The columns that a JSON Table can display for the rows matching a path, along with the type of their values. The
+ * columns are the paths of the scalar values found in the rows, including the nested ones (such as {@code a.b.c}), in
+ * the order in which they have been found.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableSchema
+{
+    private static final String FIELD_SEPARATOR = ".";
+
+    private static final int MAX_DEPTH = 16;
+
+    /**
+     * The types of values.
+     */
+    public enum Type
+    {
+        /**
+         * Numbers.
+         */
+        NUMBER,
+
+        /**
+         * Booleans.
+         */
+        BOOLEAN,
+
+        /**
+         * Strings representing ISO 8601 dates.
+         */
+        DATE,
+
+        /**
+         * Any other value, or values of different types.
+         */
+        STRING
+    }
+
+    /**
+     * The type of each field path, or null when only null values have been found so far.
+     */
+    private final Map<String, Type> types = new LinkedHashMap<>();
+
+    private JSONTableSchema()
+    {
+    }
+
+    /**
+     * Infer the schema of the given rows, going through them only once.
+     *
+     * @param rows the rows
+     * @param sampleSize the maximum number of rows to go through, or 0 or less to go through all the rows
+     * @return the inferred schema
+     */
+    public static JSONTableSchema infer(Enumeration<JsonNode> rows, int sampleSize)
+    {
+        JSONTableSchema schema = new JSONTableSchema();
+        for (int i = 0; rows.hasMoreElements() && (sampleSize <= 0 || i < sampleSize); i++) {
+            JsonNode row = rows.nextElement();
+            if (row.isObject()) {
+                schema.addFields(null, row, 0);
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * @return the field paths of the columns
+     */
+    public List<String> getFieldPaths()
+    {
+        return new ArrayList<>(this.types.keySet());
+    }
+
+    /**
+     * @param fieldPath a field path
+     * @return the type of the values of the given field path, or {@link Type#STRING} if the type is unknown
+     */
+    public Type getType(String fieldPath)
+    {
+        Type type = this.types.get(fieldPath);
+        return (type != null) ? type : Type.STRING;
+    }
+
+    private void addFields(String prefix, JsonNode node, int depth)
+    {
+        for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> field = it.next();
+            JsonNode value = field.getValue();
+            if (prefix == null) {
+                // Keep supporting any top level field name, as they have always been displayed
+                addField(field.getKey(), value, depth);
+            } else if (!field.getKey().contains(FIELD_SEPARATOR)) {
+                // Nested field names containing the separator can't be expressed as field paths
+                addField(prefix + FIELD_SEPARATOR + field.getKey(), value, depth);
+            }
+        }
+    }
+
+    private void addField(String fieldPath, JsonNode value, int depth)
+    {
+        if (value.isValueNode()) {
+            Type type = getType(value);
+            Type currentType = this.types.get(fieldPath);
+            if (currentType == null || type == null) {
+                this.types.put(fieldPath, (currentType != null) ? currentType : type);
+            } else if (currentType != type) {
+                this.types.put(fieldPath, Type.STRING);
+            }
+        } else if (value.isObject() && depth < MAX_DEPTH) {
+            addFields(fieldPath, value, depth + 1);
+        }
+    }
+
+    private static Type getType(JsonNode value)
+    {
+        if (value.isNull()) {
+            return null;
+        } else if (value.isNumber()) {
+            return Type.NUMBER;
+        } else if (value.isBoolean()) {
+            return Type.BOOLEAN;
+        } else if (value.isTextual() && JSONTableSortKey.isDate(value.textValue())) {
+            return Type.DATE;
+        } else {
+            return Type.STRING;
+        }
+    }
+}
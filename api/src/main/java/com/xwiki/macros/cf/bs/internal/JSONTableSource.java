@@ -0,0 +1,119 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.net.URL;
+
+/**
+ * The source of the data displayed by a {@link JSONTableMacro}: either a URL, or some inline JSON content.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableSource
+{
+    private static final int BASE_WEIGHT = 200;
+
+    private final URL url;
+
+    private final String content;
+
+    private final JSONTableStreamingReader reader;
+
+    private final JSONTableCursor cursor;
+
+    private JSONTableSource(URL url, String content, JSONTableStreamingReader reader, JSONTableCursor cursor)
+    {
+        this.url = url;
+        this.content = content;
+        this.reader = reader;
+        this.cursor = cursor;
+    }
+
+    /**
+     * @param url the URL of the JSON data
+     * @param reader the reader used to only keep the values needed from the data, or null
+     * @param cursor the cursor used to only fetch the rows added to the data since it has last been fetched, or null
+     *     to always fetch the whole data
+     * @return the corresponding source
+     */
+    public static JSONTableSource fromURL(URL url, JSONTableStreamingReader reader, JSONTableCursor cursor)
+    {
+        return new JSONTableSource(url, null, reader, cursor);
+    }
+
+    /**
+     * @param content the inline JSON data
+     * @param reader the reader used to only keep the values needed from the data, or null
+     * @return the corresponding source
+     */
+    public static JSONTableSource fromContent(String content, JSONTableStreamingReader reader)
+    {
+        return new JSONTableSource(null, content, reader, null);
+    }
+
+    /**
+     * @return the URL of the JSON data, or null if the source is some inline content
+     */
+    public URL getURL()
+    {
+        return this.url;
+    }
+
+    /**
+     * @return the inline JSON data, or null if the source is a URL
+     */
+    public String getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @return the reader used to only keep the values needed from the data, or null if the whole data is kept
+     */
+    public JSONTableStreamingReader getReader()
+    {
+        return this.reader;
+    }
+
+    /**
+     * @return the cursor used to only fetch the rows added to the data since it has last been fetched, or null if
+     *     the whole data is always fetched
+     */
+    public JSONTableCursor getCursor()
+    {
+        return this.cursor;
+    }
+
+    /**
+     * @return an estimation of the heap size of the source, in bytes, which is mostly the size of its inline content
+     */
+    public long getWeight()
+    {
+        long weight = BASE_WEIGHT;
+        if (this.url != null) {
+            weight += this.url.toString().length();
+        }
+        if (this.content != null) {
+            weight += this.content.length();
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Cache used to remember the sources of the data stored in the {@link JSONTableDataCache}, so that this data can be
+ * loaded again once evicted. Since the sources of inline content hold the whole content, the cache is also bounded
+ * by the estimated heap size of the sources it holds.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableSourceCache.class)
+@Singleton
+public class JSONTableSourceCache extends AbstractJSONTableWeightedCache<JSONTableSource>
+{
+    private static final String NAME = "cache.jsontable.sources";
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    @Override
+    protected CacheConfiguration getCacheConfiguration()
+    {
+        CacheConfiguration cacheConfiguration = new CacheConfiguration();
+        cacheConfiguration.setConfigurationId(NAME);
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(this.configuration.getSourceCacheMaxEntries());
+        cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+        return cacheConfiguration;
+    }
+
+    @Override
+    protected long getMaxWeight()
+    {
+        return this.configuration.getSourceCacheMaxWeight();
+    }
+
+    @Override
+    protected long getWeight(JSONTableSource value)
+    {
+        return value.getWeight();
+    }
+}
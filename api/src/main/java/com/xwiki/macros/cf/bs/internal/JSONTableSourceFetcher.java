@@ -0,0 +1,317 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xwiki.macros.cf.bs.BSMacroException;
+
+/**
+ * Fetches the contents of the JSON sources of the {@link JSONTableMacro}, using a shared pool of HTTP connections.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableSourceFetcher.class)
+@Singleton
+public class JSONTableSourceFetcher implements Initializable, Disposable
+{
+    private static final String MAX_AGE = "max-age";
+
+    private static final List<String> NO_CACHE_DIRECTIVES = Arrays.asList("no-cache", "no-store");
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    @Inject
+    private JSONTableMetrics metrics;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CloseableHttpClient httpClient;
+
+    private long maxBodySize;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.maxBodySize = this.configuration.getHTTPMaxBodySize();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(this.configuration.getHTTPConnectTimeout())
+            .setSocketTimeout(this.configuration.getHTTPSocketTimeout())
+            .setConnectionRequestTimeout(this.configuration.getHTTPConnectionRequestTimeout())
+            .build();
+
+        long keepAlive = this.configuration.getHTTPKeepAlive();
+
+        this.httpClient = HttpClientBuilder.create()
+            .useSystemProperties()
+            .setMaxConnTotal(this.configuration.getHTTPMaxConnections())
+            .setMaxConnPerRoute(this.configuration.getHTTPMaxConnectionsPerRoute())
+            .setDefaultRequestConfig(requestConfig)
+            // Don't keep connections alive longer than what the server allows us to
+            .setKeepAliveStrategy((response, context) -> {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return (duration > 0) ? Math.min(duration, keepAlive) : keepAlive;
+            })
+            .evictExpiredConnections()
+            .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.httpClient != null) {
+            try {
+                this.httpClient.close();
+            } catch (IOException e) {
+                throw new ComponentLifecycleException("Failed to close the JSON Table HTTP client", e);
+            }
+        }
+    }
+
+    /**
+     * Fetch and parse the JSON document located at the given URL. When a previous entry is given, a conditional
+     * request is made using the validators of this entry, and the previously parsed data is reused if the source
+     * has not been modified.
+     *
+     * @param url the URL of the JSON source
+     * @param previousEntry the entry previously fetched from this URL, or null
+     * @param reader the reader used to only keep the values needed from the document, or null to keep the whole
+     *     document
+     * @return the entry corresponding to the JSON document
+     * @throws BSMacroException if the source answered with an invalid response or is too large
+     * @throws IOException if the source could not be fetched or parsed
+     * @throws URISyntaxException if the URL is invalid
+     */
+    public JSONTableDataEntry fetch(URL url, JSONTableDataEntry previousEntry, JSONTableStreamingReader reader)
+        throws BSMacroException, IOException, URISyntaxException
+    {
+        long start = System.nanoTime();
+        HttpGet request = newRequest(url, previousEntry);
+        try (CloseableHttpResponse response = this.httpClient.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            // Only the time needed to get the response headers, reading the body being part of the parse time
+            this.metrics.recordFetch(System.nanoTime() - start, statusCode == HttpStatus.SC_NOT_MODIFIED);
+            HttpEntity entity = response.getEntity();
+
+            JSONTableDataEntry result = null;
+            try {
+                if (statusCode == HttpStatus.SC_NOT_MODIFIED && previousEntry != null) {
+                    result = previousEntry.revalidate(getHeader(response, HttpHeaders.ETAG, previousEntry.getETag()),
+                        getHeader(response, HttpHeaders.LAST_MODIFIED, previousEntry.getLastModified()),
+                        System.currentTimeMillis(), getExpirationTime(response));
+                } else if (statusCode < 200 || statusCode >= 300) {
+                    throw new BSMacroException(
+                        String.format("Got invalid HTTP response when fetching source contents for JSON Table [%s] ; "
+                            + "response code : [%s]", url, statusCode));
+                } else if (entity == null) {
+                    throw new BSMacroException(
+                        String.format("Got an empty HTTP response when fetching source contents for JSON Table [%s]",
+                            url));
+                } else if (this.maxBodySize >= 0 && entity.getContentLength() > this.maxBodySize) {
+                    throw newBodySizeException(url);
+                } else {
+                    JsonNode node = parse(url, entity, reader);
+                    result = new JSONTableDataEntry(node, getHeader(response, HttpHeaders.ETAG, null),
+                        getHeader(response, HttpHeaders.LAST_MODIFIED, null), System.currentTimeMillis(),
+                        getExpirationTime(response));
+                }
+                return result;
+            } finally {
+                if (result != null) {
+                    // Make sure that the connection can be reused
+                    EntityUtils.consumeQuietly(entity);
+                } else {
+                    // Reading the rest of a rejected response could mean downloading a huge body, so the connection
+                    // is discarded instead
+                    request.abort();
+                }
+            }
+        }
+    }
+
+    private HttpGet newRequest(URL url, JSONTableDataEntry previousEntry) throws URISyntaxException
+    {
+        HttpGet request = new HttpGet(url.toURI());
+        if (previousEntry != null) {
+            if (previousEntry.getETag() != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, previousEntry.getETag());
+            }
+            if (previousEntry.getLastModified() != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, previousEntry.getLastModified());
+            }
+        }
+        return request;
+    }
+
+    private JsonNode parse(URL url, HttpEntity entity, JSONTableStreamingReader reader)
+        throws IOException, BSMacroException
+    {
+        long start = System.nanoTime();
+        SizeLimitedInputStream inputStream = new SizeLimitedInputStream(entity.getContent(), this.maxBodySize);
+        try (InputStream in = inputStream) {
+            if (reader != null) {
+                try (JsonParser parser = this.objectMapper.getFactory().createParser(in)) {
+                    return reader.read(parser);
+                }
+            } else {
+                return this.objectMapper.readTree(in);
+            }
+        } catch (SizeLimitExceededException e) {
+            throw newBodySizeException(url);
+        } finally {
+            this.metrics.recordParse(System.nanoTime() - start, inputStream.getCount());
+        }
+    }
+
+    private String getHeader(HttpResponse response, String name, String defaultValue)
+    {
+        Header header = response.getFirstHeader(name);
+        return (header != null) ? header.getValue() : defaultValue;
+    }
+
+    private long getExpirationTime(HttpResponse response)
+    {
+        long lifespan = this.configuration.getCacheSoftTTL() * 1000L;
+
+        // Honour the freshness lifetime defined by the source, if any
+        for (Header header : response.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+            for (HeaderElement element : header.getElements()) {
+                if (NO_CACHE_DIRECTIVES.contains(element.getName().toLowerCase(Locale.ROOT))) {
+                    lifespan = 0;
+                } else if (MAX_AGE.equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        lifespan = Math.max(Long.parseLong(element.getValue().trim()), 0) * 1000;
+                    } catch (NumberFormatException e) {
+                        // Ignore invalid directives and keep the configured lifespan
+                    }
+                }
+            }
+        }
+
+        return System.currentTimeMillis() + lifespan;
+    }
+
+    private BSMacroException newBodySizeException(URL url)
+    {
+        return new BSMacroException(String.format("The source contents for JSON Table [%s] exceed the maximum "
+            + "allowed size of [%s] bytes", url, this.maxBodySize));
+    }
+
+    /**
+     * Thrown when the contents of a source exceed the maximum allowed size.
+     */
+    private static final class SizeLimitExceededException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Input stream failing as soon as more than a given number of bytes are read.
+     */
+    private static final class SizeLimitedInputStream extends FilterInputStream
+    {
+        private final long maxSize;
+
+        private long count;
+
+        SizeLimitedInputStream(InputStream inputStream, long maxSize)
+        {
+            super(inputStream);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void close()
+        {
+            // Closing the response stream reads the rest of the response, so the fetcher decides instead whether the
+            // rest of the response should be read, or the connection discarded
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int result = super.read();
+            if (result >= 0) {
+                count(1);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int result = super.read(b, off, len);
+            if (result > 0) {
+                count(result);
+            }
+            return result;
+        }
+
+        long getCount()
+        {
+            return this.count;
+        }
+
+        private void count(long read) throws SizeLimitExceededException
+        {
+            this.count += read;
+            if (this.maxSize >= 0 && this.count > this.maxSize) {
+                throw new SizeLimitExceededException();
+            }
+        }
+    }
+}
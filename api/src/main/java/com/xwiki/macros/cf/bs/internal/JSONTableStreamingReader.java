@@ -0,0 +1,201 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Reads a JSON document token by token, only keeping the values of the configured field paths for each element of
+ * the array targeted by the path of a {@link JSONTableMacro}. The result is a document having the same structure as
+ * the original one, so that the path and the field paths can be applied to it as usual, but without any of the
+ * values that the table doesn't display.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableStreamingReader
+{
+    private static final String ROOT_PREFIX = "$";
+
+    private static final String FIELD_SEPARATOR = ".";
+
+    private static final String ARRAY_WILDCARD = "[*]";
+
+    private final String[] arrayPath;
+
+    /**
+     * The fields to keep in each element of the array, as a tree of field names. A null subtree means that the whole
+     * value of the field should be kept.
+     */
+    private final Map<String, Object> fieldTree;
+
+    private final String key;
+
+    private JSONTableStreamingReader(String[] arrayPath, Map<String, Object> fieldTree, String key)
+    {
+        this.arrayPath = arrayPath;
+        this.fieldTree = fieldTree;
+        this.key = key;
+    }
+
+    /**
+     * @param path the JSON path of the rows
+     * @param fieldPaths the field paths of the columns
+     * @return a reader keeping only the given field paths of the given array, or null if the given paths are too
+     *     complex to be applied while streaming
+     */
+    public static JSONTableStreamingReader of(String path, List<String> fieldPaths)
+    {
+        String arrayPath = StringUtils.removeStart(StringUtils.removeStart(path, ROOT_PREFIX), FIELD_SEPARATOR);
+        if (fieldPaths.isEmpty() || !arrayPath.endsWith(ARRAY_WILDCARD)) {
+            return null;
+        }
+
+        arrayPath = StringUtils.removeEnd(arrayPath, ARRAY_WILDCARD);
+        if (!arrayPath.isEmpty() && !JSONTableDataHelper.isSimplePath(arrayPath)) {
+            return null;
+        }
+
+        Map<String, Object> fieldTree = new LinkedHashMap<>();
+        for (String fieldPath : fieldPaths) {
+            if (!JSONTableDataHelper.isSimplePath(fieldPath)) {
+                return null;
+            }
+            addFieldPath(fieldTree, StringUtils.removeStart(fieldPath, ROOT_PREFIX + FIELD_SEPARATOR));
+        }
+
+        return new JSONTableStreamingReader(StringUtils.split(arrayPath, FIELD_SEPARATOR), fieldTree,
+            String.format("%s\n%s", path, String.join("\n", fieldPaths)));
+    }
+
+    private static void addFieldPath(Map<String, Object> fieldTree, String fieldPath)
+    {
+        Map<String, Object> currentTree = fieldTree;
+        String[] fieldNames = StringUtils.split(fieldPath, FIELD_SEPARATOR);
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (currentTree.containsKey(fieldNames[i]) && currentTree.get(fieldNames[i]) == null) {
+                // The whole value of the field is already kept
+                return;
+            } else if (i == fieldNames.length - 1) {
+                currentTree.put(fieldNames[i], null);
+            } else {
+                currentTree =
+                    (Map<String, Object>) currentTree.computeIfAbsent(fieldNames[i], k -> new LinkedHashMap<>());
+            }
+        }
+    }
+
+    /**
+     * @return a key identifying the data kept by this reader
+     */
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @param parser the parser of the JSON document
+     * @return the document, without the values that are not needed
+     * @throws IOException if the document cannot be parsed
+     */
+    public JsonNode read(JsonParser parser) throws IOException
+    {
+        parser.nextToken();
+        JsonNode target = readTarget(parser, 0);
+
+        // Rebuild the structure of the original document around the array
+        JsonNode result = target;
+        for (int i = this.arrayPath.length - 1; i >= 0; i--) {
+            ObjectNode parent = JsonNodeFactory.instance.objectNode();
+            if (result != null) {
+                parent.set(this.arrayPath[i], result);
+            }
+            result = parent;
+        }
+
+        return (result != null) ? result : JsonNodeFactory.instance.arrayNode();
+    }
+
+    /**
+     * @return the array targeted by the path, or null if the document doesn't contain it
+     */
+    private JsonNode readTarget(JsonParser parser, int depth) throws IOException
+    {
+        if (depth == this.arrayPath.length) {
+            return (parser.currentToken() == JsonToken.START_ARRAY) ? readArray(parser)
+                : (JsonNode) parser.readValueAsTree();
+        } else if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if (fieldName.equals(this.arrayPath[depth])) {
+                return readTarget(parser, depth + 1);
+            }
+            parser.skipChildren();
+        }
+
+        return null;
+    }
+
+    private ArrayNode readArray(JsonParser parser) throws IOException
+    {
+        ArrayNode result = JsonNodeFactory.instance.arrayNode();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                result.add(readObject(parser, this.fieldTree));
+            } else {
+                result.add((JsonNode) parser.readValueAsTree());
+            }
+        }
+        return result;
+    }
+
+    private ObjectNode readObject(JsonParser parser, Map<String, Object> tree) throws IOException
+    {
+        ObjectNode result = JsonNodeFactory.instance.objectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (!tree.containsKey(fieldName)) {
+                parser.skipChildren();
+            } else if (tree.get(fieldName) == null || token != JsonToken.START_OBJECT) {
+                result.set(fieldName, parser.readValueAsTree());
+            } else {
+                result.set(fieldName, readObject(parser, (Map<String, Object>) tree.get(fieldName)));
+            }
+        }
+        return result;
+    }
+}
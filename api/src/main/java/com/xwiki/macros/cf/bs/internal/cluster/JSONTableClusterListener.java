@@ -0,0 +1,88 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.cluster;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+
+/**
+ * Forwards the JSON Table events sent by the other members of the cluster to the {@link JSONTableClusterManager}.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component
+@Singleton
+@Named(JSONTableClusterListener.NAME)
+public class JSONTableClusterListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "JSONTableClusterListener";
+
+    @Inject
+    private RemoteObservationManagerContext remoteObservationManagerContext;
+
+    @Inject
+    private Provider<JSONTableClusterManager> clusterManagerProvider;
+
+    /**
+     * Create a new {@link JSONTableClusterListener}.
+     */
+    public JSONTableClusterListener()
+    {
+        super(NAME, Arrays.asList(new JSONTableDataAvailableEvent(), new JSONTableInvalidationEvent(),
+            new JSONTableDataRequestEvent(), new JSONTableDataResponseEvent()));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // The events sent by the current member are also received locally, but only the other members need them
+        if (!this.remoteObservationManagerContext.isRemoteState()) {
+            return;
+        }
+
+        JSONTableClusterManager clusterManager = this.clusterManagerProvider.get();
+        if (!clusterManager.isEnabled()) {
+            return;
+        }
+
+        if (event instanceof JSONTableDataAvailableEvent) {
+            clusterManager.onAvailable((JSONTableDataAvailableEvent) event);
+        } else if (event instanceof JSONTableInvalidationEvent) {
+            clusterManager.onInvalidation((JSONTableInvalidationEvent) event);
+        } else if (event instanceof JSONTableDataRequestEvent) {
+            clusterManager.onRequest((JSONTableDataRequestEvent) event);
+        } else if (event instanceof JSONTableDataResponseEvent) {
+            clusterManager.onResponse((JSONTableDataResponseEvent) event);
+        }
+    }
+}
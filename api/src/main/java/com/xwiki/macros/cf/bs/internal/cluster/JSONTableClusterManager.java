@@ -0,0 +1,301 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.cluster;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+
+import com.xwiki.macros.cf.bs.internal.JSONTableConfiguration;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataCache;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataEntry;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataStore;
+
+/**
+ * Coordinates the JSON Table caches of the members of a cluster, through the remote observation events: members
+ * announce the data they have loaded from its source, invalidate their copy of some data when another member has
+ * fetched a new version of it, and ask the member having announced some data for it before fetching it from its
+ * source. Only the member a request is addressed to answers it, from a dedicated thread, and it answers without data
+ * when it cannot send it so that the requesting member doesn't wait in vain.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@Component(roles = JSONTableClusterManager.class)
+@Singleton
+public class JSONTableClusterManager implements Initializable, Disposable
+{
+    private static final int MAX_HOLDERS = 10000;
+
+    private static final int RESPONSE_QUEUE_SIZE = 16;
+
+    @Inject
+    private Provider<ObservationManager> observationManagerProvider;
+
+    @Inject
+    private JSONTableDataCache jsonTableDataCache;
+
+    @Inject
+    private JSONTableDataStore jsonTableDataStore;
+
+    @Inject
+    private JSONTableConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The identifier of the current member of the cluster, used to address requests to a single member.
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * The member of the cluster that has most recently announced each data.
+     */
+    private final Map<String, String> holders =
+        Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+            {
+                return size() > MAX_HOLDERS;
+            }
+        });
+
+    /**
+     * The requests sent to the other members of the cluster that are waiting for a response.
+     */
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> requests = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor responseExecutor;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        // Serializing large data can take some time, which should not delay the other events of the cluster
+        this.responseExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(RESPONSE_QUEUE_SIZE),
+            new BasicThreadFactory.Builder().namingPattern("JSON Table cluster %d").daemon(true).build());
+        this.responseExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.responseExecutor != null) {
+            this.responseExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true if the JSON Table caches should be coordinated with the other members of the cluster
+     */
+    public boolean isEnabled()
+    {
+        return this.configuration.isClusterEnabled();
+    }
+
+    /**
+     * Notify the other members of the cluster that the given data has been loaded from its source by the current
+     * member.
+     *
+     * @param key the key of the data in the {@link JSONTableDataCache}
+     */
+    public void notifyAvailable(String key)
+    {
+        if (isEnabled()) {
+            notify(new JSONTableDataAvailableEvent(this.instanceId, key));
+        }
+    }
+
+    /**
+     * Notify the other members of the cluster that the given data has changed.
+     *
+     * @param key the key of the data in the {@link JSONTableDataCache}
+     * @param entry the new version of the data
+     */
+    public void notifyInvalidation(String key, JSONTableDataEntry entry)
+    {
+        if (isEnabled()) {
+            notify(new JSONTableInvalidationEvent(this.instanceId, key, entry.getVersion(),
+                entry.getValidationTime()));
+        }
+    }
+
+    /**
+     * Ask the member of the cluster that has announced the given data for it, and wait for its response.
+     *
+     * @param key the key of the data in the {@link JSONTableDataCache}
+     * @return the data, or null if no other member has announced the data, or if it could not send it in time
+     */
+    public JSONTableDataEntry requestData(String key)
+    {
+        String holder = isEnabled() ? this.holders.get(key) : null;
+        if (holder == null) {
+            // There is no need to wait for a response that no member can send
+            return null;
+        }
+
+        String requestId = UUID.randomUUID().toString();
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        this.requests.put(requestId, response);
+        try {
+            notify(new JSONTableDataRequestEvent(requestId, key, holder));
+            byte[] data = response.get(this.configuration.getClusterTimeout(), TimeUnit.MILLISECONDS);
+            if (data == null) {
+                this.logger.debug("The member [{}] of the cluster cannot send the JSON Table data [{}]", holder, key);
+                this.holders.remove(key, holder);
+                return null;
+            }
+            return JSONTableClusterPayloads.read(data);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException | ExecutionException e) {
+            // The member may have left the cluster
+            this.logger.debug("The member [{}] of the cluster didn't send the JSON Table data [{}]", holder, key);
+            this.holders.remove(key, holder);
+            return null;
+        } catch (IOException e) {
+            this.logger.warn("Failed to read the JSON Table data [{}] sent by the cluster: [{}]", key,
+                e.getMessage());
+            return null;
+        } finally {
+            this.requests.remove(requestId);
+        }
+    }
+
+    /**
+     * Handle an announcement sent by another member of the cluster.
+     *
+     * @param event the event
+     */
+    public void onAvailable(JSONTableDataAvailableEvent event)
+    {
+        this.holders.put(event.getKey(), event.getInstanceId());
+    }
+
+    /**
+     * Handle an invalidation sent by another member of the cluster.
+     *
+     * @param event the event
+     */
+    public void onInvalidation(JSONTableInvalidationEvent event)
+    {
+        this.holders.put(event.getKey(), event.getInstanceId());
+
+        JSONTableDataEntry entry = this.jsonTableDataCache.get(event.getKey());
+        if (entry == null || !isUpToDate(entry, event)) {
+            this.jsonTableDataCache.remove(event.getKey());
+            this.jsonTableDataStore.remove(event.getKey());
+        }
+    }
+
+    /**
+     * Answer a request addressed to the current member by another member of the cluster.
+     *
+     * @param event the event
+     */
+    public void onRequest(JSONTableDataRequestEvent event)
+    {
+        if (!this.instanceId.equals(event.getResponderId())) {
+            return;
+        }
+
+        try {
+            this.responseExecutor.execute(() -> respond(event));
+        } catch (RejectedExecutionException e) {
+            notify(new JSONTableDataResponseEvent(event.getRequestId(), null));
+        }
+    }
+
+    /**
+     * Handle a response sent by another member of the cluster.
+     *
+     * @param event the event
+     */
+    public void onResponse(JSONTableDataResponseEvent event)
+    {
+        CompletableFuture<byte[]> response = this.requests.get(event.getRequestId());
+        if (response != null) {
+            response.complete(event.getData());
+        }
+    }
+
+    /**
+     * @return true if the given entry has the version of the data announced by the given event, or has been
+     *     revalidated after it, in which case there is no need to fetch it again
+     */
+    private boolean isUpToDate(JSONTableDataEntry entry, JSONTableInvalidationEvent event)
+    {
+        return (event.getVersion() != null && event.getVersion().equals(entry.getVersion()))
+            || entry.getValidationTime() >= event.getValidationTime();
+    }
+
+    private void respond(JSONTableDataRequestEvent event)
+    {
+        byte[] data = null;
+        JSONTableDataEntry entry = this.jsonTableDataCache.get(event.getKey());
+        if (entry != null) {
+            try {
+                data = JSONTableClusterPayloads.write(entry, this.configuration.getClusterMaxPayloadSize());
+                if (data == null) {
+                    this.logger.debug("The JSON Table data [{}] is too large to be sent to the cluster",
+                        event.getKey());
+                }
+            } catch (IOException e) {
+                this.logger.warn("Failed to send the JSON Table data [{}] to the cluster: [{}]", event.getKey(),
+                    e.getMessage());
+            }
+        }
+
+        notify(new JSONTableDataResponseEvent(event.getRequestId(), data));
+    }
+
+    private void notify(Event event)
+    {
+        this.observationManagerProvider.get().notify(event, null, null);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.xwiki.macros.cf.bs.internal.JSONTableDataEntry;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataSerializer;
+
+/**
+ * Serializes the JSON Table data exchanged by the members of the cluster, without exceeding the maximum size of the
+ * payloads.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+final class JSONTableClusterPayloads
+{
+    private JSONTableClusterPayloads()
+    {
+    }
+
+    /**
+     * @param entry the data to serialize
+     * @param maxSize the maximum size of the serialized data, or 0 for no limit
+     * @return the serialized data, or null if it would exceed the maximum size
+     * @throws IOException if the data cannot be serialized
+     */
+    static byte[] write(JSONTableDataEntry entry, long maxSize) throws IOException
+    {
+        LimitedOutputStream out = new LimitedOutputStream(maxSize);
+        try {
+            JSONTableDataSerializer.write(entry, out);
+            return out.toByteArray();
+        } catch (PayloadTooLargeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param data the serialized data
+     * @return the deserialized data
+     * @throws IOException if the data cannot be deserialized
+     */
+    static JSONTableDataEntry read(byte[] data) throws IOException
+    {
+        return JSONTableDataSerializer.read(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Thrown when the serialized data exceeds the maximum size of the payloads sent to the cluster.
+     */
+    private static final class PayloadTooLargeException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Stops the serialization of data that would be too large to be sent, without having to serialize it fully.
+     */
+    private static final class LimitedOutputStream extends OutputStream
+    {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private final long maxSize;
+
+        LimitedOutputStream(long maxSize)
+        {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            checkSize(1);
+            this.out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            checkSize(len);
+            this.out.write(b, off, len);
+        }
+
+        byte[] toByteArray()
+        {
+            return this.out.toByteArray();
+        }
+
+        private void checkSize(int length) throws PayloadTooLargeException
+        {
+            if (this.maxSize > 0 && this.out.size() + (long) length > this.maxSize) {
+                throw new PayloadTooLargeException();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.cluster;
+
+import java.io.Serializable;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Sent to the other members of the cluster when the data of a JSON Table source has been loaded from its source, so
+ * that they know which member to ask for it instead of fetching it again.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public class JSONTableDataAvailableEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String instanceId;
+
+    private final String key;
+
+    /**
+     * Create an event matching any announcement.
+     */
+    public JSONTableDataAvailableEvent()
+    {
+        this(null, null);
+    }
+
+    /**
+     * @param instanceId the identifier of the member of the cluster having the data
+     * @param key the key of the data
+     */
+    public JSONTableDataAvailableEvent(String instanceId, String key)
+    {
+        this.instanceId = instanceId;
+        this.key = key;
+    }
+
+    /**
+     * @return the identifier of the member of the cluster having the data
+     */
+    public String getInstanceId()
+    {
+        return this.instanceId;
+    }
+
+    /**
+     * @return the key of the data
+     */
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof JSONTableDataAvailableEvent;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.cluster;
+
+import java.io.Serializable;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Sent to the other members of the cluster to get the data of a JSON Table source without fetching it again. Only the
+ * member the request is addressed to answers it, so that the data is only sent once.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public class JSONTableDataRequestEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String requestId;
+
+    private final String key;
+
+    private final String responderId;
+
+    /**
+     * Create an event matching any request.
+     */
+    public JSONTableDataRequestEvent()
+    {
+        this(null, null, null);
+    }
+
+    /**
+     * @param requestId the identifier of the request, sent back with the response
+     * @param key the key of the requested data
+     * @param responderId the identifier of the member of the cluster expected to answer the request
+     */
+    public JSONTableDataRequestEvent(String requestId, String key, String responderId)
+    {
+        this.requestId = requestId;
+        this.key = key;
+        this.responderId = responderId;
+    }
+
+    /**
+     * @return the identifier of the request, sent back with the response
+     */
+    public String getRequestId()
+    {
+        return this.requestId;
+    }
+
+    /**
+     * @return the key of the requested data
+     */
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @return the identifier of the member of the cluster expected to answer the request
+     */
+    public String getResponderId()
+    {
+        return this.responderId;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof JSONTableDataRequestEvent;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.cluster;
+
+import java.io.Serializable;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Sent by the member of the cluster a {@link JSONTableDataRequestEvent} is addressed to. The response doesn't contain
+ * any data when the member doesn't have the requested data anymore, or when the data is too large to be sent, so that
+ * the requesting member doesn't need to wait for a response that will never come.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public class JSONTableDataResponseEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String requestId;
+
+    private final byte[] data;
+
+    /**
+     * Create an event matching any response.
+     */
+    public JSONTableDataResponseEvent()
+    {
+        this(null, null);
+    }
+
+    /**
+     * @param requestId the identifier of the request this event answers to
+     * @param data the requested data, serialized with the {@link
+     *     com.xwiki.macros.cf.bs.internal.JSONTableDataSerializer}, or null if the data cannot be sent
+     */
+    public JSONTableDataResponseEvent(String requestId, byte[] data)
+    {
+        this.requestId = requestId;
+        this.data = data;
+    }
+
+    /**
+     * @return the identifier of the request this event answers to
+     */
+    public String getRequestId()
+    {
+        return this.requestId;
+    }
+
+    /**
+     * @return the requested data, serialized with the {@link com.xwiki.macros.cf.bs.internal.JSONTableDataSerializer},
+     *     or null if the data cannot be sent
+     */
+    public byte[] getData()
+    {
+        return this.data;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof JSONTableDataResponseEvent;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.cluster;
+
+import java.io.Serializable;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Sent to the other members of the cluster when the data of a JSON Table source has changed, so that they
+ * stop serving their outdated copy. Members having the same version of the data, or a copy revalidated more recently,
+ * keep their copy.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public class JSONTableInvalidationEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String instanceId;
+
+    private final String key;
+
+    private final String version;
+
+    private final long validationTime;
+
+    /**
+     * Create an event matching any invalidation.
+     */
+    public JSONTableInvalidationEvent()
+    {
+        this(null, null, null, 0);
+    }
+
+    /**
+     * @param instanceId the identifier of the member of the cluster having the new version of the data
+     * @param key the key of the data that has changed
+     * @param version the new version of the data, or null if the version cannot be identified
+     * @param validationTime the time in milliseconds at which the new version of the data has been fetched
+     */
+    public JSONTableInvalidationEvent(String instanceId, String key, String version, long validationTime)
+    {
+        this.instanceId = instanceId;
+        this.key = key;
+        this.version = version;
+        this.validationTime = validationTime;
+    }
+
+    /**
+     * @return the identifier of the member of the cluster having the new version of the data
+     */
+    public String getInstanceId()
+    {
+        return this.instanceId;
+    }
+
+    /**
+     * @return the key of the data that has changed
+     */
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @return the new version of the data, or null if the version cannot be identified
+     */
+    public String getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return the time in milliseconds at which the new version of the data has been fetched
+     */
+    public long getValidationTime()
+    {
+        return this.validationTime;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof JSONTableInvalidationEvent;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.livedata;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.livedata.LiveDataQuery;
+
+import com.xwiki.macros.cf.bs.internal.JSONTableColumnIndex;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjection;
+
+/**
+ * Evaluates the filters of a LiveData query on a {@link JSONTableProjection} using the indexes of its columns.
+ * Supported operators are {@code contains}, {@code startsWith} and {@code equals} for any value, {@code less} and
+ * {@code greater} for numbers (or strings), and {@code before}, {@code after} and {@code between} for dates, where
+ * the value of {@code between} is an interval of the form {@code start/end}. Other operators are ignored.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableFilterEvaluator
+{
+    private static final String INTERVAL_SEPARATOR = "/";
+
+    private static final int MAX_TIMESTAMP_LENGTH = 18;
+
+    private static final String CONTAINS = "contains";
+
+    private static final String EQUALS = "equals";
+
+    private static final String STARTS_WITH = "startsWith";
+
+    private static final String LESS = "less";
+
+    private static final String GREATER = "greater";
+
+    private static final String BEFORE = "before";
+
+    private static final String AFTER = "after";
+
+    private static final String BETWEEN = "between";
+
+    private static final Map<String, BiFunction<JSONTableColumnIndex, String, BitSet>> OPERATORS = new HashMap<>();
+
+    private static final Map<String, List<String>> FILTER_OPERATORS = new HashMap<>();
+
+    static {
+        OPERATORS.put(CONTAINS, JSONTableColumnIndex::containing);
+        OPERATORS.put(STARTS_WITH, JSONTableColumnIndex::startingWith);
+        OPERATORS.put(EQUALS, JSONTableFilterEvaluator::equalTo);
+        OPERATORS.put(LESS, (index, value) -> index.inRange(null, false, JSONTableSortKey.of(value), false));
+        OPERATORS.put(GREATER, (index, value) -> index.inRange(JSONTableSortKey.of(value), false, null, false));
+        OPERATORS.put(BEFORE, (index, value) -> index.inRange(null, false, toDateKey(value), false));
+        OPERATORS.put(AFTER, (index, value) -> index.inRange(toDateKey(value), false, null, false));
+        OPERATORS.put(BETWEEN, JSONTableFilterEvaluator::between);
+
+        FILTER_OPERATORS.put("text", Arrays.asList(CONTAINS, STARTS_WITH, EQUALS));
+        FILTER_OPERATORS.put("number", Arrays.asList(EQUALS, LESS, GREATER));
+        FILTER_OPERATORS.put("boolean", Collections.singletonList(EQUALS));
+        FILTER_OPERATORS.put("date", Arrays.asList(BETWEEN, BEFORE, AFTER, CONTAINS));
+    }
+
+    private JSONTableFilterEvaluator()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param filter the id of a LiveData filter: {@code text}, {@code number}, {@code boolean} or {@code date}
+     * @return the supported operators that the given filter should offer, the first one being the default
+     */
+    public static List<String> getOperators(String filter)
+    {
+        return FILTER_OPERATORS.getOrDefault(filter, Collections.emptyList());
+    }
+
+    /**
+     * @param projection the projection to filter
+     * @param filters the filters to apply
+     * @return the rows matching all the filters, in ascending order
+     */
+    public static int[] getMatchingRows(JSONTableProjection projection, List<LiveDataQuery.Filter> filters)
+    {
+        BitSet matchingRows = new BitSet(projection.getRowCount());
+        matchingRows.set(0, projection.getRowCount());
+
+        for (LiveDataQuery.Filter filter : filters) {
+            BitSet filterRows = evaluate(projection.getIndex(filter.getProperty()), filter);
+            if (filterRows != null) {
+                matchingRows.and(filterRows);
+            }
+        }
+
+        return matchingRows.stream().toArray();
+    }
+
+    /**
+     * @return the rows matching the given filter, or null if the filter doesn't have any supported constraint
+     */
+    private static BitSet evaluate(JSONTableColumnIndex index, LiveDataQuery.Filter filter)
+    {
+        BitSet filterRows = null;
+        for (LiveDataQuery.Constraint constraint : filter.getConstraints()) {
+            BitSet constraintRows = evaluate(index, constraint);
+            if (constraintRows == null) {
+                continue;
+            } else if (filterRows == null) {
+                filterRows = constraintRows;
+            } else if (filter.isMatchAll()) {
+                filterRows.and(constraintRows);
+            } else {
+                filterRows.or(constraintRows);
+            }
+        }
+        return filterRows;
+    }
+
+    /**
+     * @return the rows matching the given constraint, or null if the operator of the constraint is not supported
+     */
+    private static BitSet evaluate(JSONTableColumnIndex index, LiveDataQuery.Constraint constraint)
+    {
+        String operator = StringUtils.defaultString(constraint.getOperator());
+        String value = (constraint.getValue() != null) ? constraint.getValue().toString() : "";
+        BiFunction<JSONTableColumnIndex, String, BitSet> evaluator = OPERATORS.get(operator);
+        if (evaluator == null) {
+            return null;
+        } else if (index == null) {
+            // The filtered property isn't displayed by the table, so no row has a value for it
+            return new BitSet();
+        } else {
+            return evaluator.apply(index, value);
+        }
+    }
+
+    private static BitSet equalTo(JSONTableColumnIndex index, String value)
+    {
+        BitSet rows = index.equalTo(value);
+        // Numbers can be written in different ways, e.g. 1 and 1.0
+        JSONTableSortKey key = JSONTableSortKey.of(value);
+        rows.or(index.inRange(key, true, key, true));
+        return rows;
+    }
+
+    private static BitSet between(JSONTableColumnIndex index, String value)
+    {
+        JSONTableSortKey start = toDateKey(StringUtils.substringBefore(value, INTERVAL_SEPARATOR));
+        JSONTableSortKey end = toDateKey(StringUtils.substringAfter(value, INTERVAL_SEPARATOR));
+        return (start != null && end != null) ? index.inRange(start, true, end, true) : new BitSet();
+    }
+
+    /**
+     * @return the sort key of the given date, which can be either an ISO 8601 date or a timestamp in milliseconds,
+     *     or null if the value is not a valid date
+     */
+    private static JSONTableSortKey toDateKey(String value)
+    {
+        if (StringUtils.isNumeric(value) && value.length() <= MAX_TIMESTAMP_LENGTH) {
+            return JSONTableSortKey.ofDate(Long.parseLong(value));
+        }
+
+        Long timestamp = JSONTableSortKey.parseDate(value);
+        return (timestamp != null) ? JSONTableSortKey.ofDate(timestamp) : null;
+    }
+}
@@ -19,17 +19,18 @@
  */
 package com.xwiki.macros.cf.bs.internal.livedata;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -37,12 +38,16 @@ import org.xwiki.livedata.LiveData;
 import org.xwiki.livedata.LiveDataEntryStore;
 import org.xwiki.livedata.LiveDataException;
 import org.xwiki.livedata.LiveDataQuery;
-
 import org.xwiki.livedata.WithParameters;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.xwiki.macros.cf.bs.internal.JSONTableDataHelper;
+import com.xwiki.macros.cf.bs.internal.JSONTableColumn;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataEntry;
+import com.xwiki.macros.cf.bs.internal.JSONTableMetrics;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjection;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjectionCache;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjectionStore;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjector;
 
 /**
  * Live data entry store for the {@link JSONTableLiveDataSource}.
@@ -55,8 +60,26 @@ import com.xwiki.macros.cf.bs.internal.JSONTableDataHelper;
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 public class JSONTableLiveDataEntryStore extends WithParameters implements LiveDataEntryStore
 {
+    /**
+     * The number of characters surrounding each property in the JSON serialization of an entry: the quotes, the
+     * colon and the comma.
+     */
+    private static final int PROPERTY_SEPARATORS_SIZE = 6;
+
+    @Inject
+    private JSONTableProjector jsonTableProjector;
+
+    @Inject
+    private JSONTableProjectionCache jsonTableProjectionCache;
+
     @Inject
-    private JSONTableDataHelper jsonTableDataHelper;
+    private JSONTableProjectionStore jsonTableProjectionStore;
+
+    @Inject
+    private JSONTableMetrics metrics;
+
+    @Inject
+    private Logger logger;
 
     @Override
     public Optional<Map<String, Object>> get(Object entryId) throws LiveDataException
@@ -67,63 +90,147 @@ public class JSONTableLiveDataEntryStore extends WithParameters implements LiveD
     @Override
     public LiveData get(LiveDataQuery query) throws LiveDataException
     {
-        String path = (String) this.getParameters().get("path");
-        List<String> fieldPaths = (List<String>) this.getParameters().get("fieldPaths");
+        long start = System.nanoTime();
+        JSONTableProjection projection = getProjection();
 
-        LiveData liveData = new LiveData();
+        List<LiveDataQuery.Filter> filters =
+            (query.getFilters() != null) ? query.getFilters() : Collections.emptyList();
+        List<LiveDataQuery.SortEntry> sortEntries =
+            (query.getSort() != null) ? query.getSort() : Collections.emptyList();
 
-        // For now, we only consider the first path in the list of paths
-        List<JsonNode> nodes = Collections.list(
-            jsonTableDataHelper.applyPath(path, (JsonNode) this.getParameters().get("node")));
-        liveData.setCount(nodes.size());
-
-        // TODO : calculate offset
-        ObjectMapper mapper = new ObjectMapper();
-        List<Map<String, Object>> entries = new ArrayList<>();
-        for (JsonNode rootNode : nodes) {
-            Map<String, Object> entry = new HashMap<>();
-
-            // Start by resolving the field paths
-            // TODO: This operation can be very expensive (especially because it's done multiple times), we should
-            //  probably look at a way to cache the result
-            for (String fieldPath : fieldPaths) {
-                Enumeration<JsonNode> matchingNodes = jsonTableDataHelper.applyPath(fieldPath, rootNode);
-                if (matchingNodes.hasMoreElements()) {
-                    entry.put(fieldPath, mapper.convertValue(matchingNodes.nextElement(), String.class));
-                }
-            }
+        int[] rows = JSONTableFilterEvaluator.getMatchingRows(projection, filters);
+        if (!sortEntries.isEmpty()) {
+            rows = sort(rows, projection, sortEntries);
+        }
 
-            if (matchesFilters(query.getFilters(), entry)) {
-                entries.add(entry);
-            }
+        LiveData liveData = new LiveData();
+        liveData.setCount(rows.length);
+        int[] page = getPage(rows, query);
+        long size = 0;
+        for (int row : page) {
+            Map<String, Object> entry = projection.getEntry(row);
+            liveData.getEntries().add(entry);
+            size += getSize(entry);
         }
 
-        liveData.getEntries().addAll(entries);
+        long duration = System.nanoTime() - start;
+        this.metrics.recordLiveDataRequest(duration, rows.length, page.length, size);
+        this.logger.debug("Served [{}] rows ([{}] bytes) of JSON Table data [{}] in [{}] ms, [{}] out of [{}] rows "
+            + "matching the [{}] filters", page.length, size, getParameters().get("cacheKey"),
+            TimeUnit.NANOSECONDS.toMillis(duration), rows.length, projection.getRowCount(), filters.size());
+
         return liveData;
     }
 
-    private boolean matchesFilters(List<LiveDataQuery.Filter> filters, Map<String, Object> entry)
+    private JSONTableProjection getProjection() throws LiveDataException
     {
-        boolean matchesFilters = true;
-
-        for (LiveDataQuery.Filter filter : filters) {
-            String nodeValue = (String) entry.get(filter.getProperty());
-
-            for (LiveDataQuery.Constraint constraint : filter.getConstraints()) {
-                if (constraint.getOperator().equals("contains")) {
-                    matchesFilters &= nodeValue.contains((String) constraint.getValue());
-                } else if (constraint.getOperator().equals("equals")) {
-                    matchesFilters &= nodeValue.equals(constraint.getValue());
-                } else if (constraint.getOperator().equals("startsWith")) {
-                    matchesFilters &= nodeValue.startsWith((String) constraint.getValue());
+        // Each table displays the rows matching a single path of the macro
+        String path = (String) this.getParameters().get("path");
+        List<String> fieldPaths = (List<String>) this.getParameters().get("fieldPaths");
+        JsonNode node = (JsonNode) this.getParameters().get(JSONTableLiveDataSource.NODE);
+        String dataVersion = (String) this.getParameters().get(JSONTableLiveDataSource.DATA_VERSION);
+        if (node == null) {
+            throw new LiveDataException("The data of the JSON Table is not available anymore. Reload the page to "
+                + "display it again.");
+        }
+
+        // Resolving the field paths of every row is expensive, so we make sure to only do it once per data set
+        String key = jsonTableProjectionCache.getKey((String) this.getParameters().get("cacheKey"), path, fieldPaths);
+        JSONTableProjection projection = jsonTableProjectionCache.get(key);
+        if (projection == null || !projection.isProjectionOf(node, dataVersion)) {
+            // Large projections may have been stored on disk, possibly before a restart
+            JSONTableProjection storedProjection = jsonTableProjectionStore.load(key, dataVersion);
+            if (storedProjection == null) {
+                long start = System.nanoTime();
+                if (isAppendedTo(projection)) {
+                    // Only the appended rows need to be projected. The result isn't spilled since that would write
+                    // all the rows again.
+                    projection = jsonTableProjector.extend(projection, path, node, dataVersion);
+                    this.metrics.recordProjection(System.nanoTime() - start, projection.getRowCount());
+                } else {
+                    projection = jsonTableProjector.project(path, fieldPaths, node, dataVersion);
+                    this.metrics.recordProjection(System.nanoTime() - start, projection.getRowCount());
+                    projection = jsonTableProjectionStore.spill(key, projection);
                 }
+            } else {
+                projection = storedProjection;
             }
+            jsonTableProjectionCache.set(key, projection);
+        }
+
+        return projection;
+    }
+
+    /**
+     * @return true if the displayed data has been built by appending rows to the data of the given projection
+     */
+    private boolean isAppendedTo(JSONTableProjection projection)
+    {
+        JSONTableDataEntry entry = (JSONTableDataEntry) this.getParameters().get(JSONTableLiveDataSource.DATA);
+        return projection != null && entry != null && entry.getAppendedVersion() != null
+            && entry.getAppendedVersion().equals(projection.getVersion());
+    }
+
+    /**
+     * @return an estimation of the size of the JSON serialization of the given entry, in bytes, counting one byte
+     *     per character
+     */
+    private static long getSize(Map<String, Object> entry)
+    {
+        // The braces surrounding the properties
+        long size = 2;
+        for (Map.Entry<String, Object> property : entry.entrySet()) {
+            size += property.getKey().length() + String.valueOf(property.getValue()).length()
+                + PROPERTY_SEPARATORS_SIZE;
+        }
+        return size;
+    }
+
+    private int[] getPage(int[] rows, LiveDataQuery query)
+    {
+        long offset = (query.getOffset() != null) ? Math.max(query.getOffset(), 0L) : 0L;
+        long limit = (query.getLimit() != null && query.getLimit() >= 0) ? query.getLimit() : rows.length;
 
-            if (!matchesFilters) {
-                break;
+        int start = (int) Math.min(offset, rows.length);
+        int end = (int) Math.min(start + limit, rows.length);
+        return Arrays.copyOfRange(rows, start, end);
+    }
+
+    private int[] sort(int[] rows, JSONTableProjection projection, List<LiveDataQuery.SortEntry> sortEntries)
+    {
+        JSONTableColumn[] columns = new JSONTableColumn[sortEntries.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = projection.getColumn(sortEntries.get(i).getProperty());
+        }
+
+        Comparator<Integer> comparator = (row, otherRow) -> {
+            int result = 0;
+            for (int i = 0; i < columns.length && result == 0; i++) {
+                result = compare(columns[i], row, otherRow, sortEntries.get(i).isDescending());
             }
+            return result;
+        };
+
+        // Use a stable sort so that rows with the same values keep the order of the source
+        Integer[] sortedRows = Arrays.stream(rows).boxed().toArray(Integer[]::new);
+        Arrays.sort(sortedRows, comparator);
+        return Arrays.stream(sortedRows).mapToInt(Integer::intValue).toArray();
+    }
+
+    private int compare(JSONTableColumn column, int row, int otherRow, boolean descending)
+    {
+        if (column == null) {
+            return 0;
+        }
+
+        // Missing values are always displayed last, whatever the sort direction
+        boolean isNull = column.isNull(row);
+        boolean isOtherNull = column.isNull(otherRow);
+        if (isNull || isOtherNull) {
+            return Boolean.compare(isNull, isOtherNull);
         }
 
-        return matchesFilters;
+        int result = column.compare(row, otherRow);
+        return descending ? -result : result;
     }
 }
@@ -19,11 +19,15 @@
  */
 package com.xwiki.macros.cf.bs.internal.livedata;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -32,8 +36,14 @@ import org.xwiki.livedata.LiveDataPropertyDescriptor;
 import org.xwiki.livedata.LiveDataPropertyDescriptorStore;
 import org.xwiki.livedata.WithParameters;
 
+import com.xwiki.macros.cf.bs.JSONTableMacroParameters;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataEntry;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataHelper;
+import com.xwiki.macros.cf.bs.internal.JSONTableSchema;
+
 /**
- * Live data property descriptor store for the {@link JSONTableLiveDataSource}.
+ * Live data property descriptor store for the {@link JSONTableLiveDataSource}. The type of each property, and thus
+ * its displayer and filter, comes from the schema inferred from the data of the table.
  *
  * @version $Id$
  * @since 1.0
@@ -43,9 +53,105 @@ import org.xwiki.livedata.WithParameters;
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 public class JSONTableLiveDataPropertyDescriptorStore extends WithParameters implements LiveDataPropertyDescriptorStore
 {
+    private static final String TEXT = "text";
+
+    private static final String ROOT_PREFIX = "$.";
+
+    @Inject
+    private JSONTableDataHelper jsonTableDataHelper;
+
     @Override
     public Collection<LiveDataPropertyDescriptor> get() throws LiveDataException
     {
-        return Collections.emptyList();
+        List<String> fieldPaths = (List<String>) getParameters().get(JSONTableMacroParameters.FIELD_PATHS);
+        if (fieldPaths == null) {
+            return Collections.emptyList();
+        }
+
+        JSONTableDataEntry data = (JSONTableDataEntry) getParameters().get(JSONTableLiveDataSource.DATA);
+        JSONTableSchema schema =
+            (data != null) ? this.jsonTableDataHelper.getSchema(data, (String) getParameters().get("path")) : null;
+
+        List<LiveDataPropertyDescriptor> descriptors = new ArrayList<>();
+        for (String fieldPath : fieldPaths) {
+            JSONTableSchema.Type type = (schema != null) ? schema.getType(StringUtils.removeStart(fieldPath,
+                ROOT_PREFIX)) : JSONTableSchema.Type.STRING;
+            descriptors.add(getDescriptor(fieldPath, type));
+        }
+        return descriptors;
+    }
+
+    private LiveDataPropertyDescriptor getDescriptor(String fieldPath, JSONTableSchema.Type type)
+    {
+        LiveDataPropertyDescriptor descriptor = new LiveDataPropertyDescriptor();
+        descriptor.setId(fieldPath);
+        descriptor.setName(getPropertyName(fieldPath));
+        descriptor.setEditable(false);
+        descriptor.setSortable(true);
+        descriptor.setFilterable(true);
+
+        switch (type) {
+            case NUMBER:
+                descriptor.setType("Number");
+                descriptor.setDisplayer(new LiveDataPropertyDescriptor.DisplayerDescriptor("number"));
+                descriptor.setFilter(getFilter("number"));
+                break;
+            case BOOLEAN:
+                descriptor.setType("Boolean");
+                LiveDataPropertyDescriptor.DisplayerDescriptor displayer =
+                    new LiveDataPropertyDescriptor.DisplayerDescriptor("boolean");
+                // The values of the table are always sent as strings
+                displayer.setParameter("trueValue", Boolean.TRUE.toString());
+                displayer.setParameter("falseValue", Boolean.FALSE.toString());
+                descriptor.setDisplayer(displayer);
+                descriptor.setFilter(getFilter("boolean"));
+                break;
+            case DATE:
+                descriptor.setType("Date");
+                // Dates are displayed as they are written in the source, but filtered as dates, using a format that
+                // the entry store is able to parse
+                descriptor.setDisplayer(new LiveDataPropertyDescriptor.DisplayerDescriptor(TEXT));
+                LiveDataPropertyDescriptor.FilterDescriptor filter = getFilter("date");
+                filter.setParameter("dateFormat", "YYYY-MM-DD HH:mm");
+                descriptor.setFilter(filter);
+                break;
+            default:
+                descriptor.setType("String");
+                descriptor.setDisplayer(new LiveDataPropertyDescriptor.DisplayerDescriptor(TEXT));
+                descriptor.setFilter(getFilter(TEXT));
+        }
+
+        return descriptor;
+    }
+
+    private LiveDataPropertyDescriptor.FilterDescriptor getFilter(String id)
+    {
+        LiveDataPropertyDescriptor.FilterDescriptor filter = new LiveDataPropertyDescriptor.FilterDescriptor(id);
+        // Only offer the operators that the entry store evaluates, their names being translated by LiveData
+        List<String> operators = JSONTableFilterEvaluator.getOperators(id);
+        for (String operator : operators) {
+            filter.addOperator(operator, null);
+        }
+        filter.setDefaultOperator(operators.get(0));
+        return filter;
+    }
+
+    private String getPropertyName(String fieldPath)
+    {
+        String result = fieldPath;
+        if (getBooleanParameter(JSONTableMacroParameters.STRIP_QUALIFIERS, false)) {
+            String[] qualifiers = result.split("\\.");
+            result = qualifiers[qualifiers.length - 1];
+        }
+
+        return getBooleanParameter(JSONTableMacroParameters.CAPITALIZE, true) ? StringUtils.capitalize(result)
+            : result;
+    }
+
+    private boolean getBooleanParameter(String name, boolean defaultValue)
+    {
+        // Parameters can be received as strings when they come from the request
+        Object value = getParameters().get(name);
+        return (value != null) ? Boolean.parseBoolean(value.toString()) : defaultValue;
     }
 }
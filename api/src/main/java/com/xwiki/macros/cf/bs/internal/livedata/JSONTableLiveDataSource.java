@@ -19,9 +19,13 @@
  */
 package com.xwiki.macros.cf.bs.internal.livedata;
 
+import java.util.Map;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -29,9 +33,11 @@ import org.xwiki.livedata.LiveDataEntryStore;
 import org.xwiki.livedata.LiveDataPropertyDescriptorStore;
 import org.xwiki.livedata.LiveDataSource;
 import org.xwiki.livedata.WithParameters;
+import org.xwiki.rendering.macro.MacroExecutionException;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.xwiki.macros.cf.bs.internal.JSONTableDataCache;
+import com.xwiki.macros.cf.bs.BSMacroException;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataEntry;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataLoader;
 
 /**
  * Live data source for the {@link com.xwiki.macros.cf.bs.internal.JSONTableMacro}.
@@ -49,7 +55,20 @@ public class JSONTableLiveDataSource extends WithParameters implements LiveDataS
      */
     public static final String ROLE_HINT = "jsonTable";
 
-    private static final String NODE = "node";
+    /**
+     * The name of the parameter holding the data of the table.
+     */
+    public static final String NODE = "node";
+
+    /**
+     * The name of the parameter holding the version of the data of the table.
+     */
+    public static final String DATA_VERSION = "dataVersion";
+
+    /**
+     * The name of the parameter holding the {@link JSONTableDataEntry} of the table.
+     */
+    public static final String DATA = "data";
 
     @Inject
     @Named(ROLE_HINT)
@@ -60,14 +79,16 @@ public class JSONTableLiveDataSource extends WithParameters implements LiveDataS
     private LiveDataPropertyDescriptorStore propertyStore;
 
     @Inject
-    private JSONTableDataCache jsonTableDataCache;
+    private JSONTableDataLoader jsonTableDataLoader;
+
+    @Inject
+    private Logger logger;
 
     @Override
     public LiveDataEntryStore getEntries()
     {
         if (this.entryStore instanceof WithParameters) {
-            ((WithParameters) this.entryStore).getParameters().put(NODE, getJsonNode());
-            ((WithParameters) this.entryStore).getParameters().putAll(this.getParameters());
+            setData(((WithParameters) this.entryStore).getParameters());
         }
         return this.entryStore;
     }
@@ -76,14 +97,33 @@ public class JSONTableLiveDataSource extends WithParameters implements LiveDataS
     public LiveDataPropertyDescriptorStore getProperties()
     {
         if (this.propertyStore instanceof WithParameters) {
-            ((WithParameters) this.entryStore).getParameters().put(NODE, getJsonNode());
-            ((WithParameters) this.propertyStore).getParameters().putAll(this.getParameters());
+            setData(((WithParameters) this.propertyStore).getParameters());
         }
         return this.propertyStore;
     }
 
-    private JsonNode getJsonNode()
+    private void setData(Map<String, Object> parameters)
+    {
+        parameters.putAll(this.getParameters());
+
+        // Make sure that the data can't be overridden by the parameters of the request
+        JSONTableDataEntry entry = getDataEntry();
+        parameters.put(DATA, entry);
+        parameters.put(NODE, (entry != null) ? entry.getNode() : null);
+        parameters.put(DATA_VERSION, (entry != null) ? entry.getVersion() : null);
+    }
+
+    private JSONTableDataEntry getDataEntry()
     {
-        return jsonTableDataCache.get((String) getParameters().get("cacheKey"));
+        // The data may have been evicted from the cache since the page has been rendered, in which case we load it
+        // again from its source
+        String cacheKey = (String) getParameters().get("cacheKey");
+        try {
+            return jsonTableDataLoader.loadByKey(cacheKey);
+        } catch (MacroExecutionException | BSMacroException e) {
+            this.logger.warn("Failed to load the data of JSON Table [{}]: [{}]", cacheKey,
+                ExceptionUtils.getRootCauseMessage(e));
+            return null;
+        }
     }
 }
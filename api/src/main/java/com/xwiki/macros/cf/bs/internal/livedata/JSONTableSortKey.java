@@ -0,0 +1,172 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.livedata;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Pattern;
+
+/**
+ * Typed sort key computed once per value, so that sorting a JSON Table only needs to parse each value once.
+ * Numbers are sorted numerically, dates chronologically and any other value as a case insensitive string. Values of
+ * different types are grouped together (numbers, then dates, then strings), and missing values always come last.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableSortKey implements Comparable<JSONTableSortKey>
+{
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("[-+]?(\\d+(\\.\\d*)?|\\.\\d+)([eE][-+]?\\d+)?");
+
+    private static final Pattern DATE_PATTERN = Pattern.compile("\\d{4}-\\d{2}-\\d{2}([T ].*)?");
+
+    private static final JSONTableSortKey NULL_KEY = new JSONTableSortKey(Type.NULL, 0, null);
+
+    /**
+     * The types of sort key, in their sort order.
+     */
+    private enum Type
+    {
+        NUMBER,
+        DATE,
+        STRING,
+        NULL
+    }
+
+    private final Type type;
+
+    private final double number;
+
+    private final String string;
+
+    private JSONTableSortKey(Type type, double number, String string)
+    {
+        this.type = type;
+        this.number = number;
+        this.string = string;
+    }
+
+    /**
+     * @param value the value to compute the sort key of
+     * @return the sort key of the given value
+     */
+    public static JSONTableSortKey of(Object value)
+    {
+        if (value == null) {
+            return NULL_KEY;
+        } else if (value instanceof Number) {
+            return new JSONTableSortKey(Type.NUMBER, ((Number) value).doubleValue(), null);
+        }
+
+        String stringValue = value.toString();
+        if (NUMBER_PATTERN.matcher(stringValue).matches()) {
+            return new JSONTableSortKey(Type.NUMBER, Double.parseDouble(stringValue), null);
+        } else if (DATE_PATTERN.matcher(stringValue).matches()) {
+            Long timestamp = parseDate(stringValue);
+            if (timestamp != null) {
+                return new JSONTableSortKey(Type.DATE, timestamp, null);
+            }
+        }
+
+        return new JSONTableSortKey(Type.STRING, 0, stringValue);
+    }
+
+    /**
+     * @param timestamp a date, as a timestamp in milliseconds
+     * @return the sort key of the given date
+     */
+    public static JSONTableSortKey ofDate(long timestamp)
+    {
+        return new JSONTableSortKey(Type.DATE, timestamp, null);
+    }
+
+    /**
+     * @return true if this key corresponds to a missing value
+     */
+    public boolean isNull()
+    {
+        return this.type == Type.NULL;
+    }
+
+    /**
+     * @param other another key
+     * @return the result of comparing only the types of the keys, i.e. 0 if both keys are of the same type
+     */
+    public int compareType(JSONTableSortKey other)
+    {
+        return this.type.compareTo(other.type);
+    }
+
+    @Override
+    public int compareTo(JSONTableSortKey other)
+    {
+        int result = this.type.compareTo(other.type);
+        if (result == 0) {
+            if (this.type == Type.STRING) {
+                result = this.string.compareToIgnoreCase(other.string);
+                if (result == 0) {
+                    result = this.string.compareTo(other.string);
+                }
+            } else {
+                result = Double.compare(this.number, other.number);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param value a value
+     * @return true if the given value is a valid ISO 8601 date
+     */
+    public static boolean isDate(String value)
+    {
+        return DATE_PATTERN.matcher(value).matches() && parseDate(value) != null;
+    }
+
+    /**
+     * Parse the given ISO 8601 date.
+     *
+     * @param value the value to parse
+     * @return the corresponding timestamp in milliseconds, or null if the value is not a valid date
+     */
+    public static Long parseDate(String value)
+    {
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+
+            String normalizedValue = value.replace(' ', 'T');
+            if (normalizedValue.endsWith("Z")) {
+                return Instant.parse(normalizedValue).toEpochMilli();
+            } else if (normalizedValue.indexOf('+', 10) > 0 || normalizedValue.indexOf('-', 10) > 0) {
+                return OffsetDateTime.parse(normalizedValue).toInstant().toEpochMilli();
+            } else {
+                return LocalDateTime.parse(normalizedValue).toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.xwiki.macros.cf.bs.internal.livedata.JSONTableSortKey;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link JSONTableColumnIndex}.
+ *
+ * @version $Id$
+ */
+class JSONTableColumnIndexTest
+{
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    private final JSONTableColumnIndex fruits = index(FACTORY.textNode("apple"), FACTORY.textNode("banana"),
+        FACTORY.textNode("Apple pie"), null, FACTORY.textNode("banana"), FACTORY.textNode("pineapple"));
+
+    private final JSONTableColumnIndex numbers = index(FACTORY.numberNode(5), FACTORY.numberNode(1), null,
+        FACTORY.numberNode(10), FACTORY.numberNode(2), FACTORY.numberNode(3));
+
+    private final JSONTableColumnIndex mixed = index(FACTORY.textNode("3"), FACTORY.textNode("abc"),
+        FACTORY.textNode("2020-01-01"), FACTORY.nullNode(), FACTORY.textNode("1"), FACTORY.textNode("2021-06-01"));
+
+    @Test
+    void equalTo()
+    {
+        assertEquals(rows(1, 4), this.fruits.equalTo("banana"));
+        assertEquals(rows(), this.fruits.equalTo("Banana"));
+        assertEquals(rows(), this.fruits.equalTo("cherry"));
+    }
+
+    @Test
+    void startingWith()
+    {
+        assertEquals(rows(1, 4), this.fruits.startingWith("ban"));
+        assertEquals(rows(2), this.fruits.startingWith("Apple"));
+        assertEquals(rows(0), this.fruits.startingWith("apple"));
+        assertEquals(rows(), this.fruits.startingWith("z"));
+        // Rows without any value never match
+        assertEquals(rows(0, 1, 2, 4, 5), this.fruits.startingWith(""));
+    }
+
+    @Test
+    void containingShortValue()
+    {
+        assertEquals(rows(0, 2, 5), this.fruits.containing("pp"));
+        assertEquals(rows(0, 1, 2, 4, 5), this.fruits.containing(""));
+    }
+
+    @Test
+    void containingUsingTrigrams()
+    {
+        assertEquals(rows(0, 5), this.fruits.containing("apple"));
+        assertEquals(rows(1, 4), this.fruits.containing("ana"));
+        assertEquals(rows(2), this.fruits.containing("e p"));
+        assertEquals(rows(), this.fruits.containing("xyz"));
+        // All the trigrams of the value exist, but not in a single value
+        assertEquals(rows(), this.fruits.containing("bananapple"));
+    }
+
+    @Test
+    void inRange()
+    {
+        JSONTableSortKey two = JSONTableSortKey.of(2);
+        JSONTableSortKey five = JSONTableSortKey.of(5);
+
+        assertEquals(rows(0, 4, 5), this.numbers.inRange(two, true, five, true));
+        assertEquals(rows(5), this.numbers.inRange(two, false, five, false));
+        assertEquals(rows(3), this.numbers.inRange(five, false, null, false));
+        assertEquals(rows(1, 4), this.numbers.inRange(null, false, two, true));
+        assertEquals(rows(), this.numbers.inRange(null, false, null, false));
+        assertEquals(rows(), this.numbers.inRange(JSONTableSortKey.of(null), false, null, false));
+    }
+
+    @Test
+    void inRangeOfMixedTypes()
+    {
+        // Only the values of the same type as the bounds match
+        assertEquals(rows(0, 4), this.mixed.inRange(JSONTableSortKey.of(0), false, null, false));
+        assertEquals(rows(2, 5), this.mixed.inRange(JSONTableSortKey.ofDate(0), true, null, false));
+        assertEquals(rows(2), this.mixed.inRange(null, false, JSONTableSortKey.of("2021-01-01"), false));
+        assertEquals(rows(1), this.mixed.inRange(JSONTableSortKey.of("a"), true, null, false));
+        assertEquals(rows(), this.mixed.inRange(JSONTableSortKey.of(0), true, JSONTableSortKey.of("z"), true));
+    }
+
+    @Test
+    void extendWithoutBuiltIndexes()
+    {
+        JSONTableColumnIndex extended = extend(this.fruits, FACTORY.textNode("cherry"), FACTORY.textNode("banana"));
+
+        assertEquals(rows(1, 4, 7), extended.equalTo("banana"));
+        assertEquals(rows(0, 5), extended.containing("apple"));
+        assertEquals(rows(6), extended.startingWith("ch"));
+    }
+
+    @Test
+    void extendBuiltIndexes()
+    {
+        // Build the indexes of the first rows before extending them
+        assertEquals(rows(1, 4), this.fruits.equalTo("banana"));
+        assertEquals(rows(1, 4), this.fruits.containing("ana"));
+        assertEquals(rows(0, 4, 5), this.numbers.inRange(JSONTableSortKey.of(2), true, JSONTableSortKey.of(5), true));
+
+        JSONTableColumnIndex fruitsIndex =
+            extend(this.fruits, FACTORY.textNode("banana split"), null, FACTORY.textNode("apple"));
+        JSONTableColumnIndex numbersIndex = extend(this.numbers, FACTORY.numberNode(4), FACTORY.numberNode(2));
+
+        assertEquals(rows(1, 4), fruitsIndex.equalTo("banana"));
+        assertEquals(rows(0, 8), fruitsIndex.equalTo("apple"));
+        assertEquals(rows(1, 4, 6), fruitsIndex.startingWith("banana"));
+        assertEquals(rows(1, 4, 6), fruitsIndex.containing("ana"));
+        assertEquals(rows(0, 4, 5, 6, 7),
+            numbersIndex.inRange(JSONTableSortKey.of(2), true, JSONTableSortKey.of(5), true));
+        // The indexes of the previous rows are left unchanged
+        assertEquals(rows(1, 4), this.fruits.containing("ana"));
+    }
+
+    @Test
+    void extendMergesSmallSegments()
+    {
+        JSONTableColumn column = JSONTableColumns.build(new JsonNode[0], new HashMap<>());
+        JSONTableColumnIndex index = new JSONTableColumnIndex(column);
+        for (int i = 0; i < 1000; i++) {
+            // Query the index after each row so that the segments are merged from their built indexes
+            assertEquals(rows(), index.equalTo(Integer.toString(i)));
+            column = JSONTableColumns.append(column, new JsonNode[] {FACTORY.numberNode(i % 100)}, new HashMap<>());
+            index = index.extend(column);
+        }
+
+        assertTrue(index.getSegmentCount() <= 10);
+        assertEquals(rows(42, 142, 242, 342, 442, 542, 642, 742, 842, 942), index.equalTo("42"));
+        assertEquals(10, index.startingWith("99").cardinality());
+        assertEquals(rows(0, 100, 200, 300, 400, 500, 600, 700, 800, 900, 1, 101, 201, 301, 401, 501, 601, 701, 801,
+            901), index.inRange(null, false, JSONTableSortKey.of(1), true));
+    }
+
+    @Test
+    void extendToAShorterColumn()
+    {
+        JSONTableColumnIndex shorter = this.fruits.extend(JSONTableColumns.build(
+            new JsonNode[] {FACTORY.textNode("banana"), FACTORY.textNode("apple")}, new HashMap<>()));
+
+        assertEquals(rows(0), shorter.equalTo("banana"));
+        assertEquals(rows(1), shorter.containing("apple"));
+    }
+
+    private static JSONTableColumnIndex extend(JSONTableColumnIndex index, JsonNode... values)
+    {
+        return index.extend(JSONTableColumns.append(index.getColumn(), values, new HashMap<>()));
+    }
+
+    private static JSONTableColumnIndex index(JsonNode... values)
+    {
+        return new JSONTableColumnIndex(JSONTableColumns.build(values, new HashMap<>()));
+    }
+
+    private static BitSet rows(int... rows)
+    {
+        BitSet result = new BitSet();
+        for (int row : rows) {
+            result.set(row);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link JSONTableColumns}.
+ *
+ * @version $Id$
+ */
+class JSONTableColumnsTest
+{
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Map<String, String> stringPool = new HashMap<>();
+
+    @Test
+    void buildLongColumn()
+    {
+        JSONTableColumn column = build(FACTORY.numberNode(3), null, FACTORY.nullNode(), FACTORY.numberNode(-7L));
+
+        assertTrue(column instanceof JSONTableColumns.LongColumn);
+        assertEquals(4, column.size());
+        assertEquals("3", column.getValue(0));
+        assertTrue(column.isNull(1));
+        assertNull(column.getValue(2));
+        assertEquals("-7", column.getValue(3));
+        assertTrue(column.compare(3, 0) < 0);
+        assertEquals(0, column.compare(0, 0));
+    }
+
+    @Test
+    void buildDoubleColumn()
+    {
+        JSONTableColumn column = build(FACTORY.numberNode(1.5), null, FACTORY.numberNode(-0.25));
+
+        assertTrue(column instanceof JSONTableColumns.DoubleColumn);
+        assertEquals("1.5", column.getValue(0));
+        assertTrue(column.isNull(1));
+        assertEquals("-0.25", column.getValue(2));
+        assertTrue(column.compare(2, 0) < 0);
+    }
+
+    @Test
+    void buildDoubleColumnOfLargeAndSmallDecimals()
+    {
+        JSONTableColumn column = build(FACTORY.numberNode(12345678.9), FACTORY.numberNode(1.0E7),
+            FACTORY.numberNode(-0.0000001), FACTORY.numberNode(1.10), FACTORY.numberNode(3.0));
+
+        assertTrue(column instanceof JSONTableColumns.DoubleColumn);
+        // Decimals are never displayed using the scientific notation
+        assertEquals("12345678.9", column.getValue(0));
+        assertEquals("10000000.0", column.getValue(1));
+        assertEquals("-0.0000001", column.getValue(2));
+        // The trailing zeros of a double are lost when parsing it
+        assertEquals("1.1", column.getValue(3));
+        assertEquals("3.0", column.getValue(4));
+        assertTrue(column.compare(3, 0) < 0);
+    }
+
+    @Test
+    void buildStringColumnKeepingTheTextOfExactDecimals()
+    {
+        // Decimals parsed as big decimals don't round-trip through a double, so they are displayed as written
+        JSONTableColumn column = build(DecimalNode.valueOf(new BigDecimal("1.10")),
+            DecimalNode.valueOf(new BigDecimal("12345678.90")), FACTORY.numberNode(2.5E-8));
+
+        assertTrue(column instanceof JSONTableColumns.StringColumn);
+        assertEquals("1.10", column.getValue(0));
+        assertEquals("12345678.90", column.getValue(1));
+        assertEquals("0.000000025", column.getValue(2));
+        assertTrue(column.compare(0, 1) < 0);
+        assertTrue(column.compare(2, 0) < 0);
+    }
+
+    @Test
+    void buildStringColumnFromMixedNumbers()
+    {
+        // Integers and decimals are not stored in a same numeric column, so that they keep being displayed as is
+        JSONTableColumn column = build(FACTORY.numberNode(1), FACTORY.numberNode(2.5), FACTORY.numberNode(10));
+
+        assertTrue(column instanceof JSONTableColumns.StringColumn);
+        assertEquals("1", column.getValue(0));
+        assertEquals("2.5", column.getValue(1));
+        // Numeric strings are still sorted numerically
+        assertTrue(column.compare(1, 2) < 0);
+        assertTrue(column.compare(0, 1) < 0);
+    }
+
+    @Test
+    void buildDictionaryColumn()
+    {
+        JSONTableColumn column = build(FACTORY.textNode("b"), FACTORY.textNode("A"), null, FACTORY.textNode("b"),
+            FACTORY.textNode("A"), FACTORY.textNode("b"));
+
+        assertTrue(column instanceof JSONTableColumns.DictionaryColumn);
+        assertEquals("b", column.getValue(0));
+        assertEquals("A", column.getValue(1));
+        assertTrue(column.isNull(2));
+        assertNull(column.getValue(2));
+        // Strings are compared ignoring the case
+        assertTrue(column.compare(1, 0) < 0);
+        assertEquals(0, column.compare(0, 3));
+    }
+
+    @Test
+    void buildStringColumn() throws IOException
+    {
+        JSONTableColumn column = build(FACTORY.textNode("b"), OBJECT_MAPPER.readTree("{\"a\":[1,2]}"),
+            FACTORY.booleanNode(true), null, OBJECT_MAPPER.readTree("[\"x\"]"));
+
+        assertTrue(column instanceof JSONTableColumns.StringColumn);
+        assertEquals("b", column.getValue(0));
+        assertEquals("{\"a\":[1,2]}", column.getValue(1));
+        assertEquals("true", column.getValue(2));
+        assertTrue(column.isNull(3));
+        assertEquals("[\"x\"]", column.getValue(4));
+    }
+
+    @Test
+    void buildColumnWithoutValues()
+    {
+        JSONTableColumn column = build(null, FACTORY.nullNode());
+
+        assertEquals(2, column.size());
+        assertTrue(column.isNull(0));
+        assertTrue(column.isNull(1));
+    }
+
+    @Test
+    void buildSharesTheStringsOfTheColumns()
+    {
+        // Use distinct instances of a same string
+        JSONTableColumn column = build(FACTORY.textNode(new StringBuilder("value").toString()),
+            FACTORY.textNode("other"));
+        JSONTableColumn otherColumn = build(FACTORY.textNode(new StringBuilder("value").toString()),
+            FACTORY.textNode("more"));
+
+        assertSame(column.getValue(0), otherColumn.getValue(0));
+    }
+
+    @Test
+    void getWeightGrowsWithTheValues()
+    {
+        long weight = build(FACTORY.textNode("a"), FACTORY.textNode("b")).getWeight();
+
+        assertTrue(weight > 0);
+        assertTrue(build(FACTORY.textNode(StringUtils.repeat('a', 100)), FACTORY.textNode("b")).getWeight() > weight);
+        assertTrue(build(FACTORY.numberNode(1), FACTORY.numberNode(2), FACTORY.numberNode(3)).getWeight()
+            > build(FACTORY.numberNode(1)).getWeight());
+    }
+
+    @Test
+    void toStringOfMissingValues()
+    {
+        assertNull(JSONTableColumns.toString(null));
+        assertNull(JSONTableColumns.toString(FACTORY.nullNode()));
+        assertEquals("", JSONTableColumns.toString(FACTORY.textNode("")));
+    }
+
+    @Test
+    void appendKeepsTheTypeOfTheColumn()
+    {
+        assertAppended(new JsonNode[] {FACTORY.numberNode(1), null}, FACTORY.numberNode(2), FACTORY.nullNode());
+        assertAppended(new JsonNode[] {FACTORY.numberNode(1.5)}, FACTORY.numberNode(-2.5), null);
+        assertAppended(new JsonNode[] {FACTORY.textNode("a"), FACTORY.textNode("b")}, FACTORY.textNode("c"));
+        assertAppended(new JsonNode[] {FACTORY.textNode("a"), FACTORY.textNode("a"), FACTORY.textNode("a")},
+            FACTORY.textNode("a"), null);
+    }
+
+    @Test
+    void appendValuesOfAnotherType()
+    {
+        assertAppended(new JsonNode[] {FACTORY.numberNode(1), null}, FACTORY.numberNode(2.5));
+        assertAppended(new JsonNode[] {FACTORY.numberNode(1.5)}, FACTORY.textNode("text"));
+        assertAppended(new JsonNode[] {FACTORY.numberNode(1)}, FACTORY.booleanNode(false), FACTORY.numberNode(3));
+    }
+
+    @Test
+    void appendToAColumnWithoutValues()
+    {
+        assertAppended(new JsonNode[] {null, FACTORY.nullNode()}, FACTORY.numberNode(1), null);
+        assertAppended(new JsonNode[] {null}, FACTORY.numberNode(1.5));
+    }
+
+    @Test
+    void appendNothing()
+    {
+        assertAppended(new JsonNode[] {FACTORY.numberNode(1), null});
+    }
+
+    @Test
+    void appendToADictionaryColumnWithTooManyDistinctValues()
+    {
+        assertAppended(new JsonNode[] {FACTORY.textNode("a"), FACTORY.textNode("a"), FACTORY.textNode("a")},
+            FACTORY.textNode("b"), FACTORY.textNode("c"), FACTORY.textNode("d"));
+    }
+
+    @Test
+    void appendToThePreviousVersionsOfAColumn()
+    {
+        assertAppendedToPreviousVersions(FACTORY.numberNode(1), FACTORY.numberNode(2), FACTORY.numberNode(3),
+            FACTORY.numberNode(4));
+        assertAppendedToPreviousVersions(FACTORY.numberNode(1.5), null, FACTORY.numberNode(3.5),
+            FACTORY.numberNode(4.5));
+        assertAppendedToPreviousVersions(FACTORY.textNode("a"), FACTORY.textNode("a"), FACTORY.textNode("b"),
+            FACTORY.textNode("a"));
+        assertAppendedToPreviousVersions(FACTORY.textNode("a"), FACTORY.textNode("b"), FACTORY.textNode("c"),
+            FACTORY.textNode("d"));
+    }
+
+    @Test
+    void appendManyRowsOneAtATime()
+    {
+        JsonNode[] values = new JsonNode[100];
+        JSONTableColumn column = build();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i % 7 == 0) ? null : FACTORY.numberNode(i * 1.5);
+            column = JSONTableColumns.append(column, new JsonNode[] {values[i]}, this.stringPool);
+        }
+
+        assertTrue(column instanceof JSONTableColumns.DoubleColumn);
+        assertSameValues(build(values), column);
+    }
+
+    @Test
+    void compareAppendedStrings()
+    {
+        JSONTableColumn column = build(FACTORY.textNode("b"), FACTORY.textNode("d"), FACTORY.textNode("a"));
+        // Compute the sort keys of the first rows before appending the next ones
+        assertTrue(column.compare(0, 1) < 0);
+
+        JSONTableColumn appended = JSONTableColumns.append(column,
+            new JsonNode[] {FACTORY.textNode("c"), FACTORY.textNode("e")}, this.stringPool);
+
+        assertTrue(appended instanceof JSONTableColumns.StringColumn);
+        assertTrue(appended.compare(3, 1) < 0);
+        assertTrue(appended.compare(3, 0) > 0);
+        assertTrue(appended.compare(4, 1) > 0);
+        assertEquals(0, appended.compare(2, 2));
+    }
+
+    /**
+     * Append values to the latest version of a column, which is done in place, and then to a previous version, which
+     * must not change the values of the versions sharing its storage.
+     */
+    private void assertAppendedToPreviousVersions(JsonNode first, JsonNode second, JsonNode third, JsonNode fourth)
+    {
+        JSONTableColumn column = build(first, second);
+        JSONTableColumn latest = JSONTableColumns.append(column, new JsonNode[] {third}, this.stringPool);
+        JSONTableColumn fromPrevious = JSONTableColumns.append(column, new JsonNode[] {fourth}, this.stringPool);
+        JSONTableColumn fromLatest = JSONTableColumns.append(latest, new JsonNode[] {fourth}, this.stringPool);
+
+        assertSameValues(build(first, second), column);
+        assertSameValues(build(first, second, third), latest);
+        assertSameValues(build(first, second, fourth), fromPrevious);
+        assertSameValues(build(first, second, third, fourth), fromLatest);
+    }
+
+    private void assertSameValues(JSONTableColumn expected, JSONTableColumn actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getValue(i), actual.getValue(i));
+            assertEquals(expected.isNull(i), actual.isNull(i));
+        }
+    }
+
+    /**
+     * Check that appending values to a column gives the same column as building it from all the values.
+     */
+    private void assertAppended(JsonNode[] values, JsonNode... appendedValues)
+    {
+        JsonNode[] allValues = new JsonNode[values.length + appendedValues.length];
+        System.arraycopy(values, 0, allValues, 0, values.length);
+        System.arraycopy(appendedValues, 0, allValues, values.length, appendedValues.length);
+        JSONTableColumn expected = JSONTableColumns.build(allValues, this.stringPool);
+
+        JSONTableColumn actual = JSONTableColumns.append(build(values), appendedValues, this.stringPool);
+
+        assertEquals(expected.getClass(), actual.getClass());
+        assertSameValues(expected, actual);
+    }
+
+    private JSONTableColumn build(JsonNode... values)
+    {
+        return JSONTableColumns.build(values, this.stringPool);
+    }
+}
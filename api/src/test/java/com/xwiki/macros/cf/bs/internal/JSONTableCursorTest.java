@@ -0,0 +1,168 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link JSONTableCursor}.
+ *
+ * @version $Id$
+ */
+class JSONTableCursorTest
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String PATH = "$.data.items[*]";
+
+    private final JSONTableCursor cursor = JSONTableCursor.of(PATH, "meta.id", "after");
+
+    @Test
+    void of()
+    {
+        assertNotNull(JSONTableCursor.of("$[*]", "id", "after"));
+        assertNull(JSONTableCursor.of("$.data.items", "id", "after"));
+        assertNull(JSONTableCursor.of("$..items[*]", "id", "after"));
+        assertNull(JSONTableCursor.of(PATH, "items[0].id", "after"));
+        assertNull(JSONTableCursor.of(PATH, "id", ""));
+    }
+
+    @Test
+    void getValue() throws IOException
+    {
+        JsonNode node = read(1, 2, 3);
+
+        assertEquals("3", this.cursor.getValue(node));
+        assertEquals(3, this.cursor.getRowCount(node));
+        assertNull(this.cursor.getValue(read()));
+        assertNull(this.cursor.getValue(OBJECT_MAPPER.readTree("{\"data\": {}}")));
+    }
+
+    @Test
+    void getURL() throws Exception
+    {
+        assertEquals(new URL("https://example.org/rows?page=1&after=3"),
+            this.cursor.getURL(new URL("https://example.org/rows?page=1"), "3"));
+    }
+
+    @Test
+    void append() throws IOException
+    {
+        JsonNode node = read(1, 2);
+
+        JsonNode result = this.cursor.append(node, read(3, 4));
+
+        assertEquals(read(1, 2, 3, 4), result);
+        assertEquals("4", this.cursor.getValue(result));
+        // The other fields are kept, and the given data is left untouched
+        assertEquals("value", result.get("other").asText());
+        assertEquals(read(1, 2), node);
+    }
+
+    @Test
+    void appendSuccessiveRows() throws IOException
+    {
+        JsonNode first = read(1, 2);
+        JsonNode second = this.cursor.append(first, read(3));
+        JsonNode third = this.cursor.append(second, read(4, 5));
+        JsonNode fourth = this.cursor.append(third, read(6));
+
+        // Each version only sees its own rows, even though the later ones share them
+        assertEquals(read(1, 2), first);
+        assertEquals(read(1, 2, 3), second);
+        assertEquals(read(1, 2, 3, 4, 5), third);
+        assertEquals(read(1, 2, 3, 4, 5, 6), fourth);
+        assertEquals(3, this.cursor.getRowCount(second));
+        assertEquals("3", this.cursor.getValue(second));
+    }
+
+    @Test
+    void appendToAnOlderVersion() throws IOException
+    {
+        JsonNode first = read(1);
+        JsonNode second = this.cursor.append(first, read(2));
+        JsonNode third = this.cursor.append(second, read(3));
+
+        // Rows have already been appended to the second version, so appending other rows must not change the third
+        JsonNode otherThird = this.cursor.append(second, read(4));
+        JsonNode fourth = this.cursor.append(third, read(5));
+
+        assertEquals(read(1, 2, 3), third);
+        assertEquals(read(1, 2, 4), otherThird);
+        assertEquals(read(1, 2, 3, 5), fourth);
+        assertEquals(read(1, 2, 4, 6), this.cursor.append(otherThird, read(6)));
+    }
+
+    @Test
+    void appendWithoutDuplicates() throws IOException
+    {
+        JsonNode node = read(1, 2, 3);
+
+        // The source also sent back the last row already loaded
+        assertEquals(read(1, 2, 3, 4, 5), this.cursor.append(node, read(3, 4, 5)));
+        assertEquals(read(1, 2, 3, 4), this.cursor.append(node, read(2, 3, 4)));
+        assertSame(node, this.cursor.append(node, read(3)));
+        assertEquals(read(1, 2, 3, 4), this.cursor.append(node, read(4)));
+    }
+
+    @Test
+    void appendNothing() throws IOException
+    {
+        JsonNode node = read(1, 2);
+
+        assertSame(node, this.cursor.append(node, read()));
+        assertNull(this.cursor.append(node, OBJECT_MAPPER.readTree("{\"data\": {\"items\": {}}}")));
+        assertNull(this.cursor.append(OBJECT_MAPPER.readTree("[]"), read(3)));
+    }
+
+    @Test
+    void appendToRootArray() throws IOException
+    {
+        JSONTableCursor rootCursor = JSONTableCursor.of("$[*]", "meta.id", "after");
+        JsonNode node = read(1, 2).get("data").get("items");
+
+        JsonNode result = rootCursor.append(node, read(2, 3).get("data").get("items"));
+
+        assertEquals(read(1, 2, 3).get("data").get("items"), result);
+    }
+
+    private JsonNode read(int... ids) throws IOException
+    {
+        StringBuilder rows = new StringBuilder();
+        for (int id : ids) {
+            if (rows.length() > 0) {
+                rows.append(',');
+            }
+            rows.append(String.format("{\"meta\": {\"id\": %d}, \"name\": \"row %d\"}", id, id));
+        }
+        return OBJECT_MAPPER.readTree(String.format("{\"other\": \"value\", \"data\": {\"items\": [%s]}}", rows));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntry;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableDataCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableDataCacheTest
+{
+    @InjectMockComponents
+    private JSONTableDataCache dataCache;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private JSONTableConfiguration configuration;
+
+    @MockComponent
+    private JSONTableMetrics metrics;
+
+    private Cache<JSONTableDataEntry> cache;
+
+    private JSONTableDataEntry first;
+
+    private JSONTableDataEntry second;
+
+    private JSONTableDataEntry third;
+
+    private long weight;
+
+    @BeforeComponent
+    @SuppressWarnings("unchecked")
+    void configure() throws Exception
+    {
+        this.cache = mock(Cache.class);
+        when(this.cacheManager.<JSONTableDataEntry>createNewCache(any(CacheConfiguration.class)))
+            .thenReturn(this.cache);
+
+        this.first = new JSONTableDataEntry(new TextNode("first"));
+        this.second = new JSONTableDataEntry(new TextNode("other"));
+        this.third = new JSONTableDataEntry(new TextNode("third"));
+        this.weight = this.first.getWeight();
+        // Room for two entries and a half
+        when(this.configuration.getCacheMaxWeight()).thenReturn(this.weight * 5 / 2);
+    }
+
+    @BeforeEach
+    void setUp()
+    {
+        when(this.cache.get("first")).thenReturn(this.first);
+        when(this.cache.get("second")).thenReturn(this.second);
+    }
+
+    @Test
+    void setEvictsTheLeastRecentlyUsedEntries()
+    {
+        this.dataCache.set("first", this.first);
+        this.dataCache.set("second", this.second);
+        assertEquals(2 * this.weight, this.dataCache.getTotalWeight());
+
+        // Using the first entry makes the second one the least recently used
+        this.dataCache.get("first");
+        this.dataCache.set("third", this.third);
+
+        verify(this.cache).remove("second");
+        verify(this.cache, never()).remove("first");
+        verify(this.cache, never()).remove("third");
+        assertEquals(2 * this.weight, this.dataCache.getTotalWeight());
+    }
+
+    @Test
+    void setKeepsAnEntryHeavierThanTheMaximumWeight()
+    {
+        this.dataCache.set("first", this.first);
+        JSONTableDataEntry heavy = new JSONTableDataEntry(new TextNode(new String(new char[(int) this.weight * 4])));
+        this.dataCache.set("heavy", heavy);
+
+        verify(this.cache).set("heavy", heavy);
+        verify(this.cache).remove("first");
+        verify(this.cache, never()).remove("heavy");
+        assertEquals(heavy.getWeight(), this.dataCache.getTotalWeight());
+    }
+
+    @Test
+    void setReplacesTheWeightOfAnExistingEntry()
+    {
+        this.dataCache.set("first", this.first);
+        this.dataCache.set("first", this.second);
+
+        assertEquals(this.weight, this.dataCache.getTotalWeight());
+    }
+
+    @Test
+    void cacheEntryRemovedReleasesTheWeight()
+    {
+        this.dataCache.set("first", this.first);
+        this.dataCache.set("second", this.second);
+
+        this.dataCache.cacheEntryRemoved(newRemovalEvent("first", this.first));
+
+        assertEquals(this.weight, this.dataCache.getTotalWeight());
+        verify(this.metrics).recordCacheRemoval();
+
+        // An entry removed because of the limits of the underlying cache doesn't need to be evicted anymore
+        this.dataCache.set("third", this.third);
+        verify(this.cache, never()).remove(any());
+    }
+
+    @Test
+    void getRecordsTheCacheLookups()
+    {
+        this.dataCache.get("first");
+        this.dataCache.get("missing");
+
+        verify(this.metrics).recordCacheLookup(true);
+        verify(this.metrics).recordCacheLookup(false);
+    }
+
+    @Test
+    void removeRecordsAnInvalidation()
+    {
+        // The underlying cache notifies the removal of the entry before returning
+        doAnswer(invocation -> {
+            this.dataCache.cacheEntryRemoved(newRemovalEvent("first", this.first));
+            return null;
+        }).when(this.cache).remove("first");
+
+        this.dataCache.remove("first");
+        this.dataCache.cacheEntryRemoved(newRemovalEvent("second", this.second));
+
+        verify(this.metrics, times(2)).recordCacheRemoval();
+        verify(this.metrics).recordCacheInvalidation();
+        // Looking the entry up would change the order in which entries are evicted
+        verify(this.cache, never()).get("first");
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheEntryEvent<JSONTableDataEntry> newRemovalEvent(String key, JSONTableDataEntry value)
+    {
+        CacheEntry<JSONTableDataEntry> entry = mock(CacheEntry.class);
+        when(entry.getKey()).thenReturn(key);
+        when(entry.getValue()).thenReturn(value);
+        CacheEntryEvent<JSONTableDataEntry> event = mock(CacheEntryEvent.class);
+        when(event.getEntry()).thenReturn(entry);
+        return event;
+    }
+}
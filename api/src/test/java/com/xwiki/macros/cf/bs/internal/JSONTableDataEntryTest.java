@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for {@link JSONTableDataEntry}.
+ *
+ * @version $Id$
+ */
+class JSONTableDataEntryTest
+{
+    private static final List<Object> KEY = Arrays.asList("$.rows", null, "name,age");
+
+    private final JSONTableDataEntry entry = new JSONTableDataEntry(JsonNodeFactory.instance.objectNode(), "etag",
+        null, 1000L, 2000L);
+
+    @Test
+    void liveDataParameters()
+    {
+        assertNull(this.entry.getLiveDataParameters(KEY));
+
+        this.entry.setLiveDataParameters(KEY, "{}");
+
+        assertEquals("{}", this.entry.getLiveDataParameters(Arrays.asList("$.rows", null, "name,age")));
+        assertNull(this.entry.getLiveDataParameters(Arrays.asList("$.items", null, "name,age")));
+    }
+
+    @Test
+    void revalidateKeepsTheLiveDataParameters()
+    {
+        this.entry.setLiveDataParameters(KEY, "{}");
+
+        JSONTableDataEntry revalidated = this.entry.revalidate("etag", null, 3000L, 4000L);
+
+        assertEquals("{}", revalidated.getLiveDataParameters(KEY));
+        assertNull(new JSONTableDataEntry(this.entry.getNode()).getLiveDataParameters(KEY));
+    }
+
+    @Test
+    void setLiveDataParametersOfAFewMacrosOnly()
+    {
+        for (int i = 0; i < 150; i++) {
+            this.entry.setLiveDataParameters(Arrays.asList(i), Integer.toString(i));
+        }
+
+        assertEquals("99", this.entry.getLiveDataParameters(Arrays.asList(99)));
+        // The parameters generated once the limit is reached are not kept
+        assertNull(this.entry.getLiveDataParameters(Arrays.asList(100)));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.macro.MacroExecutionException;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableDataFetcher}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableDataFetcherTest
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @InjectMockComponents
+    private JSONTableDataFetcher fetcher;
+
+    @MockComponent
+    private JSONTableSourceFetcher sourceFetcher;
+
+    private URL url;
+
+    private URL deltaURL;
+
+    private JSONTableSource appendOnlySource;
+
+    private JSONTableDataEntry previousEntry;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.url = new URL("https://example.org/rows");
+        this.deltaURL = new URL("https://example.org/rows?after=2");
+        this.appendOnlySource = JSONTableSource.fromURL(this.url, null, JSONTableCursor.of("$[*]", "id", "after"));
+        this.previousEntry = new JSONTableDataEntry(rows(1, 2), "\"v1\"", null, 0, 0);
+    }
+
+    @Test
+    void parse() throws Exception
+    {
+        JSONTableDataEntry entry = this.fetcher.parse(JSONTableSource.fromContent("{\"a\": [1, 2]}", null));
+
+        assertEquals(OBJECT_MAPPER.readTree("{\"a\": [1, 2]}"), entry.getNode());
+        assertEquals(Long.MAX_VALUE, entry.getExpirationTime());
+    }
+
+    @Test
+    void parseWithReader() throws Exception
+    {
+        JSONTableStreamingReader reader = JSONTableStreamingReader.of("$.rows[*]", Arrays.asList("id"));
+        JSONTableDataEntry entry = this.fetcher.parse(
+            JSONTableSource.fromContent("{\"rows\": [{\"id\": 1, \"name\": \"a\"}], \"other\": true}", reader));
+
+        assertEquals(OBJECT_MAPPER.readTree("{\"rows\": [{\"id\": 1}]}"), entry.getNode());
+    }
+
+    @Test
+    void parseInvalidContent()
+    {
+        assertThrows(MacroExecutionException.class,
+            () -> this.fetcher.parse(JSONTableSource.fromContent("{\"a\": ", null)));
+    }
+
+    @Test
+    void fetch() throws Exception
+    {
+        JSONTableSource source = JSONTableSource.fromURL(this.url, null, null);
+        JSONTableDataEntry entry = new JSONTableDataEntry(rows(1));
+        when(this.sourceFetcher.fetch(this.url, this.previousEntry, null)).thenReturn(entry);
+
+        assertSame(entry, this.fetcher.fetch(source, this.previousEntry));
+    }
+
+    @Test
+    void fetchFailure() throws Exception
+    {
+        JSONTableSource source = JSONTableSource.fromURL(this.url, null, null);
+        IOException failure = new IOException("Connection refused");
+        when(this.sourceFetcher.fetch(this.url, null, null)).thenThrow(failure);
+
+        assertSame(failure, assertThrows(MacroExecutionException.class, () -> this.fetcher.fetch(source, null))
+            .getCause());
+    }
+
+    @Test
+    void fetchAppendedRows() throws Exception
+    {
+        when(this.sourceFetcher.fetch(eq(this.deltaURL), isNull(), isNull()))
+            .thenReturn(new JSONTableDataEntry(rows(2, 3), null, null, 10, 20));
+
+        JSONTableDataEntry entry = this.fetcher.fetch(this.appendOnlySource, this.previousEntry);
+
+        assertEquals(rows(1, 2, 3), entry.getNode());
+        assertEquals(this.previousEntry.getVersion(), entry.getAppendedVersion());
+        assertEquals(20, entry.getExpirationTime());
+        verify(this.sourceFetcher, never()).fetch(eq(this.url), any(), any());
+    }
+
+    @Test
+    void fetchWithoutAppendedRows() throws Exception
+    {
+        when(this.sourceFetcher.fetch(eq(this.deltaURL), isNull(), isNull()))
+            .thenReturn(new JSONTableDataEntry(rows(2), null, null, 10, 20));
+
+        JSONTableDataEntry entry = this.fetcher.fetch(this.appendOnlySource, this.previousEntry);
+
+        // The previous data is kept, only revalidated
+        assertSame(this.previousEntry.getNode(), entry.getNode());
+        assertEquals(this.previousEntry.getVersion(), entry.getVersion());
+        assertNull(entry.getAppendedVersion());
+        assertEquals(20, entry.getExpirationTime());
+    }
+
+    @Test
+    void fetchWholeSourceWhenTheRowsCannotBeAppended() throws Exception
+    {
+        JSONTableDataEntry entry = new JSONTableDataEntry(rows(5));
+        when(this.sourceFetcher.fetch(eq(this.deltaURL), isNull(), isNull()))
+            .thenReturn(new JSONTableDataEntry(OBJECT_MAPPER.readTree("{\"error\": true}")));
+        when(this.sourceFetcher.fetch(this.url, this.previousEntry, null)).thenReturn(entry);
+
+        assertSame(entry, this.fetcher.fetch(this.appendOnlySource, this.previousEntry));
+    }
+
+    private static JsonNode rows(int... ids)
+    {
+        StringBuilder json = new StringBuilder("[");
+        for (int id : ids) {
+            json.append((json.length() > 1) ? ", " : "").append(String.format("{\"id\": %d}", id));
+        }
+        try {
+            return OBJECT_MAPPER.readTree(json.append(']').toString());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import io.gatling.jsonpath.JsonPath;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link JSONTableDataHelper}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableDataHelperTest
+{
+    private static final List<String> FIELD_PATHS =
+        Arrays.asList("id", "name", "address.city", "address.street", "age", "email");
+
+    private static final List<String> SIMPLE_PATHS = Arrays.asList("name", "$.name", "address.city",
+        "$.address.city", "address", "missing", "address.missing", "none", "none.child", "tags", "tags.length",
+        "name.length", "$.deep.a.b.c.d");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @InjectMockComponents
+    private JSONTableDataHelper dataHelper;
+
+    @Test
+    void isSimplePath()
+    {
+        SIMPLE_PATHS.forEach(path -> assertTrue(JSONTableDataHelper.isSimplePath(path), path));
+        for (String path : Arrays.asList("$", "$[*]", "$.items[*]", "$..name", "items[0].name", "$['name']",
+            "address.*", ".name", "name.")) {
+            assertFalse(JSONTableDataHelper.isSimplePath(path), path);
+        }
+    }
+
+    @Test
+    void applySimplePathToAnObject() throws Exception
+    {
+        assertSameAsJsonPath(OBJECT_MAPPER.readTree("{\"name\": \"Alice\", \"address\": {\"city\": \"Paris\"}, "
+            + "\"none\": null, \"tags\": [\"a\", \"b\"], \"deep\": {\"a\": {\"b\": {\"c\": {\"d\": 1.5}}}}}"));
+    }
+
+    @Test
+    void applySimplePathToAnObjectWithNullsAndOtherTypes() throws Exception
+    {
+        assertSameAsJsonPath(OBJECT_MAPPER.readTree("{\"name\": null, \"address\": \"Paris\", \"none\": {}, "
+            + "\"tags\": {\"length\": 2}, \"deep\": {\"a\": [{\"b\": 1}]}}"));
+    }
+
+    @Test
+    void applySimplePathToAnArray() throws Exception
+    {
+        assertSameAsJsonPath(OBJECT_MAPPER.readTree("[{\"name\": \"Alice\"}, {\"name\": \"Bob\"}]"));
+    }
+
+    @Test
+    void applySimplePathToAValue()
+    {
+        assertSameAsJsonPath(new TextNode("Alice"));
+        assertSameAsJsonPath(NullNode.getInstance());
+    }
+
+    /**
+     * Check that the simple paths, which are resolved without going through the JSON path implementation, give the
+     * same result as the JSON path implementation.
+     */
+    private void assertSameAsJsonPath(JsonNode node)
+    {
+        for (String path : SIMPLE_PATHS) {
+            String fullPath = path.startsWith("$") ? path : "$." + path;
+            JsonPath jsonPath = io.gatling.jsonpath.JsonPath$.MODULE$.compile(fullPath).right().get();
+            List<JsonNode> expected = Collections.list(
+                scala.collection.JavaConverters$.MODULE$.asJavaEnumeration(jsonPath.query(node)));
+
+            assertEquals(expected, Collections.list(this.dataHelper.applyPath(path, node)), path);
+        }
+    }
+
+    @Test
+    void orderFieldPathsByPattern()
+    {
+        List<Pattern> patterns = this.dataHelper.getPatterns(Arrays.asList("name", "address\\..*", "id"));
+
+        assertEquals(Arrays.asList("name", "address.city", "address.street", "id", "age", "email"),
+            JSONTableDataHelper.orderFieldPaths(FIELD_PATHS, patterns));
+    }
+
+    @Test
+    void orderFieldPathsInTheBucketOfTheFirstMatchingPattern()
+    {
+        List<Pattern> patterns = this.dataHelper.getPatterns(Arrays.asList("a.*", ".*e", "address\\.city"));
+
+        // Field paths matching several patterns only appear once, in the bucket of the first pattern they match
+        assertEquals(Arrays.asList("address.city", "address.street", "age", "name", "id", "email"),
+            JSONTableDataHelper.orderFieldPaths(FIELD_PATHS, patterns));
+    }
+
+    @Test
+    void orderFieldPathsWithoutDuplicates()
+    {
+        List<Pattern> patterns = this.dataHelper.getPatterns(Collections.singletonList("age"));
+
+        assertEquals(Arrays.asList("age", "id", "name"),
+            JSONTableDataHelper.orderFieldPaths(Arrays.asList("id", "age", "name", "id", "age"), patterns));
+    }
+
+    @Test
+    void orderFieldPathsNotMatchingAnyPattern()
+    {
+        List<Pattern> patterns = this.dataHelper.getPatterns(Arrays.asList("phone", "fax"));
+
+        assertEquals(FIELD_PATHS, JSONTableDataHelper.orderFieldPaths(FIELD_PATHS, patterns));
+    }
+
+    @Test
+    void orderFieldPathsWithoutPatterns()
+    {
+        assertEquals(FIELD_PATHS, JSONTableDataHelper.orderFieldPaths(FIELD_PATHS, Collections.emptyList()));
+    }
+
+    @Test
+    void getPatternsReusesTheCompiledPatterns()
+    {
+        List<Pattern> patterns = this.dataHelper.getPatterns(Arrays.asList("name", "address\\..*"));
+        List<Pattern> otherPatterns = this.dataHelper.getPatterns(Arrays.asList("address\\..*", "id"));
+
+        assertEquals("address\\..*", patterns.get(1).pattern());
+        assertSame(patterns.get(1), otherPatterns.get(0));
+        assertEquals("id", otherPatterns.get(1).pattern());
+    }
+}
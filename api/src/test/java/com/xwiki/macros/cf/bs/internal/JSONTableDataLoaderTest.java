@@ -0,0 +1,287 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.xwiki.macros.cf.bs.BSMacroException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableDataLoader}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableDataLoaderTest
+{
+    private static final long HARD_TTL = 60;
+
+    @InjectMockComponents
+    private JSONTableDataLoader loader;
+
+    @MockComponent
+    private JSONTableSourceCache sourceCache;
+
+    @MockComponent
+    private JSONTableDataStorage storage;
+
+    @MockComponent
+    private JSONTableDataFetcher fetcher;
+
+    @MockComponent
+    private JSONTableConfiguration configuration;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private JSONTableSource source;
+
+    private String key;
+
+    private JSONTableDataEntry freshEntry;
+
+    @BeforeComponent
+    void configure()
+    {
+        when(this.configuration.getCacheRefreshThreads()).thenReturn(1);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.source = JSONTableSource.fromURL(new URL("https://example.org/data.json"), null, null);
+        this.key = this.loader.getKey(this.source);
+        this.freshEntry = newEntry("fresh", System.currentTimeMillis() + 60000);
+        when(this.configuration.getCacheHardTTL()).thenReturn(HARD_TTL);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    void loadFetchesMissingData() throws Exception
+    {
+        when(this.fetcher.fetch(same(this.source), isNull())).thenReturn(this.freshEntry);
+
+        assertSame(this.freshEntry, this.loader.load(this.source));
+
+        verify(this.storage).set(this.key, this.freshEntry, null);
+        verify(this.sourceCache).set(this.key, this.source);
+        assertEquals(1, this.loader.getLoadCount());
+    }
+
+    @Test
+    void loadServesFreshDataWithoutFetchingIt() throws Exception
+    {
+        when(this.storage.get(this.key)).thenReturn(this.freshEntry);
+
+        assertSame(this.freshEntry, this.loader.load(this.source));
+
+        verify(this.fetcher, never()).fetch(any(), any());
+        assertEquals(0, this.loader.getLoadCount());
+    }
+
+    @Test
+    void loadParsesInlineContentOnce() throws Exception
+    {
+        JSONTableSource contentSource = JSONTableSource.fromContent("[1, 2]", null);
+        String contentKey = this.loader.getKey(contentSource);
+        JSONTableDataEntry entry = new JSONTableDataEntry(new TextNode("content"));
+        when(this.fetcher.parse(contentSource)).thenReturn(entry);
+
+        assertSame(entry, this.loader.load(contentSource));
+        when(this.storage.get(contentKey)).thenReturn(entry);
+        assertSame(entry, this.loader.load(contentSource));
+
+        verify(this.fetcher).parse(contentSource);
+        verify(this.storage).set(contentKey, entry, null);
+    }
+
+    @Test
+    void loadCoalescesConcurrentLoads() throws Exception
+    {
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch fetchAllowed = new CountDownLatch(1);
+        when(this.fetcher.fetch(same(this.source), isNull())).thenAnswer(invocation -> {
+            fetchStarted.countDown();
+            fetchAllowed.await(10, TimeUnit.SECONDS);
+            return this.freshEntry;
+        });
+
+        Future<JSONTableDataEntry> first = this.executor.submit(() -> this.loader.load(this.source));
+        assertTrue(fetchStarted.await(10, TimeUnit.SECONDS));
+        Future<JSONTableDataEntry> second = this.executor.submit(() -> this.loader.load(this.source));
+        waitUntil(() -> this.loader.getCoalescedLoadCount() == 1);
+        fetchAllowed.countDown();
+
+        assertSame(this.freshEntry, first.get(10, TimeUnit.SECONDS));
+        assertSame(this.freshEntry, second.get(10, TimeUnit.SECONDS));
+        verify(this.fetcher, times(1)).fetch(any(), any());
+        assertEquals(1, this.loader.getLoadCount());
+        assertEquals(1, this.loader.getCoalescedLoadCount());
+    }
+
+    @Test
+    void loadPropagatesTheFailureOfACoalescedLoad() throws Exception
+    {
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch fetchAllowed = new CountDownLatch(1);
+        BSMacroException failure = new BSMacroException("Invalid response");
+        when(this.fetcher.fetch(same(this.source), isNull())).thenAnswer(invocation -> {
+            fetchStarted.countDown();
+            fetchAllowed.await(10, TimeUnit.SECONDS);
+            throw failure;
+        });
+
+        Future<JSONTableDataEntry> first = this.executor.submit(() -> this.loader.load(this.source));
+        assertTrue(fetchStarted.await(10, TimeUnit.SECONDS));
+        Future<JSONTableDataEntry> second = this.executor.submit(() -> this.loader.load(this.source));
+        waitUntil(() -> this.loader.getCoalescedLoadCount() == 1);
+        fetchAllowed.countDown();
+
+        assertSame(failure, assertThrows(Exception.class, () -> first.get(10, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(Exception.class, () -> second.get(10, TimeUnit.SECONDS)).getCause());
+        verify(this.storage, never()).set(anyString(), any(), any());
+    }
+
+    @Test
+    void loadServesExpiredDataWhileRefreshingItInTheBackground() throws Exception
+    {
+        JSONTableDataEntry expiredEntry = newEntry("expired", System.currentTimeMillis() - 1000);
+        when(this.storage.get(this.key)).thenReturn(expiredEntry);
+        when(this.configuration.isCacheRefreshAheadEnabled()).thenReturn(true);
+        CountDownLatch fetchAllowed = new CountDownLatch(1);
+        when(this.fetcher.fetch(this.source, expiredEntry)).thenAnswer(invocation -> {
+            fetchAllowed.await(10, TimeUnit.SECONDS);
+            return this.freshEntry;
+        });
+        CountDownLatch stored = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            stored.countDown();
+            return null;
+        }).when(this.storage).set(this.key, this.freshEntry, expiredEntry);
+
+        // A single refresh is made for the successive requests served while the data is being refreshed
+        assertSame(expiredEntry, this.loader.load(this.source));
+        assertSame(expiredEntry, this.loader.load(this.source));
+        fetchAllowed.countDown();
+
+        assertTrue(stored.await(10, TimeUnit.SECONDS));
+        verify(this.fetcher, times(1)).fetch(any(), any());
+        assertEquals(0, this.loader.getLoadCount());
+    }
+
+    @Test
+    void loadRefreshesExpiredDataWhenRefreshAheadIsDisabled() throws Exception
+    {
+        JSONTableDataEntry expiredEntry = newEntry("expired", System.currentTimeMillis() - 1000);
+        when(this.storage.get(this.key)).thenReturn(expiredEntry);
+        when(this.fetcher.fetch(this.source, expiredEntry)).thenReturn(this.freshEntry);
+
+        assertSame(this.freshEntry, this.loader.load(this.source));
+
+        verify(this.storage).set(this.key, this.freshEntry, expiredEntry);
+        assertEquals(1, this.loader.getLoadCount());
+    }
+
+    @Test
+    void loadRefreshesHardExpiredDataSynchronously() throws Exception
+    {
+        JSONTableDataEntry expiredEntry =
+            newEntry("expired", System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(HARD_TTL) - 1000);
+        when(this.storage.get(this.key)).thenReturn(expiredEntry);
+        when(this.configuration.isCacheRefreshAheadEnabled()).thenReturn(true);
+        when(this.fetcher.fetch(this.source, expiredEntry)).thenReturn(this.freshEntry);
+
+        assertSame(this.freshEntry, this.loader.load(this.source));
+
+        verify(this.storage).set(this.key, this.freshEntry, expiredEntry);
+        assertEquals(1, this.loader.getLoadCount());
+    }
+
+    @Test
+    void loadByKeyOfAKnownSource() throws Exception
+    {
+        when(this.sourceCache.get(this.key)).thenReturn(this.source);
+        when(this.fetcher.fetch(same(this.source), isNull())).thenReturn(this.freshEntry);
+
+        assertSame(this.freshEntry, this.loader.loadByKey(this.key));
+    }
+
+    @Test
+    void loadByKeyOfAnUnknownSource() throws Exception
+    {
+        assertNull(this.loader.loadByKey(this.key));
+
+        // The data may still have been loaded by another member of the cluster
+        when(this.storage.getFromCluster(this.key)).thenReturn(this.freshEntry);
+        assertSame(this.freshEntry, this.loader.loadByKey(this.key));
+
+        verify(this.fetcher, never()).fetch(any(), any());
+        verify(this.fetcher, never()).parse(any());
+    }
+
+    private static JSONTableDataEntry newEntry(String value, long expirationTime)
+    {
+        return new JSONTableDataEntry(new TextNode(value), "\"" + value + "\"", null, expirationTime - 1000,
+            expirationTime);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
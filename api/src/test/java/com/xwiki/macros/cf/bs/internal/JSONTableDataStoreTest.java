@@ -0,0 +1,174 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableDataStore}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableDataStoreTest
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String KEY = "key";
+
+    private static final long HOUR = 3600 * 1000L;
+
+    @TempDir
+    static File temporaryDirectory;
+
+    @InjectMockComponents
+    private JSONTableDataStore store;
+
+    @MockComponent
+    private Environment environment;
+
+    @MockComponent
+    private JSONTableConfiguration configuration;
+
+    private File directory;
+
+    @BeforeComponent
+    void configure() throws IOException
+    {
+        File permanentDirectory = Files.createTempDirectory(temporaryDirectory.toPath(), "permanent").toFile();
+        this.directory = new File(permanentDirectory, "cache/jsontable/data");
+        when(this.environment.getPermanentDirectory()).thenReturn(permanentDirectory);
+        when(this.configuration.isPersistentCacheEnabled()).thenReturn(true);
+        when(this.configuration.getPersistentCacheMaxAge()).thenReturn(24 * 3600L);
+        when(this.configuration.getPersistentCacheMaxSize()).thenReturn(1024 * 1024L);
+    }
+
+    @Test
+    void saveAndLoad() throws Exception
+    {
+        JSONTableDataEntry entry = new JSONTableDataEntry(OBJECT_MAPPER.readTree("[{\"a\": 1}, {\"a\": \"b\"}]"),
+            "\"etag\"", "Thu, 01 Jan 2026 00:00:00 GMT", 1000L, 2000L, "v1");
+
+        this.store.save(KEY, entry);
+        JSONTableDataEntry stored = waitForEntry(KEY);
+
+        assertEquals(entry.getNode(), stored.getNode());
+        assertEquals(entry.getETag(), stored.getETag());
+        assertEquals(entry.getLastModified(), stored.getLastModified());
+        assertEquals(1000L, stored.getValidationTime());
+        assertEquals(2000L, stored.getExpirationTime());
+        assertEquals("v1", stored.getVersion());
+    }
+
+    @Test
+    void saveAndLoadWithoutValidators() throws Exception
+    {
+        this.store.save(KEY, new JSONTableDataEntry(OBJECT_MAPPER.readTree("{\"a\": null}")));
+        JSONTableDataEntry stored = waitForEntry(KEY);
+
+        assertEquals(OBJECT_MAPPER.readTree("{\"a\": null}"), stored.getNode());
+        assertNull(stored.getETag());
+        assertNull(stored.getLastModified());
+    }
+
+    @Test
+    void loadMissingOrInvalidEntries() throws Exception
+    {
+        assertNull(this.store.load(KEY));
+
+        Files.createDirectories(this.directory.toPath());
+        Files.write(new File(this.directory, KEY + ".smile").toPath(), "not smile".getBytes());
+
+        assertNull(this.store.load(KEY));
+    }
+
+    @Test
+    void getRecentKeys() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        for (String key : Arrays.asList("old", "recent", "older")) {
+            this.store.save(key, new JSONTableDataEntry(OBJECT_MAPPER.readTree("{}")));
+            waitForEntry(key);
+        }
+        new File(this.directory, "old.smile").setLastModified(now - 2 * HOUR);
+        new File(this.directory, "older.smile").setLastModified(now - 3 * HOUR);
+        // Only the entries are listed
+        new File(this.directory, "other.tmp").createNewFile();
+
+        assertEquals(Arrays.asList("recent", "old", "older"), this.store.getRecentKeys(10));
+        assertEquals(Arrays.asList("recent", "old"), this.store.getRecentKeys(2));
+    }
+
+    @Test
+    void remove() throws Exception
+    {
+        this.store.save(KEY, new JSONTableDataEntry(OBJECT_MAPPER.readTree("{}")));
+        waitForEntry(KEY);
+
+        this.store.remove(KEY);
+
+        assertNull(this.store.load(KEY));
+        assertFalse(new File(this.directory, KEY + ".smile").exists());
+    }
+
+    @Test
+    void disabled() throws Exception
+    {
+        this.store.save(KEY, new JSONTableDataEntry(OBJECT_MAPPER.readTree("{}")));
+        waitForEntry(KEY);
+
+        when(this.configuration.isPersistentCacheEnabled()).thenReturn(false);
+
+        assertNull(this.store.load(KEY));
+        assertEquals(Collections.emptyList(), this.store.getRecentKeys(10));
+    }
+
+    private JSONTableDataEntry waitForEntry(String key) throws InterruptedException
+    {
+        // The entries are written in the background
+        JSONTableDataEntry entry = this.store.load(key);
+        for (int i = 0; entry == null && i < 500; i++) {
+            Thread.sleep(10);
+            entry = this.store.load(key);
+        }
+        assertNotNull(entry);
+        return entry;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link JSONTableFileCleaner}.
+ *
+ * @version $Id$
+ */
+class JSONTableFileCleanerTest
+{
+    private static final String EXTENSION = ".bin";
+
+    private static final long HOUR = 3600 * 1000L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JSONTableFileCleanerTest.class);
+
+    @TempDir
+    File directory;
+
+    @Test
+    void cleanDeletesTheFilesThatAreTooOld() throws IOException
+    {
+        File oldFile = createFile("old" + EXTENSION, 10, 3 * HOUR);
+        File oldTemporaryFile = createFile("old.tmp", 10, 3 * HOUR);
+        File recentFile = createFile("recent" + EXTENSION, 10, 0);
+        File recentTemporaryFile = createFile("recent.tmp", 10, 0);
+
+        JSONTableFileCleaner.clean(this.directory, EXTENSION, 2 * HOUR, 0, null, LOGGER);
+
+        assertFalse(oldFile.exists());
+        assertFalse(oldTemporaryFile.exists());
+        assertTrue(recentFile.exists());
+        assertTrue(recentTemporaryFile.exists());
+    }
+
+    @Test
+    void cleanDeletesTheLeastRecentlyUsedFilesOverTheBudget() throws IOException
+    {
+        File first = createFile("first" + EXTENSION, 100, 3 * HOUR);
+        File second = createFile("second" + EXTENSION, 100, 2 * HOUR);
+        File third = createFile("third" + EXTENSION, 100, HOUR);
+        // Files that are not part of the cache are not counted in the budget
+        File temporaryFile = createFile("third.tmp", 1000, 0);
+
+        JSONTableFileCleaner.clean(this.directory, EXTENSION, 24 * HOUR, 250, null, LOGGER);
+
+        assertFalse(first.exists());
+        assertTrue(second.exists());
+        assertTrue(third.exists());
+        assertTrue(temporaryFile.exists());
+    }
+
+    @Test
+    void cleanKeepsTheGivenFile() throws IOException
+    {
+        File kept = createFile("kept" + EXTENSION, 300, 3 * HOUR);
+        File other = createFile("other" + EXTENSION, 100, 0);
+
+        JSONTableFileCleaner.clean(this.directory, EXTENSION, HOUR, 250, kept, LOGGER);
+
+        assertTrue(kept.exists());
+        assertFalse(other.exists());
+    }
+
+    @Test
+    void cleanMissingDirectory()
+    {
+        JSONTableFileCleaner.clean(new File(this.directory, "missing"), EXTENSION, HOUR, 1, null, LOGGER);
+
+        assertFalse(new File(this.directory, "missing").exists());
+    }
+
+    private File createFile(String name, int size, long age) throws IOException
+    {
+        File file = new File(this.directory, name);
+        Files.write(file.toPath(), new byte[size]);
+        assertTrue(file.setLastModified(System.currentTimeMillis() - age));
+        return file;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.transformation.MacroTransformationContext;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xwiki.macros.cf.bs.JSONTableMacroParameters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableMacro}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@ComponentList(JSONTableDataHelper.class)
+class JSONTableMacroTest
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String CONTENT = "{\"fruits\": [{\"name\": \"apple\", \"color\": \"red\"}], "
+        + "\"vegetables\": [{\"name\": \"leek\", \"size\": 3}]}";
+
+    private static final String KEY = "key";
+
+    @InjectMockComponents
+    private JSONTableMacro macro;
+
+    @MockComponent
+    private JSONTableDataLoader dataLoader;
+
+    @MockComponent
+    private JSONTableConfiguration configuration;
+
+    private final JSONTableMacroParameters parameters = new JSONTableMacroParameters();
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        when(this.dataLoader.getKey(any())).thenReturn(KEY);
+        when(this.dataLoader.load(any())).thenReturn(new JSONTableDataEntry(OBJECT_MAPPER.readTree(CONTENT)));
+    }
+
+    @Test
+    void executeRendersOneTablePerPath() throws Exception
+    {
+        this.parameters.setPaths("$.fruits[*],$.vegetables[*]");
+
+        List<Block> blocks = this.macro.execute(this.parameters, CONTENT, new MacroTransformationContext());
+
+        assertEquals(2, blocks.size());
+        assertTable(blocks.get(0), "$.fruits[*]", "name", "color");
+        assertTable(blocks.get(1), "$.vegetables[*]", "name", "size");
+        // The source is only loaded once for all the tables
+        verify(this.dataLoader).load(any());
+    }
+
+    @Test
+    void executeWithGivenFieldPaths() throws Exception
+    {
+        this.parameters.setPaths("$.fruits[*],$.vegetables[*]");
+        this.parameters.setFieldPaths("name");
+
+        List<Block> blocks = this.macro.execute(this.parameters, CONTENT, new MacroTransformationContext());
+
+        assertTable(blocks.get(0), "$.fruits[*]", "name");
+        assertTable(blocks.get(1), "$.vegetables[*]", "name");
+    }
+
+    @Test
+    void executeStreamsSinglePathsOnly() throws Exception
+    {
+        when(this.configuration.isStreamingEnabled()).thenReturn(true);
+        this.parameters.setFieldPaths("name");
+
+        this.parameters.setPaths("$.fruits[*]");
+        this.macro.execute(this.parameters, CONTENT, new MacroTransformationContext());
+        this.parameters.setPaths("$.fruits[*],$.vegetables[*]");
+        this.macro.execute(this.parameters, CONTENT, new MacroTransformationContext());
+
+        verify(this.dataLoader).load(argThat(source -> source.getReader() != null));
+        verify(this.dataLoader).load(argThat(source -> source.getReader() == null));
+    }
+
+    private static void assertTable(Block block, String path, String... fieldPaths) throws Exception
+    {
+        MacroBlock macroBlock = (MacroBlock) block;
+        assertEquals("liveData", macroBlock.getId());
+
+        JsonNode query = OBJECT_MAPPER.readTree(macroBlock.getContent()).get("query");
+        assertEquals(OBJECT_MAPPER.valueToTree(Arrays.asList(fieldPaths)), query.get("properties"));
+        assertEquals(path, query.get("source").get("path").asText());
+        assertEquals(KEY, query.get("source").get("cacheKey").asText());
+    }
+}
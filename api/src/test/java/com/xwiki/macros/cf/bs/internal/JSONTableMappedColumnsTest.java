@@ -0,0 +1,180 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link JSONTableMappedColumns}.
+ *
+ * @version $Id$
+ */
+class JSONTableMappedColumnsTest
+{
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    private final Map<String, String> stringPool = new HashMap<>();
+
+    @Test
+    void readLongColumn() throws IOException
+    {
+        JSONTableColumn column = assertRoundTrip(FACTORY.numberNode(Long.MIN_VALUE), null, FACTORY.numberNode(0),
+            FACTORY.nullNode(), FACTORY.numberNode(Long.MAX_VALUE));
+
+        assertTrue(column instanceof JSONTableColumns.LongColumn);
+    }
+
+    @Test
+    void readDoubleColumn() throws IOException
+    {
+        JSONTableColumn column = assertRoundTrip(FACTORY.numberNode(-1.5), FACTORY.numberNode(Double.MAX_VALUE),
+            null, FACTORY.numberNode(0.1));
+
+        assertTrue(column instanceof JSONTableColumns.DoubleColumn);
+    }
+
+    @Test
+    void readDictionaryColumn() throws IOException
+    {
+        String value = "\u00e9t\u00e9";
+        JSONTableColumn column = assertRoundTrip(FACTORY.textNode(value), null, FACTORY.textNode(value),
+            FACTORY.textNode(""), FACTORY.textNode(value), FACTORY.textNode(""));
+
+        assertTrue(column instanceof JSONTableColumns.DictionaryColumn);
+    }
+
+    @Test
+    void readStringColumn() throws IOException
+    {
+        JSONTableColumn column = assertRoundTrip(FACTORY.textNode("a"), null, FACTORY.textNode("\u65e5\u672c"),
+            FACTORY.textNode(""), FACTORY.booleanNode(true));
+
+        assertTrue(column instanceof JSONTableColumns.StringColumn);
+    }
+
+    @Test
+    void readColumnWithoutValues() throws IOException
+    {
+        assertRoundTrip(null, FACTORY.nullNode(), null);
+        assertRoundTrip();
+    }
+
+    @Test
+    void readSuccessiveColumns() throws IOException
+    {
+        JSONTableColumn first = build(FACTORY.numberNode(1), null);
+        JSONTableColumn second = build(FACTORY.textNode("a"), FACTORY.textNode("b"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            JSONTableColumns.write(first, out);
+            JSONTableColumns.write(second, out);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        assertSameValues(first, JSONTableMappedColumns.read(buffer, 2));
+        assertSameValues(second, JSONTableMappedColumns.read(buffer, 2));
+        assertEquals(buffer.limit(), buffer.position());
+    }
+
+    @Test
+    void readTruncatedColumn() throws IOException
+    {
+        byte[] bytes = write(build(FACTORY.numberNode(1), FACTORY.numberNode(2)));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytes.length - 1).slice();
+
+        assertThrows(IOException.class, () -> JSONTableMappedColumns.read(buffer, 2));
+    }
+
+    @Test
+    void readUnknownColumnType()
+    {
+        assertThrows(IOException.class, () -> JSONTableMappedColumns.read(ByteBuffer.wrap(new byte[] {42}), 0));
+    }
+
+    @Test
+    void appendToMappedColumn() throws IOException
+    {
+        JSONTableColumn column = read(build(FACTORY.numberNode(1), null));
+
+        JSONTableColumn result =
+            JSONTableColumns.append(column, new JsonNode[] {FACTORY.numberNode(3), null}, this.stringPool);
+
+        assertSameValues(build(FACTORY.numberNode(1), null, FACTORY.numberNode(3), null), result);
+    }
+
+    private JSONTableColumn assertRoundTrip(JsonNode... values) throws IOException
+    {
+        JSONTableColumn column = build(values);
+        JSONTableColumn mappedColumn = read(column);
+
+        assertEquals(column.getClass().getSuperclass(), mappedColumn.getClass().getSuperclass());
+        assertSameValues(column, mappedColumn);
+        for (int i = 0; i < column.size(); i++) {
+            for (int j = 0; j < column.size(); j++) {
+                if (!column.isNull(i) && !column.isNull(j)) {
+                    assertEquals(Integer.signum(column.compare(i, j)), Integer.signum(mappedColumn.compare(i, j)));
+                }
+            }
+        }
+        return mappedColumn;
+    }
+
+    private void assertSameValues(JSONTableColumn expected, JSONTableColumn actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.isNull(i), actual.isNull(i), String.format("Unexpected null for row [%s]", i));
+            assertEquals(expected.getValue(i), actual.getValue(i), String.format("Unexpected value for row [%s]", i));
+        }
+    }
+
+    private JSONTableColumn build(JsonNode... values)
+    {
+        return JSONTableColumns.build(values, this.stringPool);
+    }
+
+    private JSONTableColumn read(JSONTableColumn column) throws IOException
+    {
+        return JSONTableMappedColumns.read(ByteBuffer.wrap(write(column)), column.size());
+    }
+
+    private byte[] write(JSONTableColumn column) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            JSONTableColumns.write(column, out);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for {@link JSONTableMetrics}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableMetricsTest
+{
+    private static final double DELTA = 0.001;
+
+    @InjectMockComponents
+    private JSONTableMetrics metrics;
+
+    @Test
+    void recordFetchesAndParses()
+    {
+        this.metrics.recordFetch(TimeUnit.MILLISECONDS.toNanos(10), false);
+        this.metrics.recordFetch(TimeUnit.MILLISECONDS.toNanos(30), true);
+        this.metrics.recordParse(TimeUnit.MILLISECONDS.toNanos(4), 1000);
+
+        assertEquals(2, this.metrics.getFetchCount());
+        assertEquals(1, this.metrics.getNotModifiedCount());
+        assertEquals(20, this.metrics.getFetchAverageTime(), DELTA);
+        assertEquals(30, this.metrics.getFetchMaxTime(), DELTA);
+        assertEquals(1, this.metrics.getParseCount());
+        assertEquals(4, this.metrics.getParseAverageTime(), DELTA);
+        assertEquals(1000, this.metrics.getBytesDownloaded());
+    }
+
+    @Test
+    void recordCacheLookupsAndRemovals()
+    {
+        this.metrics.recordCacheLookup(true);
+        this.metrics.recordCacheLookup(true);
+        this.metrics.recordCacheLookup(true);
+        this.metrics.recordCacheLookup(false);
+        this.metrics.recordCacheRemoval();
+        this.metrics.recordCacheRemoval();
+        this.metrics.recordCacheInvalidation();
+
+        assertEquals(3, this.metrics.getCacheHitCount());
+        assertEquals(1, this.metrics.getCacheMissCount());
+        assertEquals(0.75, this.metrics.getCacheHitRatio(), DELTA);
+        // Invalidated entries are not evicted
+        assertEquals(1, this.metrics.getCacheEvictionCount());
+    }
+
+    @Test
+    void recordProjectionsAndLiveDataRequests()
+    {
+        this.metrics.recordProjection(TimeUnit.MILLISECONDS.toNanos(8), 500);
+        this.metrics.recordLiveDataRequest(TimeUnit.MILLISECONDS.toNanos(2), 100, 10, 400);
+        this.metrics.recordLiveDataRequest(TimeUnit.MILLISECONDS.toNanos(6), 50, 5, 200);
+
+        assertEquals(1, this.metrics.getProjectionCount());
+        assertEquals(8, this.metrics.getProjectionAverageTime(), DELTA);
+        assertEquals(500, this.metrics.getRowsProjected());
+        assertEquals(2, this.metrics.getLiveDataRequestCount());
+        assertEquals(4, this.metrics.getLiveDataRequestAverageTime(), DELTA);
+        assertEquals(6, this.metrics.getLiveDataRequestMaxTime(), DELTA);
+        assertEquals(150, this.metrics.getRowsFiltered());
+        assertEquals(15, this.metrics.getRowsReturned());
+        assertEquals(600, this.metrics.getResponseSize());
+        assertEquals(300, this.metrics.getResponseAverageSize(), DELTA);
+        assertEquals(400, this.metrics.getResponseMaxSize());
+    }
+
+    @Test
+    void reset()
+    {
+        this.metrics.recordMacroExecution(TimeUnit.MILLISECONDS.toNanos(5));
+        this.metrics.recordCacheLookup(true);
+        this.metrics.recordLiveDataRequest(TimeUnit.MILLISECONDS.toNanos(2), 100, 10, 400);
+
+        this.metrics.reset();
+
+        assertEquals(0, this.metrics.getMacroExecutionCount());
+        assertEquals(0, this.metrics.getMacroExecutionMaxTime(), DELTA);
+        assertEquals(0, this.metrics.getCacheHitRatio(), DELTA);
+        assertEquals(0, this.metrics.getLiveDataRequestCount());
+        assertEquals(0, this.metrics.getResponseSize());
+        assertEquals(0, this.metrics.getResponseAverageSize(), DELTA);
+        assertEquals(0, this.metrics.getResponseMaxSize());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableProjector}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@ComponentList(JSONTableDataHelper.class)
+class JSONTableProjectorTest
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String PATH = "$[*]";
+
+    private static final List<String> FIELD_PATHS = Arrays.asList("id", "name", "address.city");
+
+    @InjectMockComponents
+    private JSONTableProjector projector;
+
+    @MockComponent
+    private JSONTableConfiguration configuration;
+
+    @BeforeComponent
+    void configure()
+    {
+        when(this.configuration.getProjectionParallelism()).thenReturn(4);
+        when(this.configuration.getProjectionParallelThreshold()).thenReturn(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void project() throws Exception
+    {
+        JsonNode node = OBJECT_MAPPER.readTree("[{\"id\": 1, \"name\": \"alice\", \"address\": {\"city\": \"Paris\"}}, "
+            + "{\"id\": 2, \"address\": null}, {\"id\": 3, \"name\": \"bob\", \"address\": {\"city\": \"Rome\"}}]");
+
+        JSONTableProjection projection = this.projector.project(PATH, FIELD_PATHS, node, "v1");
+
+        assertEquals(3, projection.getRowCount());
+        assertEquals(FIELD_PATHS, projection.getFieldPaths());
+        assertEquals("v1", projection.getVersion());
+        assertEquals("2", projection.getColumn("id").getValue(1));
+        assertEquals("bob", projection.getColumn("name").getValue(2));
+        assertNull(projection.getColumn("name").getValue(1));
+        assertEquals("Paris", projection.getColumn("address.city").getValue(0));
+        assertNull(projection.getColumn("address.city").getValue(1));
+    }
+
+    @Test
+    void projectWithoutRows() throws Exception
+    {
+        JSONTableProjection projection =
+            this.projector.project("$.rows[*]", FIELD_PATHS, OBJECT_MAPPER.readTree("{}"), null);
+
+        assertEquals(0, projection.getRowCount());
+        assertEquals(0, projection.getColumn("id").size());
+    }
+
+    @Test
+    void projectInParallel()
+    {
+        ArrayNode node = JsonNodeFactory.instance.arrayNode();
+        for (int i = 0; i < 5000; i++) {
+            ObjectNode row = node.addObject();
+            row.put("id", i);
+            if (i % 3 != 0) {
+                row.put("name", "name " + (i % 100));
+            }
+            row.putObject("address").put("city", "city " + (i % 7));
+        }
+        JSONTableProjection sequentialProjection = this.projector.project(PATH, FIELD_PATHS, node, null);
+
+        when(this.configuration.getProjectionParallelThreshold()).thenReturn(100);
+        JSONTableProjection parallelProjection = this.projector.project(PATH, FIELD_PATHS, node, null);
+
+        // The rows are split in several chunks but keep the order of the source
+        assertEquals(5000, parallelProjection.getRowCount());
+        for (int j = 0; j < FIELD_PATHS.size(); j++) {
+            for (int i = 0; i < 5000; i++) {
+                assertEquals(sequentialProjection.getColumn(j).getValue(i),
+                    parallelProjection.getColumn(j).getValue(i));
+            }
+        }
+        assertEquals("4999", parallelProjection.getColumn("id").getValue(4999));
+        assertEquals("name 97", parallelProjection.getColumn("name").getValue(4997));
+        assertNull(parallelProjection.getColumn("name").getValue(4998));
+    }
+}
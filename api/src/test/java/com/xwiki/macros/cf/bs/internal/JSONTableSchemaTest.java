@@ -0,0 +1,152 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xwiki.macros.cf.bs.internal.JSONTableSchema.Type;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link JSONTableSchema}.
+ *
+ * @version $Id$
+ */
+class JSONTableSchemaTest
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String NAME = "name";
+
+    @Test
+    void inferTypes() throws Exception
+    {
+        JSONTableSchema schema = infer(0, "{\"name\": \"Alice\", \"age\": 30, \"active\": true, "
+            + "\"birth\": \"1990-01-02\", \"seen\": \"2021-06-01T10:20:30Z\"}");
+
+        assertEquals(Arrays.asList(NAME, "age", "active", "birth", "seen"), schema.getFieldPaths());
+        assertEquals(Type.STRING, schema.getType(NAME));
+        assertEquals(Type.NUMBER, schema.getType("age"));
+        assertEquals(Type.BOOLEAN, schema.getType("active"));
+        assertEquals(Type.DATE, schema.getType("birth"));
+        assertEquals(Type.DATE, schema.getType("seen"));
+        assertEquals(Type.STRING, schema.getType("unknown"));
+    }
+
+    @Test
+    void inferMixedTypesFallsBackToString() throws Exception
+    {
+        JSONTableSchema schema = infer(0, "{\"a\": 1, \"b\": true, \"c\": \"2020-01-01\", \"d\": 2}",
+            "{\"a\": \"one\", \"b\": 0, \"c\": \"soon\", \"d\": 3.5}");
+
+        assertEquals(Type.STRING, schema.getType("a"));
+        assertEquals(Type.STRING, schema.getType("b"));
+        assertEquals(Type.STRING, schema.getType("c"));
+        // Integers and decimals are both numbers
+        assertEquals(Type.NUMBER, schema.getType("d"));
+    }
+
+    @Test
+    void inferNullOnlyColumns() throws Exception
+    {
+        JSONTableSchema schema = infer(0, "{\"a\": null, \"b\": null}", "{\"a\": null, \"b\": 5}",
+            "{\"a\": null, \"b\": null}");
+
+        // Columns without any value are kept, as strings, and null values don't change the type of the others
+        assertEquals(Arrays.asList("a", "b"), schema.getFieldPaths());
+        assertEquals(Type.STRING, schema.getType("a"));
+        assertEquals(Type.NUMBER, schema.getType("b"));
+    }
+
+    @Test
+    void inferNestedFields() throws Exception
+    {
+        JSONTableSchema schema = infer(0, "{\"id\": 1, \"address\": {\"city\": \"Paris\", \"geo\": {\"lat\": 48.8}, "
+            + "\"tags\": [\"a\"], \"x.y\": 1}, \"top.level\": true}", "[1, 2]", "\"value\"");
+
+        // Arrays, non object rows and nested field names containing dots are ignored
+        assertEquals(Arrays.asList("id", "address.city", "address.geo.lat", "top.level"), schema.getFieldPaths());
+        assertEquals(Type.NUMBER, schema.getType("address.geo.lat"));
+        assertEquals(Type.BOOLEAN, schema.getType("top.level"));
+    }
+
+    @Test
+    void inferNestedFieldsUpToTheMaximumDepth() throws Exception
+    {
+        StringBuilder json = new StringBuilder();
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            json.append("{\"leaf\": ").append(i).append(", \"n\": ");
+            path.append("n.");
+        }
+        json.append("{}");
+        for (int i = 0; i < 20; i++) {
+            json.append('}');
+        }
+
+        List<String> fieldPaths = infer(0, json.toString()).getFieldPaths();
+
+        // The leaves of the 16 nested objects below the row are found, not the deeper ones
+        assertEquals(17, fieldPaths.size());
+        assertEquals("leaf", fieldPaths.get(0));
+        assertEquals(path.substring(0, 32) + "leaf", fieldPaths.get(16));
+        assertFalse(fieldPaths.contains(path.substring(0, 34) + "leaf"));
+    }
+
+    @Test
+    void inferFromSample() throws Exception
+    {
+        List<JsonNode> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(OBJECT_MAPPER.readTree(String.format("{\"c%d\": %d}", i, i)));
+        }
+
+        Enumeration<JsonNode> enumeration = Collections.enumeration(rows);
+        assertEquals(Arrays.asList("c0", "c1"), JSONTableSchema.infer(enumeration, 2).getFieldPaths());
+        // The rows after the sample are not read
+        assertTrue(enumeration.hasMoreElements());
+        assertEquals(rows.get(2), enumeration.nextElement());
+
+        assertEquals(Arrays.asList("c0", "c1", "c2", "c3", "c4"),
+            JSONTableSchema.infer(Collections.enumeration(rows), 0).getFieldPaths());
+        assertEquals(5, JSONTableSchema.infer(Collections.enumeration(rows), -1).getFieldPaths().size());
+        assertEquals(5, JSONTableSchema.infer(Collections.enumeration(rows), 10).getFieldPaths().size());
+    }
+
+    private static JSONTableSchema infer(int sampleSize, String... rows) throws Exception
+    {
+        List<JsonNode> nodes = new ArrayList<>();
+        for (String row : rows) {
+            nodes.add(OBJECT_MAPPER.readTree(row));
+        }
+        return JSONTableSchema.infer(Collections.enumeration(nodes), sampleSize);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.xwiki.macros.cf.bs.BSMacroException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableSourceFetcher}, fetching the sources from a local HTTP server.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableSourceFetcherTest
+{
+    private static final String JSON = "{\"rows\": [1, 2, 3]}";
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final String CACHE_CONTROL = "Cache-Control";
+
+    private static final long MAX_BODY_SIZE = 1000;
+
+    @InjectMockComponents
+    private JSONTableSourceFetcher fetcher;
+
+    @MockComponent
+    private JSONTableConfiguration configuration;
+
+    @MockComponent
+    private JSONTableMetrics metrics;
+
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+    private HttpServer server;
+
+    private URL url;
+
+    private volatile HttpHandler handler;
+
+    @BeforeComponent
+    void configure()
+    {
+        when(this.configuration.getHTTPSocketTimeout()).thenReturn(500);
+        when(this.configuration.getHTTPMaxConnections()).thenReturn(10);
+        when(this.configuration.getHTTPMaxConnectionsPerRoute()).thenReturn(10);
+        when(this.configuration.getHTTPKeepAlive()).thenReturn(1000L);
+        when(this.configuration.getHTTPMaxBodySize()).thenReturn(MAX_BODY_SIZE);
+        when(this.configuration.getCacheSoftTTL()).thenReturn(300L);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", exchange -> {
+            try {
+                this.handler.handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        this.server.setExecutor(this.serverExecutor);
+        this.server.start();
+        this.url = new URL(String.format("http://localhost:%d/data.json", this.server.getAddress().getPort()));
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void fetch() throws Exception
+    {
+        this.handler = exchange -> {
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.getResponseHeaders().set(CACHE_CONTROL, "max-age=60");
+            send(exchange, 200, JSON, false);
+        };
+
+        long start = System.currentTimeMillis();
+        JSONTableDataEntry entry = this.fetcher.fetch(this.url, null, null);
+
+        assertEquals(3, entry.getNode().get("rows").size());
+        assertEquals(ETAG, entry.getETag());
+        assertNull(entry.getLastModified());
+        assertTrue(entry.getExpirationTime() >= start + TimeUnit.SECONDS.toMillis(60));
+        assertTrue(entry.getExpirationTime() < start + TimeUnit.SECONDS.toMillis(300));
+        verify(this.metrics).recordFetch(anyLong(), eq(false));
+    }
+
+    @Test
+    void fetchWithoutCaching() throws Exception
+    {
+        this.handler = exchange -> {
+            exchange.getResponseHeaders().set(CACHE_CONTROL, "no-cache");
+            send(exchange, 200, JSON, true);
+        };
+
+        assertTrue(this.fetcher.fetch(this.url, null, null).isExpired());
+    }
+
+    @Test
+    void fetchNotModifiedSource() throws Exception
+    {
+        JSONTableDataEntry previousEntry = new JSONTableDataEntry(new TextNode("previous"), ETAG, null, 0, 0);
+        this.handler = exchange -> {
+            assertEquals(ETAG, exchange.getRequestHeaders().getFirst("If-None-Match"));
+            send(exchange, 304, null, false);
+        };
+
+        JSONTableDataEntry entry = this.fetcher.fetch(this.url, previousEntry, null);
+
+        // The data doesn't need to be parsed again, and keeps its version since its validators didn't change
+        assertSame(previousEntry.getNode(), entry.getNode());
+        assertEquals(previousEntry.getVersion(), entry.getVersion());
+        assertTrue(entry.getValidationTime() > 0);
+        assertFalse(entry.isExpired());
+    }
+
+    @Test
+    void fetchNotModifiedSourceWithNewValidators() throws Exception
+    {
+        JSONTableDataEntry previousEntry = new JSONTableDataEntry(new TextNode("previous"), ETAG, null, 0, 0);
+        this.handler = exchange -> {
+            exchange.getResponseHeaders().set("ETag", "\"v2\"");
+            send(exchange, 304, null, false);
+        };
+
+        JSONTableDataEntry entry = this.fetcher.fetch(this.url, previousEntry, null);
+
+        assertSame(previousEntry.getNode(), entry.getNode());
+        assertEquals("\"v2\"", entry.getETag());
+        assertNotEquals(previousEntry.getVersion(), entry.getVersion());
+    }
+
+    @Test
+    void fetchInvalidResponse()
+    {
+        this.handler = exchange -> send(exchange, 500, "error", false);
+
+        assertThrows(BSMacroException.class, () -> this.fetcher.fetch(this.url, null, null));
+    }
+
+    @Test
+    void fetchSourceDeclaringTooLargeContents()
+    {
+        this.handler = exchange -> send(exchange, 200, largeJSON(), false);
+
+        BSMacroException exception =
+            assertThrows(BSMacroException.class, () -> this.fetcher.fetch(this.url, null, null));
+        assertTrue(exception.getMessage().contains("exceed the maximum allowed size"));
+    }
+
+    @Test
+    void fetchSourceStreamingTooLargeContents()
+    {
+        // Without a content length, the size is only known while reading the contents
+        this.handler = exchange -> send(exchange, 200, largeJSON(), true);
+
+        BSMacroException exception =
+            assertThrows(BSMacroException.class, () -> this.fetcher.fetch(this.url, null, null));
+        assertTrue(exception.getMessage().contains("exceed the maximum allowed size"));
+    }
+
+    @Test
+    void fetchSlowSource()
+    {
+        this.handler = exchange -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            send(exchange, 200, JSON, false);
+        };
+
+        assertThrows(SocketTimeoutException.class, () -> this.fetcher.fetch(this.url, null, null));
+    }
+
+    private static String largeJSON()
+    {
+        StringBuilder json = new StringBuilder("[");
+        while (json.length() <= MAX_BODY_SIZE) {
+            json.append("\"value\", ");
+        }
+        return json.append("\"value\"]").toString();
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, String body, boolean chunked) throws IOException
+    {
+        if (body == null) {
+            exchange.sendResponseHeaders(statusCode, -1);
+            return;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, chunked ? 0 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException e) {
+            // The client may close the connection without reading the whole response
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link JSONTableStreamingReader}.
+ *
+ * @version $Id$
+ */
+class JSONTableStreamingReaderTest
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String DOCUMENT = "{"
+        + "\"meta\": {\"count\": 4, \"items\": [\"not\", \"these\"]},"
+        + "\"data\": {"
+        + "  \"ignored\": [{\"name\": \"ignored\"}],"
+        + "  \"items\": ["
+        + "    {\"id\": 1, \"name\": \"Alice\", \"address\": {\"city\": \"Paris\", \"zip\": \"75001\"},"
+        + "      \"tags\": [\"a\", \"b\"], \"extra\": {\"deep\": [1, 2, 3]}},"
+        + "    {\"id\": 2, \"name\": null, \"address\": \"unknown\", \"tags\": []},"
+        + "    {\"id\": 3.5, \"address\": {\"zip\": \"69001\", \"city\": {\"name\": \"Lyon\"}}, \"name\": \"Bob\"},"
+        + "    42,"
+        + "    {}"
+        + "  ],"
+        + "  \"after\": true"
+        + "}}";
+
+    private final JSONTableDataHelper dataHelper = new JSONTableDataHelper();
+
+    @Test
+    void readKeepsTheValuesOfTheFieldPaths() throws IOException
+    {
+        List<String> fieldPaths = Arrays.asList("id", "name", "$.address.city", "tags", "missing");
+
+        assertEquivalent("$.data.items[*]", "/data/items", fieldPaths, DOCUMENT);
+    }
+
+    @Test
+    void readKeepsTheWholeValueOfAFieldAlsoUsedAsParent() throws IOException
+    {
+        List<String> fieldPaths = Arrays.asList("address.city", "address", "extra.deep");
+
+        assertEquivalent("data.items[*]", "/data/items", fieldPaths, DOCUMENT);
+    }
+
+    @Test
+    void readDropsTheValuesThatAreNotNeeded() throws IOException
+    {
+        JSONTableStreamingReader reader = JSONTableStreamingReader.of("$.data.items[*]", Arrays.asList("name"));
+
+        JsonNode result = read(reader, DOCUMENT);
+
+        assertEquals(OBJECT_MAPPER.readTree("{\"data\": {\"items\": [{\"name\": \"Alice\"}, {\"name\": null},"
+            + " {\"name\": \"Bob\"}, 42, {}]}}"), result);
+    }
+
+    @Test
+    void readRootArray() throws IOException
+    {
+        String document = "[{\"a\": {\"b\": 1}, \"c\": 2}, {\"a\": [1]}, \"text\"]";
+
+        assertEquivalent("$[*]", "", Arrays.asList("a.b", "c"), document);
+    }
+
+    @Test
+    void readWithoutTheTargetArray() throws IOException
+    {
+        JSONTableStreamingReader reader = JSONTableStreamingReader.of("$.data.rows[*]", Arrays.asList("name"));
+
+        JsonNode result = read(reader, DOCUMENT);
+
+        assertTrue(result.at("/data/rows").isMissingNode());
+        assertTrue(OBJECT_MAPPER.readTree(DOCUMENT).at("/data/rows").isMissingNode());
+    }
+
+    @Test
+    void readWhenTheTargetIsNotAnArray() throws IOException
+    {
+        JSONTableStreamingReader reader = JSONTableStreamingReader.of("$.meta.count[*]", Arrays.asList("name"));
+
+        JsonNode result = read(reader, DOCUMENT);
+
+        assertEquals(OBJECT_MAPPER.readTree(DOCUMENT).at("/meta/count"), result.at("/meta/count"));
+    }
+
+    @Test
+    void ofReturnsNullForComplexPaths()
+    {
+        assertNull(JSONTableStreamingReader.of("$.data.items", Arrays.asList("name")));
+        assertNull(JSONTableStreamingReader.of("$.data.items[0]", Arrays.asList("name")));
+        assertNull(JSONTableStreamingReader.of("$..items[*]", Arrays.asList("name")));
+        assertNull(JSONTableStreamingReader.of("$.data.items[*]", Arrays.asList("name", "tags[0]")));
+        assertNull(JSONTableStreamingReader.of("$.data.items[*]", Collections.emptyList()));
+        assertNotNull(JSONTableStreamingReader.of("$.data.items[*]", Arrays.asList("name", "$.address.city")));
+    }
+
+    @Test
+    void getKeyDependsOnThePaths()
+    {
+        String key = JSONTableStreamingReader.of("$.data.items[*]", Arrays.asList("name", "id")).getKey();
+
+        assertEquals(key, JSONTableStreamingReader.of("$.data.items[*]", Arrays.asList("name", "id")).getKey());
+        assertFalse(key.equals(JSONTableStreamingReader.of("$.data.items[*]", Arrays.asList("name")).getKey()));
+        assertFalse(key.equals(JSONTableStreamingReader.of("$.items[*]", Arrays.asList("name", "id")).getKey()));
+    }
+
+    /**
+     * Check that resolving the field paths on the rows read in streaming mode gives the same values as resolving
+     * them on the rows of the whole document.
+     */
+    private void assertEquivalent(String path, String rowsPointer, List<String> fieldPaths, String document)
+        throws IOException
+    {
+        JSONTableStreamingReader reader = JSONTableStreamingReader.of(path, fieldPaths);
+        assertNotNull(reader);
+
+        JsonNode expectedRows = OBJECT_MAPPER.readTree(document).at(rowsPointer);
+        JsonNode actualRows = read(reader, document).at(rowsPointer);
+
+        assertEquals(expectedRows.size(), actualRows.size());
+        for (int i = 0; i < expectedRows.size(); i++) {
+            for (String fieldPath : fieldPaths) {
+                assertEquals(getValue(fieldPath, expectedRows.get(i)), getValue(fieldPath, actualRows.get(i)),
+                    String.format("Unexpected value for [%s] in row [%s]", fieldPath, i));
+            }
+        }
+    }
+
+    private JsonNode getValue(String fieldPath, JsonNode row)
+    {
+        Enumeration<JsonNode> values = this.dataHelper.applyPath(fieldPath, row);
+        return values.hasMoreElements() ? values.nextElement() : null;
+    }
+
+    private JsonNode read(JSONTableStreamingReader reader, String document) throws IOException
+    {
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(document)) {
+            return reader.read(parser);
+        }
+    }
+}
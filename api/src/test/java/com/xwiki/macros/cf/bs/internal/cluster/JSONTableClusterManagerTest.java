@@ -0,0 +1,290 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.xwiki.macros.cf.bs.internal.JSONTableConfiguration;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataCache;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataEntry;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataStore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableClusterManager}, simulating a cluster whose members forward their events to each
+ * other through their {@link JSONTableClusterListener}.
+ *
+ * @version $Id$
+ */
+class JSONTableClusterManagerTest
+{
+    private static final String KEY = "key";
+
+    private static final long TIMEOUT = 10000L;
+
+    private final List<Member> members = new ArrayList<>();
+
+    private final JSONTableDataEntry entry =
+        new JSONTableDataEntry(new TextNode("value"), "\"1\"", null, 1000L, Long.MAX_VALUE);
+
+    /**
+     * A member of the simulated cluster.
+     */
+    private final class Member
+    {
+        private final JSONTableClusterManager manager = new JSONTableClusterManager();
+
+        private final JSONTableClusterListener listener = new JSONTableClusterListener();
+
+        private final JSONTableDataCache dataCache = mock(JSONTableDataCache.class);
+
+        private final JSONTableDataStore dataStore = mock(JSONTableDataStore.class);
+
+        private final JSONTableConfiguration configuration = mock(JSONTableConfiguration.class);
+
+        private final List<Event> sentEvents = new CopyOnWriteArrayList<>();
+
+        Member() throws Exception
+        {
+            when(this.configuration.isClusterEnabled()).thenReturn(true);
+            when(this.configuration.getClusterTimeout()).thenReturn(TIMEOUT);
+            when(this.configuration.getClusterMaxPayloadSize()).thenReturn(1024L * 1024);
+
+            ObservationManager observationManager = mock(ObservationManager.class);
+            doAnswer(invocation -> {
+                Event event = invocation.getArgument(0);
+                this.sentEvents.add(event);
+                broadcast(this, event);
+                return null;
+            }).when(observationManager).notify(any(Event.class), any(), any());
+
+            ReflectionUtils.setFieldValue(this.manager, "observationManagerProvider",
+                (Provider<ObservationManager>) () -> observationManager);
+            ReflectionUtils.setFieldValue(this.manager, "jsonTableDataCache", this.dataCache);
+            ReflectionUtils.setFieldValue(this.manager, "jsonTableDataStore", this.dataStore);
+            ReflectionUtils.setFieldValue(this.manager, "configuration", this.configuration);
+            ReflectionUtils.setFieldValue(this.manager, "logger", mock(Logger.class));
+            this.manager.initialize();
+
+            // The events received by the listener always come from another member
+            RemoteObservationManagerContext remoteContext = mock(RemoteObservationManagerContext.class);
+            when(remoteContext.isRemoteState()).thenReturn(true);
+            ReflectionUtils.setFieldValue(this.listener, "remoteObservationManagerContext", remoteContext);
+            ReflectionUtils.setFieldValue(this.listener, "clusterManagerProvider",
+                (Provider<JSONTableClusterManager>) () -> this.manager);
+
+            JSONTableClusterManagerTest.this.members.add(this);
+        }
+
+        long countSentEvents(Class<? extends Event> type)
+        {
+            return this.sentEvents.stream().filter(type::isInstance).count();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        for (Member member : this.members) {
+            member.manager.dispose();
+        }
+    }
+
+    @Test
+    void requestDataWithoutAnnouncement() throws Exception
+    {
+        Member requester = new Member();
+        Member holder = new Member();
+        when(holder.dataCache.get(KEY)).thenReturn(this.entry);
+
+        long start = System.currentTimeMillis();
+        assertNull(requester.manager.requestData(KEY));
+
+        // No member has announced the data, so the requester doesn't wait for a response
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT / 2);
+        assertTrue(requester.sentEvents.isEmpty());
+    }
+
+    @Test
+    void requestDataFromTheMemberHavingAnnouncedIt() throws Exception
+    {
+        Member requester = new Member();
+        Member holder = new Member();
+        when(holder.dataCache.get(KEY)).thenReturn(this.entry);
+        holder.manager.notifyAvailable(KEY);
+
+        JSONTableDataEntry result = requester.manager.requestData(KEY);
+
+        assertEquals(this.entry.getNode(), result.getNode());
+        assertEquals(this.entry.getVersion(), result.getVersion());
+        assertEquals(this.entry.getValidationTime(), result.getValidationTime());
+    }
+
+    @Test
+    void requestDataIsAnsweredByASingleMember() throws Exception
+    {
+        Member requester = new Member();
+        Member firstHolder = new Member();
+        Member secondHolder = new Member();
+        when(firstHolder.dataCache.get(KEY)).thenReturn(this.entry);
+        when(secondHolder.dataCache.get(KEY)).thenReturn(this.entry);
+        firstHolder.manager.notifyAvailable(KEY);
+        secondHolder.manager.notifyAvailable(KEY);
+
+        assertEquals(this.entry.getNode(), requester.manager.requestData(KEY).getNode());
+
+        // Only the member that has announced the data most recently sends it
+        assertEquals(0, firstHolder.countSentEvents(JSONTableDataResponseEvent.class));
+        assertEquals(1, secondHolder.countSentEvents(JSONTableDataResponseEvent.class));
+    }
+
+    @Test
+    void requestDataEvictedFromTheMemberHavingAnnouncedIt() throws Exception
+    {
+        Member requester = new Member();
+        Member holder = new Member();
+        holder.manager.notifyAvailable(KEY);
+
+        long start = System.currentTimeMillis();
+        assertNull(requester.manager.requestData(KEY));
+
+        // The member answers that it doesn't have the data anymore instead of letting the requester wait
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT / 2);
+        assertEquals(1, holder.countSentEvents(JSONTableDataResponseEvent.class));
+
+        // The member is not asked again until it announces the data again
+        assertNull(requester.manager.requestData(KEY));
+        assertEquals(1, requester.countSentEvents(JSONTableDataRequestEvent.class));
+    }
+
+    @Test
+    void requestDataTooLargeToBeSent() throws Exception
+    {
+        Member requester = new Member();
+        Member holder = new Member();
+        when(holder.configuration.getClusterMaxPayloadSize()).thenReturn(10L);
+        when(holder.dataCache.get(KEY)).thenReturn(this.entry);
+        holder.manager.notifyAvailable(KEY);
+
+        long start = System.currentTimeMillis();
+        assertNull(requester.manager.requestData(KEY));
+
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT / 2);
+    }
+
+    @Test
+    void requestDataWhenDisabled() throws Exception
+    {
+        Member requester = new Member();
+        Member holder = new Member();
+        when(holder.dataCache.get(KEY)).thenReturn(this.entry);
+        holder.manager.notifyAvailable(KEY);
+        when(requester.configuration.isClusterEnabled()).thenReturn(false);
+
+        assertNull(requester.manager.requestData(KEY));
+        assertTrue(requester.sentEvents.isEmpty());
+    }
+
+    @Test
+    void invalidationOfAnotherVersion() throws Exception
+    {
+        Member member = new Member();
+        Member otherMember = new Member();
+        when(otherMember.dataCache.get(KEY)).thenReturn(this.entry);
+
+        member.manager.notifyInvalidation(KEY,
+            new JSONTableDataEntry(new TextNode("new value"), "\"2\"", null, 2000L, Long.MAX_VALUE));
+
+        verify(otherMember.dataCache).remove(KEY);
+        verify(otherMember.dataStore).remove(KEY);
+    }
+
+    @Test
+    void invalidationOfTheSameVersion() throws Exception
+    {
+        Member member = new Member();
+        Member otherMember = new Member();
+        when(otherMember.dataCache.get(KEY)).thenReturn(this.entry);
+
+        // Both members have revalidated the same version of the data
+        member.manager.notifyInvalidation(KEY,
+            new JSONTableDataEntry(new TextNode("value"), "\"1\"", null, 2000L, Long.MAX_VALUE));
+
+        verify(otherMember.dataCache, never()).remove(KEY);
+        verify(otherMember.dataStore, never()).remove(KEY);
+    }
+
+    @Test
+    void invalidationOfAnOlderVersion() throws Exception
+    {
+        Member member = new Member();
+        Member otherMember = new Member();
+        when(otherMember.dataCache.get(KEY)).thenReturn(this.entry);
+
+        // The other member has revalidated its data after the current member
+        member.manager.notifyInvalidation(KEY, new JSONTableDataEntry(new TextNode("old value"), null, null, 500L,
+            Long.MAX_VALUE));
+
+        verify(otherMember.dataCache, never()).remove(KEY);
+    }
+
+    @Test
+    void invalidationMakesTheSenderTheMemberToAsk() throws Exception
+    {
+        Member requester = new Member();
+        Member holder = new Member();
+        when(holder.dataCache.get(KEY)).thenReturn(this.entry);
+
+        holder.manager.notifyInvalidation(KEY, this.entry);
+
+        assertEquals(this.entry.getNode(), requester.manager.requestData(KEY).getNode());
+    }
+
+    private void broadcast(Member sender, Event event)
+    {
+        for (Member member : this.members) {
+            if (member != sender) {
+                member.listener.onEvent(event, null, null);
+            }
+        }
+    }
+}
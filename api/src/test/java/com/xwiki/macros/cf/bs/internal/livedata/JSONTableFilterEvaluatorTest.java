@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.livedata;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.livedata.LiveDataQuery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.xwiki.macros.cf.bs.internal.JSONTableColumn;
+import com.xwiki.macros.cf.bs.internal.JSONTableColumns;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Unit tests for {@link JSONTableFilterEvaluator}.
+ *
+ * @version $Id$
+ */
+class JSONTableFilterEvaluatorTest
+{
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    private static final String NAME = "name";
+
+    private static final String COUNT = "count";
+
+    private static final String DATE = "date";
+
+    private static final String EQUALS = "equals";
+
+    private final JSONTableProjection projection = projection(
+        column(FACTORY.textNode("Alice"), FACTORY.textNode("Bob"), FACTORY.textNode("alicia"),
+            FACTORY.textNode("Charlie")),
+        column(FACTORY.numberNode(10), FACTORY.numberNode(2), null, FACTORY.numberNode(7)),
+        column(FACTORY.textNode("2020-01-15"), FACTORY.textNode("2021-06-01T12:00:00Z"), null,
+            FACTORY.textNode("2019-12-31")));
+
+    @Test
+    void stringOperators()
+    {
+        assertArrayEquals(new int[] {0, 2}, evaluate(NAME, "contains", "lic"));
+        assertArrayEquals(new int[] {0}, evaluate(NAME, "startsWith", "Al"));
+        assertArrayEquals(new int[] {1}, evaluate(NAME, EQUALS, "Bob"));
+        assertArrayEquals(new int[] {}, evaluate(NAME, EQUALS, "bob"));
+    }
+
+    @Test
+    void numberOperators()
+    {
+        // Numbers are compared by value, whatever the way they are written
+        assertArrayEquals(new int[] {0}, evaluate(COUNT, EQUALS, "10.0"));
+        assertArrayEquals(new int[] {1}, evaluate(COUNT, "less", "7"));
+        assertArrayEquals(new int[] {0}, evaluate(COUNT, "greater", "7"));
+        // Missing values never match
+        assertArrayEquals(new int[] {0, 1, 3}, evaluate(COUNT, "greater", "-1"));
+    }
+
+    @Test
+    void dateOperators()
+    {
+        assertArrayEquals(new int[] {0, 1}, evaluate(DATE, "after", "2020-01-01"));
+        assertArrayEquals(new int[] {3}, evaluate(DATE, "before", "1577836800000"));
+        assertArrayEquals(new int[] {0}, evaluate(DATE, "between", "2020-01-01/2020-12-31"));
+        assertArrayEquals(new int[] {}, evaluate(DATE, "between", "2020-01-01/tomorrow"));
+        assertArrayEquals(new int[] {}, evaluate(DATE, "after", "tomorrow"));
+    }
+
+    @Test
+    void filtersMatchingAllRows()
+    {
+        // Unsupported operators are ignored
+        assertArrayEquals(new int[] {0, 1, 2, 3}, evaluate(NAME, "matches", "x"));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, JSONTableFilterEvaluator.getMatchingRows(this.projection,
+            Collections.emptyList()));
+    }
+
+    @Test
+    void filterOnMissingProperty()
+    {
+        assertArrayEquals(new int[] {}, evaluate("missing", EQUALS, "Alice"));
+    }
+
+    @Test
+    void severalFilters()
+    {
+        List<LiveDataQuery.Filter> filters = Arrays.asList(new LiveDataQuery.Filter(NAME, "contains", "li"),
+            new LiveDataQuery.Filter(COUNT, "greater", "5"));
+
+        assertArrayEquals(new int[] {0, 3}, JSONTableFilterEvaluator.getMatchingRows(this.projection, filters));
+    }
+
+    @Test
+    void severalConstraints()
+    {
+        LiveDataQuery.Filter filter = new LiveDataQuery.Filter(NAME, EQUALS, "Alice");
+        filter.getConstraints().add(new LiveDataQuery.Constraint("Bob", EQUALS));
+
+        assertArrayEquals(new int[] {0, 1},
+            JSONTableFilterEvaluator.getMatchingRows(this.projection, Collections.singletonList(filter)));
+
+        filter.setMatchAll(true);
+        assertArrayEquals(new int[] {},
+            JSONTableFilterEvaluator.getMatchingRows(this.projection, Collections.singletonList(filter)));
+    }
+
+    private int[] evaluate(String property, String operator, String value)
+    {
+        return JSONTableFilterEvaluator.getMatchingRows(this.projection,
+            Collections.singletonList(new LiveDataQuery.Filter(property, operator, value)));
+    }
+
+    private static JSONTableColumn column(JsonNode... values)
+    {
+        return JSONTableColumns.build(values, new HashMap<>());
+    }
+
+    private static JSONTableProjection projection(JSONTableColumn... columns)
+    {
+        return new JSONTableProjection(null, null, Arrays.asList(NAME, COUNT, DATE), columns, columns[0].size());
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.livedata;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.livedata.LiveData;
+import org.xwiki.livedata.LiveDataException;
+import org.xwiki.livedata.LiveDataQuery;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.xwiki.macros.cf.bs.internal.JSONTableColumn;
+import com.xwiki.macros.cf.bs.internal.JSONTableColumns;
+import com.xwiki.macros.cf.bs.internal.JSONTableMetrics;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjection;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjectionCache;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjectionStore;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableLiveDataEntryStore}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableLiveDataEntryStoreTest
+{
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    private static final String PATH = "$.rows[*]";
+
+    private static final String ID = "id";
+
+    private static final String NAME = "name";
+
+    private static final String AGE = "age";
+
+    private static final String CACHE_KEY = "cacheKey";
+
+    private static final String PROJECTION_KEY = "projectionKey";
+
+    private static final List<String> FIELD_PATHS = Arrays.asList(ID, NAME, AGE);
+
+    @InjectMockComponents
+    private JSONTableLiveDataEntryStore store;
+
+    @MockComponent
+    private JSONTableProjector jsonTableProjector;
+
+    @MockComponent
+    private JSONTableProjectionCache jsonTableProjectionCache;
+
+    @MockComponent
+    private JSONTableProjectionStore jsonTableProjectionStore;
+
+    @MockComponent
+    private JSONTableMetrics metrics;
+
+    private JsonNode node;
+
+    private JSONTableProjection projection;
+
+    @BeforeEach
+    void setUp()
+    {
+        this.node = FACTORY.objectNode();
+        // The row r1 doesn't have any age and the row r3 doesn't have any name
+        this.projection = new JSONTableProjection(this.node, "v1", FIELD_PATHS, new JSONTableColumn[] {
+            column(text("r0"), text("r1"), text("r2"), text("r3"), text("r4"), text("r5")),
+            column(text("carol"), text("alice"), text("bob"), null, text("alice"), text("dave")),
+            column(number(30), null, number(25), number(30), number(40), number(25))
+        }, 6);
+
+        when(this.jsonTableProjectionCache.getKey(CACHE_KEY, PATH, FIELD_PATHS)).thenReturn(PROJECTION_KEY);
+        when(this.jsonTableProjector.project(PATH, FIELD_PATHS, this.node, "v1")).thenReturn(this.projection);
+        when(this.jsonTableProjectionStore.spill(eq(PROJECTION_KEY), any()))
+            .thenAnswer(invocation -> invocation.getArgument(1));
+
+        Map<String, Object> parameters = this.store.getParameters();
+        parameters.put("path", PATH);
+        parameters.put("fieldPaths", FIELD_PATHS);
+        parameters.put(CACHE_KEY, CACHE_KEY);
+        parameters.put(JSONTableLiveDataSource.NODE, this.node);
+        parameters.put(JSONTableLiveDataSource.DATA_VERSION, "v1");
+    }
+
+    @Test
+    void getAllRows() throws Exception
+    {
+        LiveData liveData = this.store.get(new LiveDataQuery());
+
+        assertEquals(6, liveData.getCount());
+        assertEquals(Arrays.asList("r0", "r1", "r2", "r3", "r4", "r5"), getIds(liveData));
+        // Missing values are not sent
+        assertEquals(2, liveData.getEntries().get(1).size());
+        assertEquals(2, liveData.getEntries().get(3).size());
+
+        // The projection is computed once, spilled and cached
+        verify(this.jsonTableProjectionStore).load(PROJECTION_KEY, "v1");
+        verify(this.jsonTableProjectionCache).set(PROJECTION_KEY, this.projection);
+        verify(this.metrics).recordProjection(anyLong(), eq(6));
+        verify(this.metrics).recordLiveDataRequest(anyLong(), eq(6), eq(6), anyLong());
+    }
+
+    @Test
+    void getFromTheCachedProjection() throws Exception
+    {
+        when(this.jsonTableProjectionCache.get(PROJECTION_KEY)).thenReturn(this.projection);
+
+        assertEquals(6, this.store.get(new LiveDataQuery()).getCount());
+
+        verify(this.jsonTableProjector, never()).project(anyString(), any(), any(), any());
+        verify(this.jsonTableProjectionStore, never()).load(anyString(), any());
+    }
+
+    @Test
+    void getFromTheStoredProjection() throws Exception
+    {
+        when(this.jsonTableProjectionStore.load(PROJECTION_KEY, "v1")).thenReturn(this.projection);
+
+        assertEquals(6, this.store.get(new LiveDataQuery()).getCount());
+
+        verify(this.jsonTableProjector, never()).project(anyString(), any(), any(), any());
+        verify(this.jsonTableProjectionCache).set(PROJECTION_KEY, this.projection);
+    }
+
+    @Test
+    void getWithoutData()
+    {
+        this.store.getParameters().remove(JSONTableLiveDataSource.NODE);
+
+        assertThrows(LiveDataException.class, () -> this.store.get(new LiveDataQuery()));
+    }
+
+    @Test
+    void getPage() throws Exception
+    {
+        assertEquals(Arrays.asList("r2", "r3"), getIds(query(2L, 2)));
+        // The limit is cut at the end of the rows
+        assertEquals(Arrays.asList("r4", "r5"), getIds(query(4L, 10)));
+        assertEquals(Arrays.asList("r0"), getIds(query(null, 1)));
+        assertEquals(Arrays.asList("r0"), getIds(query(-3L, 1)));
+    }
+
+    @Test
+    void getPageOutOfBounds() throws Exception
+    {
+        LiveData liveData = query(6L, 2);
+        assertEquals(6, liveData.getCount());
+        assertTrue(liveData.getEntries().isEmpty());
+
+        assertTrue(query(100L, null).getEntries().isEmpty());
+        verify(this.metrics, times(2)).recordLiveDataRequest(anyLong(), eq(6), eq(0), eq(0L));
+    }
+
+    @Test
+    void getPageWithoutLimit() throws Exception
+    {
+        // Null or negative limits return all the rows after the offset, and a zero limit doesn't return any row
+        assertEquals(Arrays.asList("r3", "r4", "r5"), getIds(query(3L, null)));
+        assertEquals(Arrays.asList("r3", "r4", "r5"), getIds(query(3L, -1)));
+        LiveData liveData = query(3L, 0);
+        assertEquals(6, liveData.getCount());
+        assertTrue(liveData.getEntries().isEmpty());
+    }
+
+    @Test
+    void sortByOneProperty() throws Exception
+    {
+        // Rows with the same value keep the order of the source, and missing values come last in both directions
+        assertEquals(Arrays.asList("r1", "r4", "r2", "r0", "r5", "r3"), getIds(sort(sortEntry(NAME, false))));
+        assertEquals(Arrays.asList("r5", "r0", "r2", "r1", "r4", "r3"), getIds(sort(sortEntry(NAME, true))));
+        assertEquals(Arrays.asList("r2", "r5", "r0", "r3", "r4", "r1"), getIds(sort(sortEntry(AGE, false))));
+        assertEquals(Arrays.asList("r4", "r0", "r3", "r2", "r5", "r1"), getIds(sort(sortEntry(AGE, true))));
+    }
+
+    @Test
+    void sortByMultipleProperties() throws Exception
+    {
+        assertEquals(Arrays.asList("r5", "r2", "r0", "r3", "r4", "r1"),
+            getIds(sort(sortEntry(AGE, false), sortEntry(NAME, true))));
+        assertEquals(Arrays.asList("r4", "r0", "r3", "r2", "r5", "r1"),
+            getIds(sort(sortEntry(AGE, true), sortEntry(NAME, false))));
+        // Properties that are not displayed don't change the order
+        assertEquals(Arrays.asList("r1", "r4", "r2", "r0", "r5", "r3"),
+            getIds(sort(sortEntry("unknown", true), sortEntry(NAME, false))));
+    }
+
+    @Test
+    void filterSortAndPage() throws Exception
+    {
+        LiveDataQuery query = new LiveDataQuery();
+        query.setFilters(Arrays.asList(new LiveDataQuery.Filter(AGE, "greater", "26")));
+        query.setSort(Arrays.asList(sortEntry(NAME, true)));
+        query.setOffset(1L);
+        query.setLimit(1);
+
+        LiveData liveData = this.store.get(query);
+
+        // The rows r0, r3 and r4 match the filter, sorted as r0, r4 and r3
+        assertEquals(3, liveData.getCount());
+        assertEquals(Arrays.asList("r4"), getIds(liveData));
+        verify(this.metrics).recordLiveDataRequest(anyLong(), eq(3), eq(1), anyLong());
+    }
+
+    @Test
+    void getEntry() throws Exception
+    {
+        // Single entries are not supported
+        assertFalse(this.store.get("r0").isPresent());
+        verify(this.jsonTableProjectionCache, never()).get(any());
+    }
+
+    private LiveData query(Long offset, Integer limit) throws Exception
+    {
+        LiveDataQuery query = new LiveDataQuery();
+        query.setOffset(offset);
+        query.setLimit(limit);
+        return this.store.get(query);
+    }
+
+    private LiveData sort(LiveDataQuery.SortEntry... sortEntries) throws Exception
+    {
+        LiveDataQuery query = new LiveDataQuery();
+        query.setSort(Arrays.asList(sortEntries));
+        return this.store.get(query);
+    }
+
+    private static LiveDataQuery.SortEntry sortEntry(String property, boolean descending)
+    {
+        return new LiveDataQuery.SortEntry(property, descending);
+    }
+
+    private static List<Object> getIds(LiveData liveData)
+    {
+        return liveData.getEntries().stream().map(entry -> entry.get(ID)).collect(Collectors.toList());
+    }
+
+    private static JSONTableColumn column(JsonNode... values)
+    {
+        return JSONTableColumns.build(values, new HashMap<>());
+    }
+
+    private static JsonNode text(String value)
+    {
+        return FACTORY.textNode(value);
+    }
+
+    private static JsonNode number(int value)
+    {
+        return FACTORY.numberNode(value);
+    }
+}
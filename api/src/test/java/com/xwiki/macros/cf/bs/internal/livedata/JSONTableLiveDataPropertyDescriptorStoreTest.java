@@ -0,0 +1,214 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.livedata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.livedata.LiveDataPropertyDescriptor;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xwiki.macros.cf.bs.JSONTableMacroParameters;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataEntry;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataHelper;
+import com.xwiki.macros.cf.bs.internal.JSONTableSchema;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JSONTableLiveDataPropertyDescriptorStore}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONTableLiveDataPropertyDescriptorStoreTest
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String PATH = "$.rows[*]";
+
+    private static final String TEXT = "text";
+
+    private static final String NUMBER = "number";
+
+    private static final String BOOLEAN = "boolean";
+
+    @InjectMockComponents
+    private JSONTableLiveDataPropertyDescriptorStore store;
+
+    @MockComponent
+    private JSONTableDataHelper jsonTableDataHelper;
+
+    private JSONTableDataEntry data;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.data = new JSONTableDataEntry(OBJECT_MAPPER.readTree("{\"rows\": []}"));
+        JSONTableSchema schema = infer("{\"name\": \"Alice\", \"age\": 30, \"active\": true, "
+            + "\"address\": {\"city\": \"Paris\", \"since\": \"2020-01-02T10:00:00Z\"}}");
+        when(this.jsonTableDataHelper.getSchema(this.data, PATH)).thenReturn(schema);
+
+        this.store.getParameters().put(JSONTableLiveDataSource.DATA, this.data);
+        this.store.getParameters().put("path", PATH);
+    }
+
+    @Test
+    void getWithoutFieldPaths() throws Exception
+    {
+        assertTrue(this.store.get().isEmpty());
+        verify(this.jsonTableDataHelper, never()).getSchema(any(), anyString());
+    }
+
+    @Test
+    void getTypedDescriptors() throws Exception
+    {
+        List<LiveDataPropertyDescriptor> descriptors =
+            get("name", "$.age", "active", "address.since", "address.city", "missing");
+
+        assertEquals(Arrays.asList("name", "$.age", "active", "address.since", "address.city", "missing"),
+            descriptors.stream().map(LiveDataPropertyDescriptor::getId).collect(Collectors.toList()));
+        for (LiveDataPropertyDescriptor descriptor : descriptors) {
+            assertFalse(descriptor.isEditable());
+            assertTrue(descriptor.isSortable());
+            assertTrue(descriptor.isFilterable());
+        }
+
+        Iterator<LiveDataPropertyDescriptor> it = descriptors.iterator();
+        assertDescriptor(it.next(), "String", TEXT, TEXT, "contains", "startsWith", "equals");
+        // The root prefix is ignored when looking for the type of a field path
+        assertDescriptor(it.next(), "Number", NUMBER, NUMBER, "equals", "less", "greater");
+        assertDescriptor(it.next(), "Boolean", BOOLEAN, BOOLEAN, "equals");
+        assertDescriptor(it.next(), "Date", TEXT, "date", "between", "before", "after", "contains");
+        assertDescriptor(it.next(), "String", TEXT, TEXT, "contains", "startsWith", "equals");
+        // Field paths without any value in the sample are strings
+        assertDescriptor(it.next(), "String", TEXT, TEXT, "contains", "startsWith", "equals");
+    }
+
+    @Test
+    void getDisplayerAndFilterParameters() throws Exception
+    {
+        List<LiveDataPropertyDescriptor> descriptors = get("active", "address.since", "age");
+
+        // The values of the table are sent as strings, so the boolean displayer needs to know them
+        LiveDataPropertyDescriptor.DisplayerDescriptor displayer = descriptors.get(0).getDisplayer();
+        assertEquals("true", displayer.getParameter("trueValue"));
+        assertEquals("false", displayer.getParameter("falseValue"));
+
+        // The date filter uses a format that the entry store is able to parse
+        assertEquals("YYYY-MM-DD HH:mm", descriptors.get(1).getFilter().getParameter("dateFormat"));
+
+        assertTrue(descriptors.get(2).getDisplayer().getParameters().isEmpty());
+        assertTrue(descriptors.get(2).getFilter().getParameters().isEmpty());
+    }
+
+    @Test
+    void getOperatorsSupportedByTheEntryStore() throws Exception
+    {
+        for (LiveDataPropertyDescriptor descriptor : get("name", "age", "active", "address.since")) {
+            LiveDataPropertyDescriptor.FilterDescriptor filter = descriptor.getFilter();
+            List<String> operators = getOperatorIds(filter);
+
+            assertEquals(JSONTableFilterEvaluator.getOperators(filter.getId()), operators);
+            assertEquals(operators.get(0), filter.getDefaultOperator());
+            // The names of the operators are translated by LiveData
+            filter.getOperators().forEach(operator -> assertNull(operator.getName()));
+        }
+    }
+
+    @Test
+    void getWithoutData() throws Exception
+    {
+        this.store.getParameters().remove(JSONTableLiveDataSource.DATA);
+
+        List<LiveDataPropertyDescriptor> descriptors = get("age", "active");
+
+        assertEquals("String", descriptors.get(0).getType());
+        assertEquals("String", descriptors.get(1).getType());
+        verify(this.jsonTableDataHelper, never()).getSchema(any(), anyString());
+    }
+
+    @Test
+    void getPropertyNames() throws Exception
+    {
+        assertEquals(Arrays.asList("Name", "Address.city"), getNames("name", "address.city"));
+
+        this.store.getParameters().put(JSONTableMacroParameters.CAPITALIZE, "false");
+        assertEquals(Arrays.asList("name", "address.city"), getNames("name", "address.city"));
+
+        // Parameters can be received as strings or as booleans
+        this.store.getParameters().put(JSONTableMacroParameters.STRIP_QUALIFIERS, true);
+        this.store.getParameters().put(JSONTableMacroParameters.CAPITALIZE, true);
+        assertEquals(Arrays.asList("Name", "City"), getNames("name", "address.city"));
+    }
+
+    private List<LiveDataPropertyDescriptor> get(String... fieldPaths) throws Exception
+    {
+        this.store.getParameters().put(JSONTableMacroParameters.FIELD_PATHS, Arrays.asList(fieldPaths));
+        return new ArrayList<>(this.store.get());
+    }
+
+    private List<String> getNames(String... fieldPaths) throws Exception
+    {
+        return get(fieldPaths).stream().map(LiveDataPropertyDescriptor::getName).collect(Collectors.toList());
+    }
+
+    private static void assertDescriptor(LiveDataPropertyDescriptor descriptor, String type, String displayer,
+        String filter, String... operators)
+    {
+        assertEquals(type, descriptor.getType());
+        assertEquals(displayer, descriptor.getDisplayer().getId());
+        assertEquals(filter, descriptor.getFilter().getId());
+        assertEquals(Arrays.asList(operators), getOperatorIds(descriptor.getFilter()));
+    }
+
+    private static List<String> getOperatorIds(LiveDataPropertyDescriptor.FilterDescriptor filter)
+    {
+        return filter.getOperators().stream().map(LiveDataPropertyDescriptor.OperatorDescriptor::getId)
+            .collect(Collectors.toList());
+    }
+
+    private static JSONTableSchema infer(String... rows) throws Exception
+    {
+        List<JsonNode> nodes = new ArrayList<>();
+        for (String row : rows) {
+            nodes.add(OBJECT_MAPPER.readTree(row));
+        }
+        return JSONTableSchema.infer(Collections.enumeration(nodes), 0);
+    }
+}
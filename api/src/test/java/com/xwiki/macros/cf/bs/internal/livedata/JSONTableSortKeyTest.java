@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.internal.livedata;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link JSONTableSortKey}.
+ *
+ * @version $Id$
+ */
+class JSONTableSortKeyTest
+{
+    private static final String DATE = "2020-01-01";
+
+    @Test
+    void compareNumbers()
+    {
+        assertTrue(compare("9", "10") < 0);
+        assertTrue(compare("-1.5", ".5") < 0);
+        assertEquals(0, compare("1e3", 1000));
+        assertEquals(0, compare("1.0", 1));
+        assertTrue(compare(2L, 2.5) < 0);
+    }
+
+    @Test
+    void compareDates()
+    {
+        assertTrue(compare("2020-01-01T23:00:00Z", "2020-01-02") < 0);
+        assertEquals(0, compare("2020-01-01T01:00:00+01:00", "2020-01-01T00:00:00Z"));
+        assertEquals(0, compare("2020-01-01 00:00:00", DATE));
+        assertEquals(0, JSONTableSortKey.of(DATE).compareTo(JSONTableSortKey.ofDate(1577836800000L)));
+    }
+
+    @Test
+    void compareStrings()
+    {
+        assertTrue(compare("apple", "Banana") < 0);
+        assertTrue(compare("Banana", "cherry") < 0);
+        // Strings differing only by their case are still ordered consistently
+        assertTrue(compare("A", "a") < 0);
+        assertEquals(0, compare("a", "a"));
+    }
+
+    @Test
+    void compareMixedTypes()
+    {
+        // Numbers come first, then dates, then strings
+        assertTrue(compare("100", DATE) < 0);
+        assertTrue(compare(DATE, "1") > 0);
+        assertTrue(compare(DATE, "abc") < 0);
+        assertTrue(compare("1", "abc") < 0);
+
+        assertEquals(0, JSONTableSortKey.of("100").compareType(JSONTableSortKey.of(1)));
+        assertTrue(JSONTableSortKey.of("abc").compareType(JSONTableSortKey.of(DATE)) > 0);
+    }
+
+    @Test
+    void compareNulls()
+    {
+        JSONTableSortKey nullKey = JSONTableSortKey.of(null);
+
+        assertTrue(nullKey.isNull());
+        assertFalse(JSONTableSortKey.of("").isNull());
+        // Missing values come last
+        assertTrue(nullKey.compareTo(JSONTableSortKey.of("zzz")) > 0);
+        assertTrue(JSONTableSortKey.of(1).compareTo(nullKey) < 0);
+        assertEquals(0, nullKey.compareTo(JSONTableSortKey.of(null)));
+    }
+
+    @Test
+    void invalidDatesAreStrings()
+    {
+        assertTrue(compare("2020-13-45", "abc") < 0);
+        assertTrue(compare("2020-13-45", DATE) > 0);
+        assertFalse(JSONTableSortKey.isDate("2020-13-45"));
+        assertTrue(JSONTableSortKey.isDate(DATE));
+        assertNull(JSONTableSortKey.parseDate("2020-01-01Tnoon"));
+    }
+
+    private int compare(Object left, Object right)
+    {
+        return JSONTableSortKey.of(left).compareTo(JSONTableSortKey.of(right));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.component.util.ReflectionUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xwiki.macros.cf.bs.internal.JSONTableConfiguration;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataHelper;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjector;
+
+/**
+ * Base class of the benchmarks working on a parsed data set.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public abstract class AbstractJSONTableBenchmark
+{
+    @Param({ "1000", "100000", "1000000" })
+    protected int rows;
+
+    @Param({ "1", "4" })
+    protected int depth;
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+
+    protected final JSONTableConfiguration configuration = new JSONTableBenchmarkConfiguration();
+
+    protected final JSONTableDataHelper dataHelper = new JSONTableDataHelper();
+
+    protected final JSONTableProjector projector = new JSONTableProjector();
+
+    protected JsonNode node;
+
+    protected List<String> fieldPaths;
+
+    /**
+     * Initialize the components used by the benchmarks the way the component manager would, so that the large data
+     * sets are projected by several threads as they would be in XWiki.
+     *
+     * @throws InitializationException if the components cannot be initialized
+     */
+    @Setup(Level.Trial)
+    public void setUpComponents() throws InitializationException
+    {
+        ReflectionUtils.setFieldValue(this.dataHelper, "configuration", this.configuration);
+        ReflectionUtils.setFieldValue(this.projector, "configuration", this.configuration);
+        ReflectionUtils.setFieldValue(this.projector, "dataHelper", this.dataHelper);
+        this.projector.initialize();
+    }
+
+    /**
+     * Generate and parse the data set.
+     *
+     * @throws IOException if the data set cannot be parsed
+     */
+    @Setup(Level.Trial)
+    public void setUpData() throws IOException
+    {
+        this.node = this.objectMapper.readTree(JSONTableBenchmarkData.generate(this.rows, this.depth));
+        this.fieldPaths = JSONTableBenchmarkData.getFieldPaths(this.depth);
+    }
+
+    /**
+     * Stop the threads used by the components.
+     *
+     * @throws ComponentLifecycleException if the components cannot be disposed
+     */
+    @TearDown(Level.Trial)
+    public void tearDownComponents() throws ComponentLifecycleException
+    {
+        this.projector.dispose();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.configuration.ConfigurationSource;
+
+import com.xwiki.macros.cf.bs.internal.JSONTableConfiguration;
+
+/**
+ * The configuration used by the benchmarks. Since there is no {@code xwiki.properties} file outside of XWiki, the
+ * properties are read from memory, and have their default values unless they are set by the benchmark.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public class JSONTableBenchmarkConfiguration extends JSONTableConfiguration
+{
+    private static final String PREFIX = "jsonTable.";
+
+    private final Map<String, Object> properties = new ConcurrentHashMap<>();
+
+    /**
+     * Create a configuration where every property has its default value.
+     */
+    public JSONTableBenchmarkConfiguration()
+    {
+        ReflectionUtils.setFieldValue(this, "configuration", new MemoryConfigurationSource(this.properties));
+    }
+
+    /**
+     * @param name the name of the property, without the {@code jsonTable.} prefix
+     * @param value the value of the property, of the type of its default value
+     */
+    public void setProperty(String name, Object value)
+    {
+        this.properties.put(PREFIX + name, value);
+    }
+
+    /**
+     * A configuration source reading its properties from a map.
+     */
+    private static final class MemoryConfigurationSource implements ConfigurationSource
+    {
+        private final Map<String, Object> properties;
+
+        MemoryConfigurationSource(Map<String, Object> properties)
+        {
+            this.properties = properties;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getProperty(String key, T defaultValue)
+        {
+            return this.properties.containsKey(key) ? (T) this.properties.get(key) : defaultValue;
+        }
+
+        @Override
+        public <T> T getProperty(String key, Class<T> valueClass)
+        {
+            return getProperty(key, valueClass, null);
+        }
+
+        @Override
+        public <T> T getProperty(String key, Class<T> valueClass, T defaultValue)
+        {
+            return this.properties.containsKey(key) ? valueClass.cast(this.properties.get(key)) : defaultValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getProperty(String key)
+        {
+            return (T) this.properties.get(key);
+        }
+
+        @Override
+        public List<String> getKeys()
+        {
+            return new ArrayList<>(this.properties.keySet());
+        }
+
+        @Override
+        public boolean containsKey(String key)
+        {
+            return this.properties.containsKey(key);
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return this.properties.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic JSON data sets for the benchmarks. Each row has a few scalar values of different types and a
+ * nested object of configurable depth.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+public final class JSONTableBenchmarkData
+{
+    /**
+     * The path of the rows of the generated data sets.
+     */
+    public static final String PATH = "$.items[*]";
+
+    private static final String[] NAMES = { "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta" };
+
+    private static final String NESTED = "nested";
+
+    private static final String LEVEL = "level";
+
+    private static final String VALUE = "value";
+
+    private JSONTableBenchmarkData()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param depth the depth of the nested object of each row
+     * @return the field paths of the columns of the generated data sets
+     */
+    public static List<String> getFieldPaths(int depth)
+    {
+        List<String> fieldPaths = new ArrayList<>();
+        fieldPaths.add("id");
+        fieldPaths.add("name");
+        fieldPaths.add("price");
+        fieldPaths.add("active");
+        fieldPaths.add("created");
+
+        StringBuilder nestedPath = new StringBuilder(NESTED);
+        for (int level = 1; level < depth; level++) {
+            nestedPath.append('.').append(LEVEL).append(level);
+        }
+        fieldPaths.add(nestedPath.append('.').append(VALUE).toString());
+
+        return fieldPaths;
+    }
+
+    /**
+     * @param rows the number of rows
+     * @param depth the depth of the nested object of each row
+     * @return the JSON data set
+     */
+    public static String generate(int rows, int depth)
+    {
+        // Always generate the same data, so that the results of different runs can be compared
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{\"total\":").append(rows).append(",\"items\":[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i);
+            json.append(",\"name\":\"").append(NAMES[random.nextInt(NAMES.length)]).append(' ')
+                .append(random.nextInt(rows)).append('"');
+            json.append(",\"price\":").append(random.nextInt(100000) / 100.0);
+            json.append(",\"active\":").append(random.nextBoolean());
+            json.append(",\"created\":\"").append(String.format("20%02d-%02d-%02dT10:00:00Z", random.nextInt(25),
+                random.nextInt(12) + 1, random.nextInt(28) + 1)).append('"');
+            json.append(",\"description\":\"Unused value that the streaming reader can skip ").append(i).append('"');
+            appendNested(json, depth, random);
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void appendNested(StringBuilder json, int depth, Random random)
+    {
+        json.append(",\"").append(NESTED).append("\":{");
+        for (int level = 1; level < depth; level++) {
+            json.append('"').append(LEVEL).append(level).append("\":{");
+        }
+        json.append('"').append(VALUE).append("\":").append(random.nextInt(1000));
+        for (int level = 0; level < depth; level++) {
+            json.append('}');
+        }
+    }
+}
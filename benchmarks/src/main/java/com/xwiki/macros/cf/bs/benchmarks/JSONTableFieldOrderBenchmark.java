@@ -0,0 +1,124 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xwiki.macros.cf.bs.internal.JSONTableDataHelper;
+
+/**
+ * Measures the ordering of the field paths using the {@code fieldOrderRegexPatterns} parameter, compared to the
+ * ordering done by matching every regular expression against every field path.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JSONTableFieldOrderBenchmark
+{
+    @Param({ "10", "100", "500" })
+    private int fields;
+
+    @Param({ "1", "10", "50" })
+    private int patterns;
+
+    private List<String> fieldPaths;
+
+    private List<String> regexPatterns;
+
+    private List<Pattern> compiledPatterns;
+
+    /**
+     * Generate the field paths and the patterns, each pattern matching a few field paths.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.fieldPaths = IntStream.range(0, this.fields).mapToObj(i -> String.format("group%d.field%d", i % 20, i))
+            .collect(Collectors.toList());
+        this.regexPatterns = IntStream.range(0, this.patterns)
+            .mapToObj(i -> String.format("group%d\\.field\\d*%d", i % 20, i % 10)).collect(Collectors.toList());
+        this.compiledPatterns = this.regexPatterns.stream().map(Pattern::compile).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the ordered field paths
+     */
+    @Benchmark
+    public List<String> orderFieldPaths()
+    {
+        return JSONTableDataHelper.orderFieldPaths(this.fieldPaths, this.compiledPatterns);
+    }
+
+    /**
+     * @return the ordered field paths, including the compilation of the patterns
+     */
+    @Benchmark
+    public List<String> compileAndOrderFieldPaths()
+    {
+        List<Pattern> compiled = this.regexPatterns.stream().map(Pattern::compile).collect(Collectors.toList());
+        return JSONTableDataHelper.orderFieldPaths(this.fieldPaths, compiled);
+    }
+
+    /**
+     * @return the field paths ordered by matching every regular expression against every field path
+     */
+    @Benchmark
+    public List<String> orderFieldPathsBaseline()
+    {
+        List<String> orderedFieldPaths = new ArrayList<>();
+        for (String regexPattern : this.regexPatterns) {
+            for (String fieldPath : this.fieldPaths) {
+                if (!orderedFieldPaths.contains(fieldPath) && fieldPath.matches(regexPattern)) {
+                    orderedFieldPaths.add(fieldPath);
+                }
+            }
+        }
+        for (String fieldPath : this.fieldPaths) {
+            if (!orderedFieldPaths.contains(fieldPath)) {
+                orderedFieldPaths.add(fieldPath);
+            }
+        }
+        return orderedFieldPaths;
+    }
+}
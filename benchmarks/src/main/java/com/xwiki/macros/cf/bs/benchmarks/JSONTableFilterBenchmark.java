@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.livedata.LiveDataQuery;
+
+import com.xwiki.macros.cf.bs.internal.JSONTableProjection;
+import com.xwiki.macros.cf.bs.internal.livedata.JSONTableFilterEvaluator;
+
+/**
+ * Measures the filtering of a projection. The indexes of the columns are built before the measurements, as they are
+ * reused across requests.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class JSONTableFilterBenchmark extends AbstractJSONTableBenchmark
+{
+    private JSONTableProjection projection;
+
+    private List<LiveDataQuery.Filter> containsFilters;
+
+    private List<LiveDataQuery.Filter> equalsFilters;
+
+    private List<LiveDataQuery.Filter> rangeFilters;
+
+    private List<LiveDataQuery.Filter> dateFilters;
+
+    /**
+     * Compute the projection and build the indexes.
+     */
+    @Setup(Level.Trial)
+    public void setUpProjection()
+    {
+        this.projection = this.projector.project(JSONTableBenchmarkData.PATH, this.fieldPaths, this.node, null);
+        this.containsFilters = filter("name", "contains", "mma 1");
+        this.equalsFilters = filter("active", "equals", "true");
+        this.rangeFilters = filter("price", "less", "100");
+        this.dateFilters = filter("created", "between", "2010-01-01/2015-12-31");
+
+        contains();
+        equalTo();
+        range();
+        dates();
+    }
+
+    /**
+     * @return the rows whose name contains a value
+     */
+    @Benchmark
+    public int[] contains()
+    {
+        return JSONTableFilterEvaluator.getMatchingRows(this.projection, this.containsFilters);
+    }
+
+    /**
+     * @return the rows having a given boolean value
+     */
+    @Benchmark
+    public int[] equalTo()
+    {
+        return JSONTableFilterEvaluator.getMatchingRows(this.projection, this.equalsFilters);
+    }
+
+    /**
+     * @return the rows whose price is lower than a value
+     */
+    @Benchmark
+    public int[] range()
+    {
+        return JSONTableFilterEvaluator.getMatchingRows(this.projection, this.rangeFilters);
+    }
+
+    /**
+     * @return the rows created between two dates
+     */
+    @Benchmark
+    public int[] dates()
+    {
+        return JSONTableFilterEvaluator.getMatchingRows(this.projection, this.dateFilters);
+    }
+
+    private List<LiveDataQuery.Filter> filter(String property, String operator, String value)
+    {
+        return Collections.singletonList(new LiveDataQuery.Filter(property, operator, value));
+    }
+}
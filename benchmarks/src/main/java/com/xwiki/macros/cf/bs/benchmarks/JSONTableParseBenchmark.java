@@ -0,0 +1,102 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xwiki.macros.cf.bs.internal.JSONTableStreamingReader;
+
+/**
+ * Measures the parsing of JSON sources, either as a whole document or in streaming mode.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class JSONTableParseBenchmark
+{
+    @Param({ "1000", "100000", "1000000" })
+    private int rows;
+
+    @Param({ "1", "4" })
+    private int depth;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] json;
+
+    private JSONTableStreamingReader reader;
+
+    /**
+     * Generate the data set.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.json = JSONTableBenchmarkData.generate(this.rows, this.depth).getBytes(StandardCharsets.UTF_8);
+        this.reader = JSONTableStreamingReader.of(JSONTableBenchmarkData.PATH,
+            JSONTableBenchmarkData.getFieldPaths(this.depth));
+    }
+
+    /**
+     * @return the whole parsed document
+     * @throws IOException if the document cannot be parsed
+     */
+    @Benchmark
+    public JsonNode parse() throws IOException
+    {
+        return this.objectMapper.readTree(this.json);
+    }
+
+    /**
+     * @return the document, only keeping the values displayed by the table
+     * @throws IOException if the document cannot be parsed
+     */
+    @Benchmark
+    public JsonNode parseStreaming() throws IOException
+    {
+        try (JsonParser parser = this.objectMapper.getFactory().createParser(this.json)) {
+            return this.reader.read(parser);
+        }
+    }
+}
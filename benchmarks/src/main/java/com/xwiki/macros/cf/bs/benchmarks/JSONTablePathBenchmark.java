@@ -0,0 +1,78 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.benchmarks;
+
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Measures the evaluation of the path of the rows and of the field paths of the columns.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class JSONTablePathBenchmark extends AbstractJSONTableBenchmark
+{
+    /**
+     * @param blackhole the blackhole consuming the rows
+     */
+    @Benchmark
+    public void applyPath(Blackhole blackhole)
+    {
+        Enumeration<JsonNode> matchingRows = this.dataHelper.applyPath(JSONTableBenchmarkData.PATH, this.node);
+        while (matchingRows.hasMoreElements()) {
+            blackhole.consume(matchingRows.nextElement());
+        }
+    }
+
+    /**
+     * @param blackhole the blackhole consuming the values
+     */
+    @Benchmark
+    public void applyFieldPaths(Blackhole blackhole)
+    {
+        Enumeration<JsonNode> matchingRows = this.dataHelper.applyPath(JSONTableBenchmarkData.PATH, this.node);
+        while (matchingRows.hasMoreElements()) {
+            JsonNode row = matchingRows.nextElement();
+            for (String fieldPath : this.fieldPaths) {
+                blackhole.consume(this.dataHelper.applyPath(fieldPath, row));
+            }
+        }
+    }
+}
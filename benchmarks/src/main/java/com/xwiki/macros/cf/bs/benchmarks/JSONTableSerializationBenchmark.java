@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xwiki.macros.cf.bs.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.livedata.LiveData;
+
+import com.xwiki.macros.cf.bs.internal.JSONTableDataEntry;
+import com.xwiki.macros.cf.bs.internal.JSONTableDataSerializer;
+import com.xwiki.macros.cf.bs.internal.JSONTableProjection;
+
+/**
+ * Measures the serialization of the data, as done by the disk store and the cluster, and of a page of the table, as
+ * sent to the browser.
+ *
+ * @version $Id$
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class JSONTableSerializationBenchmark extends AbstractJSONTableBenchmark
+{
+    private static final int PAGE_SIZE = 100;
+
+    private JSONTableDataEntry entry;
+
+    private byte[] serializedEntry;
+
+    private JSONTableProjection projection;
+
+    /**
+     * Serialize the data once, to measure its deserialization.
+     *
+     * @throws IOException if the data cannot be serialized
+     */
+    @Setup(Level.Trial)
+    public void setUpEntry() throws IOException
+    {
+        this.entry = new JSONTableDataEntry(this.node);
+        this.serializedEntry = write();
+        this.projection = this.projector.project(JSONTableBenchmarkData.PATH, this.fieldPaths, this.node, null);
+    }
+
+    /**
+     * @return the serialized data
+     * @throws IOException if the data cannot be serialized
+     */
+    @Benchmark
+    public byte[] write() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONTableDataSerializer.write(this.entry, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the deserialized data
+     * @throws IOException if the data cannot be deserialized
+     */
+    @Benchmark
+    public JSONTableDataEntry read() throws IOException
+    {
+        return JSONTableDataSerializer.read(new ByteArrayInputStream(this.serializedEntry));
+    }
+
+    /**
+     * @return the JSON of a page of the table
+     * @throws IOException if the page cannot be serialized
+     */
+    @Benchmark
+    public String writePage() throws IOException
+    {
+        LiveData liveData = new LiveData();
+        liveData.setCount(this.projection.getRowCount());
+        for (int row = 0; row < Math.min(PAGE_SIZE, this.projection.getRowCount()); row++) {
+            liveData.getEntries().add(this.projection.getEntry(row));
+        }
+        return this.objectMapper.writeValueAsString(liveData);
+    }
+}